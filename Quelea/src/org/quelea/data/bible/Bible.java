@@ -18,7 +18,6 @@
 package org.quelea.data.bible;
 
 import java.io.File;
-import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.Serializable;
 import java.util.ArrayList;
@@ -28,20 +27,14 @@ import java.util.logging.Level;
 import java.util.logging.Logger;
 import javafx.application.Platform;
 import javafx.event.ActionEvent;
-import javax.xml.parsers.DocumentBuilder;
-import javax.xml.parsers.DocumentBuilderFactory;
-import javax.xml.parsers.ParserConfigurationException;
+import javax.xml.stream.XMLStreamException;
 import org.javafx.dialog.Dialog;
 import org.quelea.services.languages.LabelGrabber;
 import org.quelea.services.utils.BibleUploader;
 import org.quelea.services.utils.LoggerUtils;
-import org.quelea.services.utils.UnicodeReader;
 import org.quelea.services.utils.Utils;
-import org.w3c.dom.Document;
 import org.w3c.dom.Node;
 import org.w3c.dom.NodeList;
-import org.xml.sax.InputSource;
-import org.xml.sax.SAXException;
 
 /**
  * A bible containing a number of books as well as some information.
@@ -60,7 +53,7 @@ public final class Bible implements BibleInterface, Serializable {
      * <p/>
      * @param name the name of the bible.
      */
-    private Bible(String name) {
+    Bible(String name) {
         books = new ArrayList<>();
         this.name = name;
     }
@@ -104,23 +97,12 @@ public final class Bible implements BibleInterface, Serializable {
     public static Bible parseBible(final File file) {
         try {
             if (file.exists()) {
-                DocumentBuilderFactory factory = DocumentBuilderFactory.newInstance();
-                DocumentBuilder builder = factory.newDocumentBuilder();
-                Document doc = builder.parse(new InputSource(new UnicodeReader(new FileInputStream(file), "UTF-8")));
-                NodeList list = doc.getChildNodes();
-                for (int i = 0; i < list.getLength(); i++) {
-                    if (list.item(i).getNodeName().equalsIgnoreCase("xmlbible")
-                            || list.item(i).getNodeName().equalsIgnoreCase("bible")) {
-                        return parseXML(list.item(i), Utils.getFileNameWithoutExtension(file.getName()));
-                    }
-                }
-                LOGGER.log(Level.WARNING, "Couldn''t parse the bible {0} because I couldn''t find any <bible> or <xmlbible> root tags :-(", file);
-                return null;
+                return BibleCache.load(file);
             } else {
                 LOGGER.log(Level.WARNING, "Couldn''t parse the bible {0} because the file doesn''t exist!", file);
                 return null;
             }
-        } catch (ParserConfigurationException | SAXException | IOException ex) {
+        } catch (XMLStreamException | IOException ex) {
             LOGGER.log(Level.WARNING, "Couldn't parse the bible " + file, ex);
             Platform.runLater(new Runnable() {
                 @Override
@@ -192,6 +174,15 @@ public final class Bible implements BibleInterface, Serializable {
         return ret.toString();
     }
 
+    /**
+     * Set the general information about this bible.
+     * <p/>
+     * @param information the bibleinfo object for this bible.
+     */
+    void setInformation(BibleInfo information) {
+        this.information = information;
+    }
+
     /**
      * Get general information about this bible.
      * <p/>
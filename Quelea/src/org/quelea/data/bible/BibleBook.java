@@ -48,6 +48,20 @@ public final class BibleBook implements BibleInterface, Serializable {
         caretPosList = new ArrayList<>();
     }
 
+    /**
+     * Create a new book with the given number and names.
+     *
+     * @param bookNumber the number of the book.
+     * @param bookName the name of the book.
+     * @param bsname the short name of the book.
+     */
+    BibleBook(int bookNumber, String bookName, String bsname) {
+        this();
+        this.bookNumber = bookNumber;
+        this.bookName = bookName;
+        this.bsname = bsname;
+    }
+
     @Override
     public int hashCode() {
         int hash = 7;
@@ -104,7 +118,7 @@ public final class BibleBook implements BibleInterface, Serializable {
                 ret.append("Chapter ").append(numStr);
                 ret.append("\n");
                 for (BibleVerse verse : chapter.getVerses()) {
-                    String verseText = verse.getText();
+                    CharSequence verseText = verse.getVerseChars();
                     pos += verseText.length();
                     ret.append(verseText).append(' ');
                 }
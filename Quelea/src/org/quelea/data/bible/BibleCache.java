@@ -0,0 +1,321 @@
+/*
+ * This file is part of Quelea, free projection software for churches.
+ *
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.quelea.data.bible;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import javax.xml.stream.XMLStreamException;
+import org.quelea.services.utils.LoggerUtils;
+import org.quelea.services.utils.QueleaProperties;
+
+/**
+ * A binary cache of parsed bibles, so bibles only need to be parsed from XML
+ * the first time they're loaded (or when they change.)
+ * <p/>
+ * There's one cache file per bible file, named after the bible file's path.
+ * Each starts with the path, size and modification time of the bible file it
+ * was made from - if any of these don't match, the cache file is ignored and
+ * the bible is parsed again. Each chapter's verse numbers, text offsets and
+ * text are stored as flat arrays, so they can be read in bulk. Null strings
+ * are written as a length of -1, and read back as null.
+ * <p/>
+ * @author Michael
+ */
+final class BibleCache {
+
+    private static final Logger LOGGER = LoggerUtils.getLogger();
+    private static final int MAGIC = 0x51424942; //QBIB
+    /**
+     * Bump this whenever the format, or the way bibles are parsed, changes.
+     */
+    private static final int VERSION = 1;
+    private static final String EXTENSION = ".bcache";
+    private static final int MAX_HEADER_STRING = 1 << 16;
+    /**
+     * Written in place of a string's length when the string is null.
+     */
+    private static final int NULL_STRING = -1;
+
+    private BibleCache() {
+        throw new AssertionError();
+    }
+
+    /**
+     * Load the given bible, from the cache if there's an up to date entry for
+     * it, otherwise by parsing it (and then caching the result.)
+     * <p/>
+     * @param file the bible file.
+     * @return the bible, or null if the file doesn't contain a bible.
+     * @throws IOException if the bible file couldn't be read.
+     * @throws XMLStreamException if the bible file isn't valid XML.
+     */
+    static Bible load(File file) throws IOException, XMLStreamException {
+        File cacheFile = getCacheFile(file);
+        if (cacheFile.exists()) {
+            try {
+                Bible bible = read(cacheFile, file);
+                if (bible != null) {
+                    LOGGER.log(Level.INFO, "Loaded bible {0} from cache", bible.getName());
+                    return bible;
+                }
+            }
+            catch (IOException | RuntimeException ex) {
+                LOGGER.log(Level.WARNING, "Couldn't read bible cache " + cacheFile + ", parsing bible again", ex);
+            }
+        }
+        Bible bible = BibleStreamParser.parse(file);
+        if (bible != null) {
+            try {
+                write(cacheFile, file, bible);
+            }
+            catch (IOException ex) {
+                LOGGER.log(Level.WARNING, "Couldn't write bible cache " + cacheFile, ex);
+            }
+        }
+        return bible;
+    }
+
+    /**
+     * Delete the cache files for any bibles that aren't in the given list.
+     * <p/>
+     * @param bibleFiles the bible files that are still in use.
+     */
+    static void removeUnused(Collection<File> bibleFiles) {
+        File[] cacheFiles = getCacheDir().listFiles();
+        if (cacheFiles == null) {
+            return;
+        }
+        Set<String> used = new HashSet<>();
+        for (File file : bibleFiles) {
+            used.add(getCacheFile(file).getName());
+        }
+        for (File cacheFile : cacheFiles) {
+            if (cacheFile.getName().endsWith(EXTENSION) && !used.contains(cacheFile.getName())) {
+                if (!cacheFile.delete()) {
+                    LOGGER.log(Level.WARNING, "Couldn''t delete unused bible cache {0}", cacheFile);
+                }
+            }
+        }
+    }
+
+    private static File getCacheDir() {
+        return QueleaProperties.get().getBibleCacheDir();
+    }
+
+    private static File getCacheFile(File bibleFile) {
+        String path = bibleFile.getAbsolutePath();
+        return new File(getCacheDir(), UUID.nameUUIDFromBytes(path.getBytes(StandardCharsets.UTF_8)) + EXTENSION);
+    }
+
+    /**
+     * Read a bible from the given cache file.
+     * <p/>
+     * @return the bible, or null if the cache file is out of date.
+     */
+    private static Bible read(File cacheFile, File bibleFile) throws IOException {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(cacheFile), 1 << 16))) {
+            if (in.readInt() != MAGIC || in.readInt() != VERSION
+                    || !bibleFile.getAbsolutePath().equals(readHeaderString(in))
+                    || in.readLong() != bibleFile.length()
+                    || in.readLong() != bibleFile.lastModified()) {
+                return null;
+            }
+            Bible bible = new Bible(readString(in));
+            int infoSize = in.readInt();
+            if (infoSize >= 0) {
+                BibleInfo info = new BibleInfo();
+                for (int i = 0; i < infoSize; i++) {
+                    info.putAttribute(readString(in), readString(in));
+                }
+                bible.setInformation(info);
+            }
+            int bookCount = in.readInt();
+            for (int b = 0; b < bookCount; b++) {
+                BibleBook book = new BibleBook(in.readInt(), readString(in), readString(in));
+                int chapterCount = in.readInt();
+                for (int c = 0; c < chapterCount; c++) {
+                    BibleChapter chapter = new BibleChapter(in.readInt());
+                    int verseCount = in.readInt();
+                    int[] nums = readInts(in, verseCount);
+                    int[] offsets = readInts(in, verseCount + 1);
+                    chapter.setVerses(nums, offsets, new String(readChars(in, offsets[verseCount])));
+                    chapter.setBook(book);
+                    book.addChapter(chapter);
+                }
+                book.setBible(bible);
+                bible.addBook(book);
+            }
+            return bible;
+        }
+        catch (EOFException ex) {
+            throw new IOException("Bible cache is truncated", ex);
+        }
+    }
+
+    /**
+     * Write the given bible to a cache file. It's written to a temporary
+     * file first, so a half written cache file is never left behind.
+     */
+    private static void write(File cacheFile, File bibleFile, Bible bible) throws IOException {
+        File dir = cacheFile.getParentFile();
+        if (!dir.exists() && !dir.mkdirs()) {
+            throw new IOException("Couldn't create " + dir);
+        }
+        File temp = File.createTempFile("bible", ".tmp", dir);
+        try {
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temp)))) {
+                out.writeInt(MAGIC);
+                out.writeInt(VERSION);
+                writeString(out, bibleFile.getAbsolutePath());
+                out.writeLong(bibleFile.length());
+                out.writeLong(bibleFile.lastModified());
+                writeString(out, bible.getBibleName());
+                BibleInfo info = bible.getInformation();
+                if (info == null) {
+                    out.writeInt(-1);
+                }
+                else {
+                    Set<Map.Entry<String, String>> attributes = info.getAtributes();
+                    out.writeInt(attributes.size());
+                    for (Map.Entry<String, String> attribute : attributes) {
+                        writeString(out, attribute.getKey());
+                        writeString(out, attribute.getValue());
+                    }
+                }
+                BibleBook[] books = bible.getBooks();
+                out.writeInt(books.length);
+                for (BibleBook book : books) {
+                    out.writeInt(book.getBookNumber());
+                    writeString(out, book.getBookName());
+                    writeString(out, book.getBSName());
+                    BibleChapter[] chapters = book.getChapters();
+                    out.writeInt(chapters.length);
+                    for (BibleChapter chapter : chapters) {
+                        writeChapter(out, chapter);
+                    }
+                }
+            }
+            Files.move(temp.toPath(), cacheFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        }
+        finally {
+            if (temp.exists() && !temp.delete()) {
+                temp.deleteOnExit();
+            }
+        }
+    }
+
+    private static void writeChapter(DataOutputStream out, BibleChapter chapter) throws IOException {
+        out.writeInt(chapter.getNum());
+        BibleVerse[] verses = chapter.getVerses();
+        out.writeInt(verses.length);
+        for (BibleVerse verse : verses) {
+            out.writeInt(verse.getNum());
+        }
+        int offset = 0;
+        out.writeInt(offset);
+        for (BibleVerse verse : verses) {
+            offset += getText(verse).length();
+            out.writeInt(offset);
+        }
+        for (BibleVerse verse : verses) {
+            CharSequence text = getText(verse);
+            for (int i = 0; i < text.length(); i++) {
+                out.writeChar(text.charAt(i));
+            }
+        }
+    }
+
+    private static CharSequence getText(BibleVerse verse) {
+        CharSequence ret = verse.getVerseChars();
+        return ret == null ? "" : ret;
+    }
+
+    /**
+     * Write a string, or the null marker if it's null.
+     */
+    private static void writeString(DataOutputStream out, String str) throws IOException {
+        if (str == null) {
+            out.writeInt(NULL_STRING);
+            return;
+        }
+        out.writeInt(str.length());
+        out.writeChars(str);
+    }
+
+    /**
+     * Read a string from the header, which is limited in length so a corrupt
+     * file doesn't make us try to read a huge string.
+     * <p/>
+     * @return the string, or null if it's too long.
+     */
+    private static String readHeaderString(DataInputStream in) throws IOException {
+        int length = in.readInt();
+        if (length < 0 || length > MAX_HEADER_STRING) {
+            return null;
+        }
+        return new String(readChars(in, length));
+    }
+
+    private static String readString(DataInputStream in) throws IOException {
+        int length = in.readInt();
+        if (length == NULL_STRING) {
+            return null;
+        }
+        return new String(readChars(in, length));
+    }
+
+    private static char[] readChars(DataInputStream in, int length) throws IOException {
+        if (length < 0) {
+            throw new IOException("Bible cache is corrupt");
+        }
+        byte[] bytes = new byte[length * 2];
+        in.readFully(bytes);
+        char[] ret = new char[length];
+        ByteBuffer.wrap(bytes).asCharBuffer().get(ret);
+        return ret;
+    }
+
+    private static int[] readInts(DataInputStream in, int length) throws IOException {
+        if (length < 0) {
+            throw new IOException("Bible cache is corrupt");
+        }
+        byte[] bytes = new byte[length * 4];
+        in.readFully(bytes);
+        int[] ret = new int[length];
+        ByteBuffer.wrap(bytes).asIntBuffer().get(ret);
+        return ret;
+    }
+}
@@ -18,10 +18,11 @@
 package org.quelea.data.bible;
 
 import java.io.Serializable;
-import java.lang.ref.SoftReference;
-import java.util.HashMap;
-import java.util.Map;
-import java.util.Objects;
+import java.nio.CharBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
 import org.quelea.services.utils.Utils;
 import org.w3c.dom.Node;
 import org.w3c.dom.NodeList;
@@ -29,14 +30,28 @@ import org.w3c.dom.NodeList;
 /**
  * A chapter in the bible.
  * <p/>
+ * The verses are held in verse number order, with their numbers in one array
+ * and all their text in a single string (with the offset of each verse's text
+ * in another), rather than as a string per verse. The verse objects only
+ * point back into these arrays, so a chapter costs little more than its text,
+ * and looking up a verse or a range of verses is a binary search with nothing
+ * copied.
+ * <p/>
  * @author Michael
  */
 public final class BibleChapter implements BibleInterface, Serializable {
 
+    private static final int[] NO_NUMS = new int[0];
+    private static final int[] NO_OFFSETS = new int[]{0};
+    private static final BibleVerse[] NO_VERSES = new BibleVerse[0];
     private static int statId = 0;
     private final int num;
-    private final Map<Integer, BibleVerse> verses;
-    private transient SoftReference<String> softRefText;
+    private int[] nums;
+    private int[] offsets;
+    private String text;
+    private BibleVerse[] verses;
+    private transient List<BibleVerse> verseList;
+    private transient List<BibleVerse> pending;
     private final int id = statId++;
     private BibleBook book;
 
@@ -45,16 +60,21 @@ public final class BibleChapter implements BibleInterface, Serializable {
      * <p/>
      * @param num the chapter number (or -1 if it's unknown.)
      */
-    private BibleChapter(int num) {
+    BibleChapter(int num) {
         this.num = num;
-        verses = new HashMap<>();
+        nums = NO_NUMS;
+        offsets = NO_OFFSETS;
+        text = "";
+        verses = NO_VERSES;
+        verseList = Collections.emptyList();
     }
 
     @Override
     public int hashCode() {
         int hash = 3;
         hash = 67 * hash + this.num;
-        hash = 67 * hash + Objects.hashCode(this.verses);
+        hash = 67 * hash + Arrays.hashCode(this.nums);
+        hash = 67 * hash + this.text.length();
         return hash;
     }
 
@@ -70,10 +90,9 @@ public final class BibleChapter implements BibleInterface, Serializable {
         if (this.num != other.num) {
             return false;
         }
-        if (!Objects.equals(this.verses, other.verses)) {
-            return false;
-        }
-        return true;
+        return Arrays.equals(this.nums, other.nums)
+                && Arrays.equals(this.offsets, other.offsets)
+                && this.text.equals(other.text);
     }
 
     /**
@@ -131,6 +150,7 @@ public final class BibleChapter implements BibleInterface, Serializable {
                 }
             }
         }
+        ret.compact();
         return ret;
     }
 
@@ -148,7 +168,7 @@ public final class BibleChapter implements BibleInterface, Serializable {
             ret.append('\"');
         }
         ret.append(">");
-        for (BibleVerse verse : verses.values()) {
+        for (BibleVerse verse : verses) {
             ret.append(Utils.escapeXML(verse.toXML()));
         }
         ret.append("</chapter>");
@@ -166,21 +186,112 @@ public final class BibleChapter implements BibleInterface, Serializable {
     }
 
     /**
-     * Add a verse to this chapter.
+     * Add a verse to this chapter. Verses added this way aren't part of the
+     * chapter until compact() is called. If more than one verse is added with
+     * the same number, the last one wins.
      * <p/>
      * @param verse the verse to add.
      */
-    private void addVerse(BibleVerse verse) {
-        verses.put(verse.getNum(), verse);
+    void addVerse(BibleVerse verse) {
+        if (pending == null) {
+            pending = new ArrayList<>();
+        }
+        pending.add(verse);
+    }
+
+    /**
+     * Pack the verses added with addVerse() into this chapter's arrays.
+     */
+    void compact() {
+        if (pending == null) {
+            return;
+        }
+        List<BibleVerse> added = pending;
+        pending = null;
+        added.sort((v1, v2) -> Integer.compare(v1.getNum(), v2.getNum()));
+        int count = 0;
+        int length = 0;
+        for (int i = 0; i < added.size(); i++) {
+            if (i + 1 < added.size() && added.get(i + 1).getNum() == added.get(i).getNum()) {
+                added.set(i, null);
+                continue;
+            }
+            count++;
+            length += added.get(i).getVerseText().length();
+        }
+        int[] newNums = new int[count];
+        int[] newOffsets = new int[count + 1];
+        StringBuilder newText = new StringBuilder(length);
+        int v = 0;
+        for (BibleVerse verse : added) {
+            if (verse == null) {
+                continue;
+            }
+            newNums[v] = verse.getNum();
+            newText.append(verse.getVerseText());
+            newOffsets[v + 1] = newText.length();
+            v++;
+        }
+        setVerses(newNums, newOffsets, newText.toString());
+    }
+
+    /**
+     * Set all the verses in this chapter at once.
+     * <p/>
+     * @param nums the verse numbers, in ascending order.
+     * @param offsets the offset of the start of each verse in the text, with
+     * the length of the text on the end (so one longer than nums.)
+     * @param text the text of every verse, one after the other.
+     */
+    void setVerses(int[] nums, int[] offsets, String text) {
+        this.nums = nums;
+        this.offsets = offsets;
+        this.text = text;
+        BibleVerse[] newVerses = new BibleVerse[nums.length];
+        for (int i = 0; i < nums.length; i++) {
+            newVerses[i] = new BibleVerse(this, i);
+        }
+        verses = newVerses;
+        verseList = Collections.unmodifiableList(Arrays.asList(newVerses));
     }
 
     /**
-     * Get all the verses in this chapter .
+     * Get all the verses in this chapter, in verse number order.
      * <p/>
      * @return all the verses in the chapter.
      */
     public BibleVerse[] getVerses() {
-        return verses.values().toArray(new BibleVerse[verses.size()]);
+        return verses.clone();
+    }
+
+    /**
+     * Get the verses in this chapter whose numbers fall in the given range.
+     * The list returned is a view onto this chapter, so nothing is copied.
+     * <p/>
+     * @param from the first verse number to get (inclusive.)
+     * @param to the last verse number to get (inclusive.)
+     * @return the verses in the range, in verse number order.
+     */
+    public List<BibleVerse> getVerses(int from, int to) {
+        int start = search(from);
+        if (start < 0) {
+            start = -start - 1;
+        }
+        int end = search(to);
+        end = end < 0 ? -end - 1 : end + 1;
+        if (start >= end) {
+            return Collections.emptyList();
+        }
+        return getVerseList().subList(start, end);
+    }
+
+    /**
+     * Get the number of verses in this chapter.
+     * <p/>
+     * @return the number of verses.
+     */
+    public int getVerseCount() {
+        return nums.length;
     }
 
     /**
@@ -190,7 +301,40 @@ public final class BibleChapter implements BibleInterface, Serializable {
      * @return the verse at the specified number, or null if it doesn't exist.
      */
     public BibleVerse getVerse(int i) {
-        return verses.get(i);
+        int index = search(i);
+        return index < 0 ? null : verses[index];
+    }
+
+    /**
+     * Get the number of the verse at the given position in this chapter.
+     * <p/>
+     * @param index the position of the verse.
+     * @return the verse number.
+     */
+    int getVerseNum(int index) {
+        return nums[index];
+    }
+
+    /**
+     * Get the text of the verse at the given position in this chapter. This
+     * makes a new string, so BibleVerse keeps the result.
+     * <p/>
+     * @param index the position of the verse.
+     * @return the text of the verse.
+     */
+    String getVerseText(int index) {
+        return text.substring(offsets[index], offsets[index + 1]);
+    }
+
+    /**
+     * Get the text of the verse at the given position in this chapter as a
+     * view onto the chapter's text, without copying it.
+     * <p/>
+     * @param index the position of the verse.
+     * @return the text of the verse.
+     */
+    CharSequence getVerseChars(int index) {
+        return CharBuffer.wrap(text, offsets[index], offsets[index + 1]);
     }
 
     /**
@@ -199,15 +343,29 @@ public final class BibleChapter implements BibleInterface, Serializable {
      * @return all the text in this chapter as a string.
      */
     public String getFullText() {
-        if (softRefText == null || softRefText.get() == null) {
-            StringBuilder ret = new StringBuilder();
-            for (BibleVerse verse : getVerses()) {
-                ret.append(verse.toString()).append(' ');
-            }
-            String hardText = ret.toString();
-            this.softRefText = new SoftReference<>(hardText);
+        StringBuilder ret = new StringBuilder(text.length() + nums.length * 6);
+        for (int i = 0; i < nums.length; i++) {
+            ret.append(nums[i]).append(' ');
+            ret.append(text, offsets[i], offsets[i + 1]).append(' ');
+        }
+        return ret.toString();
+    }
+
+    /**
+     * Find the position of a verse number in this chapter.
+     * <p/>
+     * @param verseNum the verse number.
+     * @return the position as given by Arrays.binarySearch().
+     */
+    private int search(int verseNum) {
+        return Arrays.binarySearch(nums, verseNum);
+    }
+
+    private List<BibleVerse> getVerseList() {
+        if (verseList == null) {
+            verseList = Collections.unmodifiableList(Arrays.asList(verses));
         }
-        return softRefText.get();
+        return verseList;
     }
 
     /**
@@ -47,9 +47,9 @@ public class BibleInfo implements Serializable {
     }
 
     /**
-     * For internal use only.
+     * Create a new bible info object with no attributes.
      */
-    private BibleInfo() {
+    BibleInfo() {
         attributes = new HashMap<>();
     }
 
@@ -19,14 +19,14 @@ package org.quelea.data.bible;
 
 import java.io.File;
 import java.util.ArrayList;
-import java.util.Arrays;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import javafx.application.Platform;
 import org.quelea.services.languages.LabelGrabber;
 import org.quelea.services.lucene.BibleSearchIndex;
-import org.quelea.services.lucene.SearchIndex;
 import org.quelea.services.utils.LoggerUtils;
 import org.quelea.services.utils.QueleaProperties;
 import org.quelea.services.utils.Utils;
@@ -43,8 +43,9 @@ public final class BibleManager {
     private static final Logger LOGGER = LoggerUtils.getLogger();
     private static final BibleManager INSTANCE = new BibleManager();
     private final List<Bible> bibles;
+    private final Map<Bible, String> fingerprints;
     private final List<BibleChangeListener> listeners;
-    private final SearchIndex<BibleChapter> index;
+    private final BibleSearchIndex index;
     private boolean indexInit;
     private final List<Runnable> onIndexInit;
 
@@ -53,6 +54,7 @@ public final class BibleManager {
      */
     private BibleManager() {
         bibles = new ArrayList<>();
+        fingerprints = new LinkedHashMap<>();
         listeners = new ArrayList<>();
         index = new BibleSearchIndex();
         indexInit = false;
@@ -117,7 +119,7 @@ public final class BibleManager {
      * <p/>
      * @return the search index.
      */
-    public SearchIndex<BibleChapter> getIndex() {
+    public BibleSearchIndex getIndex() {
         return index;
     }
     
@@ -149,18 +151,23 @@ public final class BibleManager {
             indexInit = false;
         }
         bibles.clear();
+        fingerprints.clear();
         File biblesFile = QueleaProperties.get().getBibleDir();
         if(!biblesFile.exists()) {
             biblesFile.mkdir();
         }
+        List<File> bibleFiles = new ArrayList<>();
         for(File file : biblesFile.listFiles()) {
             if(file.getName().toLowerCase().endsWith(".xml") || file.getName().toLowerCase().endsWith(".xmm")) {
+                bibleFiles.add(file);
                 final Bible bible = Bible.parseBible(file);
                 if(bible != null) {
                     bibles.add(bible);
+                    fingerprints.put(bible, getFingerprint(file));
                 }
             }
         }
+        BibleCache.removeUnused(bibleFiles);
         if(updateIndex) {
             buildIndex();
         }
@@ -176,9 +183,34 @@ public final class BibleManager {
     }
 
     /**
-     * Builds the search index from the current bibles.
+     * Get a fingerprint of a bible file, which changes whenever the file is
+     * replaced or modified.
+     * <p/>
+     * @param file the bible file.
+     * @return the fingerprint of the file.
+     */
+    private static String getFingerprint(File file) {
+        return file.getAbsolutePath() + '|' + file.length() + '|' + file.lastModified();
+    }
+
+    /**
+     * Brings the search index up to date with the current bibles. The index
+     * is kept on disk, so this only has to index bibles that have been added
+     * or changed since it was last run - if there aren't any, the index is
+     * ready straight away, otherwise they're indexed in the background.
      */
     public void buildIndex() {
+        final Map<Bible, String> bibleFingerprints = new LinkedHashMap<>(fingerprints);
+        if(index.isUpToDate(bibleFingerprints)) {
+            index.sync(bibleFingerprints);
+            LOGGER.log(Level.INFO, "Bible index is up to date");
+            indexInit = true;
+            for(Runnable r : onIndexInit) {
+                r.run();
+            }
+            onIndexInit.clear();
+            return;
+        }
         indexInit = false;
         final StatusPanel[] panel = new StatusPanel[1];
         if(QueleaApp.get().getMainWindow() != null) {
@@ -194,18 +226,9 @@ public final class BibleManager {
         new Thread() {
             @Override
             public void run() {
-                LOGGER.log(Level.INFO, "Adding bibles to index");
-                List<BibleChapter> chapters = new ArrayList<>(bibles.size() * 66);
-                for(Bible bible : bibles) {
-                    LOGGER.log(Level.FINE, "Adding {0} bible to index", bible.getName());
-                    index.clear();
-                    for(BibleBook book : bible.getBooks()) {
-                        chapters.addAll(Arrays.asList(book.getChapters()));
-                    }
-                    LOGGER.log(Level.FINE, "Added {0}.", bible.getName());
-                }
-                index.addAll(chapters);
-                LOGGER.log(Level.INFO, "Finished Adding bibles to index");
+                LOGGER.log(Level.INFO, "Updating bible index");
+                index.sync(bibleFingerprints);
+                LOGGER.log(Level.INFO, "Finished updating bible index");
                 indexInit = true;
                 for(Runnable r : onIndexInit) {
                     r.run();
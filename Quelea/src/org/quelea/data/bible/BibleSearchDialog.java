@@ -17,9 +17,9 @@
  */
 package org.quelea.data.bible;
 
+import java.util.List;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
-import javafx.application.Platform;
 import javafx.beans.value.ChangeListener;
 import javafx.beans.value.ObservableValue;
 import javafx.event.ActionEvent;
@@ -44,6 +44,8 @@ import javafx.stage.Stage;
 import javafx.stage.WindowEvent;
 import org.quelea.data.displayable.BiblePassage;
 import org.quelea.services.languages.LabelGrabber;
+import org.quelea.services.lucene.BibleSearchResults;
+import org.quelea.services.utils.Utils;
 import org.quelea.windows.main.QueleaApp;
 import org.quelea.windows.main.widgets.LoadingPane;
 
@@ -163,6 +165,10 @@ public class BibleSearchDialog extends Stage implements BibleChangeListener {
         });
     }
 
+    /**
+     * The number of results added to the tree at once.
+     */
+    private static final int PAGE_SIZE = 250;
     private ExecutorService updateExecutor = Executors.newSingleThreadExecutor();
     private ExecRunnable lastUpdateRunnable = null;
 
@@ -180,6 +186,7 @@ public class BibleSearchDialog extends Stage implements BibleChangeListener {
             if (BibleManager.get().isIndexInit()) {
                 searchResults.reset();
                 overlay.show();
+                final String bibleName = bibles.getSelectionModel().getSelectedIndex() == 0 ? null : bibles.getSelectionModel().getSelectedItem();
                 ExecRunnable execRunnable = new ExecRunnable() {
                     private volatile boolean cancel = false;
 
@@ -191,30 +198,34 @@ public class BibleSearchDialog extends Stage implements BibleChangeListener {
                         if (cancel) {
                             return;
                         }
-                        final BibleChapter[] results = BibleManager.get().getIndex().filter(text, null);
-                        Platform.runLater(new Runnable() {
+                        final BibleSearchResults results = BibleManager.get().getIndex().search(text, bibleName);
+                        Utils.fxRunAndWait(new Runnable() {
                             @Override
                             public void run() {
                                 searchResults.reset();
-                                if (!text.trim().isEmpty()) {
-                                    for (BibleChapter chapter : results) {
-                                        if (bibles.getSelectionModel().getSelectedIndex() == 0 || chapter.getBook().getBible().getName().equals(bibles.getSelectionModel().getSelectedItem())) {
-                                            for (BibleVerse verse : chapter.getVerses()) {
-                                                if (verse.getText().toLowerCase().contains(text.toLowerCase())) {
-                                                    searchResults.add(verse);
-                                                }
-                                            }
-                                        }
-                                    }
-                                }
-                                overlay.hide();
                                 String resultsfoundSuffix = LabelGrabber.INSTANCE.getLabel("bible.search.results.found");
-                                if (searchResults.size() == 1 && LabelGrabber.INSTANCE.isLocallyDefined("bible.search.result.found")) {
+                                if (results.size() == 1 && LabelGrabber.INSTANCE.isLocallyDefined("bible.search.result.found")) {
                                     resultsfoundSuffix = LabelGrabber.INSTANCE.getLabel("bible.search.result.found");
                                 }
-                                resultsField.setText(" " + searchResults.size() + " " + resultsfoundSuffix);
+                                resultsField.setText(" " + results.size() + " " + resultsfoundSuffix);
+                                if (results.size() == 0) {
+                                    overlay.hide();
+                                }
                             }
                         });
+                        //Hand the results over a page at a time so the UI stays responsive
+                        for (int start = 0; start < results.size() && !cancel; start += PAGE_SIZE) {
+                            final List<BibleVerse> page = results.getVerses(start, Math.min(results.size(), start + PAGE_SIZE));
+                            Utils.fxRunAndWait(new Runnable() {
+                                @Override
+                                public void run() {
+                                    if (!cancel) {
+                                        searchResults.addAll(page);
+                                        overlay.hide();
+                                    }
+                                }
+                            });
+                        }
                     }
                 };
                 if (lastUpdateRunnable != null) {
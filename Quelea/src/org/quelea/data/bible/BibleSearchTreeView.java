@@ -18,6 +18,7 @@
 package org.quelea.data.bible;
 
 import java.util.Collection;
+import java.util.List;
 import javafx.application.Platform;
 import javafx.event.Event;
 import javafx.event.EventHandler;
@@ -47,6 +48,7 @@ public class BibleSearchTreeView extends TreeView<BibleInterface> {
     private ComboBox bibles;
     private boolean all = true;
     private int size;
+    private TreeItem<BibleInterface> lastChapter;
 
     /**
      * Constructs a TreeView object with a blank root BibleInterface item.
@@ -141,6 +143,7 @@ public class BibleSearchTreeView extends TreeView<BibleInterface> {
 
         //Get the current chapter.
         TreeItem<BibleInterface> cchapter = existsOrCreateInt(cbook.getChildren(), chapter);
+        lastChapter = cchapter;
 
         //See if verse is in results, or add it.
         TreeItem<BibleInterface> cverse = new TreeItem<BibleInterface>(verse);
@@ -150,6 +153,24 @@ public class BibleSearchTreeView extends TreeView<BibleInterface> {
         }
     }
 
+    /**
+     * Adds a page of results into the treeview. Results come back from the
+     * search index in bible order, so most verses are in the same chapter as
+     * the one before and can be added without searching the tree.
+     * <p/>
+     * @param verses the verses to add into the tree.
+     */
+    public void addAll(List<BibleVerse> verses) {
+        for (BibleVerse verse : verses) {
+            if (lastChapter != null && lastChapter.getValue() == verse.getParent()) {
+                lastChapter.getChildren().add(new TreeItem<BibleInterface>(verse));
+                size++;
+            } else {
+                add(verse);
+            }
+        }
+    }
+
     public int size() {
         return size;
     }
@@ -185,7 +206,8 @@ public class BibleSearchTreeView extends TreeView<BibleInterface> {
             all = true;
         }
         root = getRoot();
+        lastChapter = null;
         size = 0;
         this.setShowRoot(false);
     }
-}
\ No newline at end of file
+}
\ No newline at end of file
@@ -0,0 +1,323 @@
+/*
+ * This file is part of Quelea, free projection software for churches.
+ *
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.quelea.data.bible;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.Reader;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import org.quelea.services.utils.LoggerUtils;
+import org.quelea.services.utils.UnicodeReader;
+import org.quelea.services.utils.Utils;
+
+/**
+ * Parses a bible file with a streaming (StAX) parser, so the file never has
+ * to be held in memory as a DOM tree.
+ * <p/>
+ * This understands the same elements and attributes as the parseXML()
+ * methods on the bible classes, and numbers books and chapters without a
+ * number attribute the same way (by their position amongst all the nodes of
+ * their parent.)
+ * <p/>
+ * @author Michael
+ */
+final class BibleStreamParser {
+
+    private static final Logger LOGGER = LoggerUtils.getLogger();
+    private final XMLStreamReader reader;
+
+    private BibleStreamParser(XMLStreamReader reader) {
+        this.reader = reader;
+    }
+
+    /**
+     * Parse the given bible file.
+     * <p/>
+     * @param file the bible file.
+     * @return the bible, or null if the file doesn't contain a bible.
+     * @throws IOException if the file couldn't be read.
+     * @throws XMLStreamException if the file isn't valid XML.
+     */
+    static Bible parse(File file) throws IOException, XMLStreamException {
+        try (Reader in = new UnicodeReader(new FileInputStream(file), "UTF-8")) {
+            XMLStreamReader reader = XMLInputFactory.newInstance().createXMLStreamReader(in);
+            try {
+                return new BibleStreamParser(reader).parseDocument(Utils.getFileNameWithoutExtension(file.getName()));
+            }
+            finally {
+                reader.close();
+            }
+        }
+    }
+
+    private Bible parseDocument(String defaultName) throws XMLStreamException {
+        while (reader.hasNext()) {
+            if (reader.next() == XMLStreamConstants.START_ELEMENT) {
+                String name = getName();
+                if (name.equalsIgnoreCase("xmlbible") || name.equalsIgnoreCase("bible")) {
+                    return parseBible(defaultName);
+                }
+                skipElement();
+            }
+        }
+        LOGGER.log(Level.WARNING, "Couldn''t parse the bible {0} because I couldn''t find any <bible> or <xmlbible> root tags :-(", defaultName);
+        return null;
+    }
+
+    private Bible parseBible(String defaultName) throws XMLStreamException {
+        String name = getAttribute("biblename");
+        if (name == null) {
+            name = defaultName;
+        }
+        Bible ret = new Bible(name);
+        ChildCounter counter = new ChildCounter();
+        while (nextChild(counter)) {
+            String childName = getName();
+            if (childName.equalsIgnoreCase("information")) {
+                ret.setInformation(parseInformation());
+            }
+            else if (childName.equalsIgnoreCase("biblebook")
+                    || childName.equalsIgnoreCase("b")
+                    || childName.equalsIgnoreCase("book")) {
+                BibleBook book = parseBook(counter.index);
+                book.setBible(ret);
+                ret.addBook(book);
+            }
+            else {
+                skipElement();
+            }
+        }
+        LOGGER.log(Level.INFO, "Parsed bible: {0}. Contains {1} books.", new Object[]{ret.getName(), ret.getBooks().length});
+        return ret;
+    }
+
+    private BibleInfo parseInformation() throws XMLStreamException {
+        BibleInfo ret = new BibleInfo();
+        ChildCounter counter = new ChildCounter();
+        while (nextChild(counter)) {
+            String name = getName();
+            ret.putAttribute(name, readText());
+        }
+        return ret;
+    }
+
+    private BibleBook parseBook(int defaultBookNum) throws XMLStreamException {
+        String bnumber = getAttribute("bnumber");
+        int bookNumber = bnumber == null ? defaultBookNum : Integer.parseInt(bnumber.trim());
+        String bookName = getAttribute("bname");
+        if (bookName == null) {
+            bookName = getAttribute("n");
+        }
+        if (bookName == null) {
+            bookName = getAttribute("name");
+        }
+        if (bookName == null) {
+            bookName = "Book " + bookNumber;
+        }
+        String bsname = getAttribute("bsname");
+        if (bsname == null) {
+            bsname = bookName;
+        }
+        BibleBook ret = new BibleBook(bookNumber, bookName, bsname);
+        ChildCounter counter = new ChildCounter();
+        while (nextChild(counter)) {
+            String name = getName();
+            if (name.equalsIgnoreCase("chapter") || name.equalsIgnoreCase("c")) {
+                BibleChapter chapter = parseChapter(counter.index);
+                chapter.setBook(ret);
+                ret.addChapter(chapter);
+            }
+            else {
+                skipElement();
+            }
+        }
+        return ret;
+    }
+
+    private BibleChapter parseChapter(int defaultNum) throws XMLStreamException {
+        int num = -1;
+        String numStr = getAttribute("cnumber");
+        if (numStr == null) {
+            numStr = getAttribute("n");
+        }
+        if (numStr != null) {
+            try {
+                num = Integer.parseInt(numStr.trim());
+            }
+            catch (NumberFormatException ex) {
+            }
+        }
+        if (num == -1) {
+            num = defaultNum;
+        }
+        BibleChapter ret = new BibleChapter(num);
+        ChildCounter counter = new ChildCounter();
+        while (nextChild(counter)) {
+            String name = getName();
+            if (name.equalsIgnoreCase("vers") || name.equalsIgnoreCase("v")) {
+                BibleVerse verse = parseVerse();
+                if (verse != null) {
+                    verse.setChapter(ret);
+                    ret.addVerse(verse);
+                }
+            }
+            else {
+                skipElement();
+            }
+        }
+        ret.compact();
+        return ret;
+    }
+
+    private BibleVerse parseVerse() throws XMLStreamException {
+        String numStr = getAttribute("vnumber");
+        if (numStr == null) {
+            numStr = getAttribute("n");
+        }
+        String text = readText();
+        if (numStr == null) {
+            return null;
+        }
+        try {
+            return new BibleVerse(Integer.parseInt(numStr.trim()), text);
+        }
+        catch (NumberFormatException ex) {
+            return null;
+        }
+    }
+
+    /**
+     * Move to the next child element of the current element, counting all
+     * the nodes passed on the way.
+     * <p/>
+     * @param counter the counter for the current element's children.
+     * @return true if the reader is now at the start of a child element,
+     * false if it's at the end of the current element.
+     */
+    private boolean nextChild(ChildCounter counter) throws XMLStreamException {
+        while (reader.hasNext()) {
+            switch (reader.next()) {
+                case XMLStreamConstants.START_ELEMENT:
+                    counter.node();
+                    return true;
+                case XMLStreamConstants.END_ELEMENT:
+                    return false;
+                case XMLStreamConstants.CHARACTERS:
+                case XMLStreamConstants.SPACE:
+                case XMLStreamConstants.ENTITY_REFERENCE:
+                    counter.text();
+                    break;
+                default:
+                    counter.node();
+                    break;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Read all the text inside the current element, leaving the reader at
+     * its end.
+     */
+    private String readText() throws XMLStreamException {
+        StringBuilder ret = new StringBuilder();
+        int depth = 1;
+        while (depth > 0 && reader.hasNext()) {
+            switch (reader.next()) {
+                case XMLStreamConstants.START_ELEMENT:
+                    depth++;
+                    break;
+                case XMLStreamConstants.END_ELEMENT:
+                    depth--;
+                    break;
+                case XMLStreamConstants.CHARACTERS:
+                case XMLStreamConstants.CDATA:
+                case XMLStreamConstants.SPACE:
+                    ret.append(reader.getTextCharacters(), reader.getTextStart(), reader.getTextLength());
+                    break;
+                default:
+                    break;
+            }
+        }
+        return ret.toString();
+    }
+
+    /**
+     * Skip over the current element, leaving the reader at its end.
+     */
+    private void skipElement() throws XMLStreamException {
+        int depth = 1;
+        while (depth > 0 && reader.hasNext()) {
+            int event = reader.next();
+            if (event == XMLStreamConstants.START_ELEMENT) {
+                depth++;
+            }
+            else if (event == XMLStreamConstants.END_ELEMENT) {
+                depth--;
+            }
+        }
+    }
+
+    private String getName() {
+        String prefix = reader.getPrefix();
+        if (prefix == null || prefix.isEmpty()) {
+            return reader.getLocalName();
+        }
+        return prefix + ":" + reader.getLocalName();
+    }
+
+    private String getAttribute(String name) {
+        for (int i = 0; i < reader.getAttributeCount(); i++) {
+            String prefix = reader.getAttributePrefix(i);
+            String localName = reader.getAttributeLocalName(i);
+            String attrName = (prefix == null || prefix.isEmpty()) ? localName : prefix + ":" + localName;
+            if (attrName.equals(name)) {
+                return reader.getAttributeValue(i);
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Tracks the index a node would have in its parent's DOM child list,
+     * where a run of text is a single node.
+     */
+    private static final class ChildCounter {
+
+        private int index = -1;
+        private boolean inText;
+
+        void node() {
+            index++;
+            inText = false;
+        }
+
+        void text() {
+            if (!inText) {
+                index++;
+                inText = true;
+            }
+        }
+    }
+}
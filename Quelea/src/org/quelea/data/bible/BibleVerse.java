@@ -24,6 +24,11 @@ import org.w3c.dom.Node;
 
 /**
  * A verse in the bible.
+ * <p>
+ * Verses that are part of a loaded bible don't hold their own text - it's
+ * read from their chapter, which stores the text of all its verses together.
+ * Verses created on their own (such as those in a saved schedule) hold their
+ * text directly.
  *
  * @author Michael
  */
@@ -32,7 +37,8 @@ public final class BibleVerse implements BibleInterface, Serializable {
     private String verse;
     private int num;
     private BibleChapter chapter;
-    private int chapterNum;
+    private int index = -1;
+    private transient volatile String text;
 
     /**
      * For internal use only.
@@ -41,10 +47,33 @@ public final class BibleVerse implements BibleInterface, Serializable {
         //For internal use
     }
 
+    /**
+     * Create a new verse.
+     *
+     * @param num the verse number.
+     * @param verse the text of the verse.
+     */
+    BibleVerse(int num, String verse) {
+        this.num = num;
+        this.verse = verse;
+    }
+
+    /**
+     * Create a new verse whose text is stored in its chapter.
+     *
+     * @param chapter the chapter this verse is part of.
+     * @param index the position of this verse in the chapter.
+     */
+    BibleVerse(BibleChapter chapter, int index) {
+        this.chapter = chapter;
+        this.index = index;
+        this.num = chapter.getVerseNum(index);
+    }
+
     @Override
     public int hashCode() {
         int hash = 5;
-        hash = 97 * hash + Objects.hashCode(this.verse);
+        hash = 97 * hash + Objects.hashCode(getVerseText());
         hash = 97 * hash + this.num;
         return hash;
     }
@@ -58,7 +87,7 @@ public final class BibleVerse implements BibleInterface, Serializable {
             return false;
         }
         final BibleVerse other = (BibleVerse) obj;
-        if (!Objects.equals(this.verse, other.verse)) {
+        if (!Objects.equals(getVerseText(), other.getVerseText())) {
             return false;
         }
         if (this.num != other.num) {
@@ -74,7 +103,6 @@ public final class BibleVerse implements BibleInterface, Serializable {
      */
     void setChapter(BibleChapter chapter) {
         this.chapter = chapter;
-        this.chapterNum = chapter.getNum();
     }
 
     /**
@@ -96,8 +124,7 @@ public final class BibleVerse implements BibleInterface, Serializable {
     public static BibleVerse parseXML(Node node) {
         BibleVerse ret = new BibleVerse();
         if (node.getAttributes().getNamedItem("cnumber") != null) {
-            ret.setChapterNum(Integer.parseInt(node.getAttributes().getNamedItem("cnumber").getTextContent()));
-            ret.setChapter(BibleChapter.parseXML(node, ret.getChapterNum()));
+            ret.setChapter(BibleChapter.parseXML(node, Integer.parseInt(node.getAttributes().getNamedItem("cnumber").getTextContent())));
         }
         try {
             if (node.getAttributes().getNamedItem("vnumber") == null) {
@@ -120,11 +147,11 @@ public final class BibleVerse implements BibleInterface, Serializable {
     public String toXML() {
         StringBuilder ret = new StringBuilder();
         ret.append("<vers cnumber=\"");
-        ret.append(chapterNum);
+        ret.append(getChapterNum());
         ret.append("\" vnumber=\"");
         ret.append(num);
         ret.append("\">");
-        ret.append(Utils.escapeXML(verse));
+        ret.append(Utils.escapeXML(getVerseText()));
         ret.append("</vers>");
         return ret.toString();
     }
@@ -136,15 +163,39 @@ public final class BibleVerse implements BibleInterface, Serializable {
      */
     @Override
     public String toString() {
-        return num + " " + verse;
+        return num + " " + getVerseText();
     }
 
     /**
-     * Get the textual content of the verse.
+     * Get the textual content of the verse. For a verse stored in its
+     * chapter the string is only made the first time it's asked for.
      *
      * @return the textual content of the verse.
      */
     public String getVerseText() {
+        if (index >= 0) {
+            String ret = text;
+            if (ret == null) {
+                ret = chapter.getVerseText(index);
+                text = ret;
+            }
+            return ret;
+        }
+        return verse;
+    }
+
+    /**
+     * Get the textual content of the verse without making or keeping a copy
+     * of it, for code that reads through many verses once (such as indexing
+     * or caching a whole bible.)
+     *
+     * @return the textual content of the verse, or null if it has none.
+     */
+    public CharSequence getVerseChars() {
+        if (index >= 0) {
+            String ret = text;
+            return ret != null ? ret : chapter.getVerseChars(index);
+        }
         return verse;
     }
 
@@ -168,11 +219,7 @@ public final class BibleVerse implements BibleInterface, Serializable {
         return getChapter();
     }
 
-    private void setChapterNum(int num) {
-        chapterNum = num;
-    }
-
     public int getChapterNum() {
-        return chapterNum;
+        return chapter == null ? 0 : chapter.getNum();
     }
 }
@@ -40,6 +40,9 @@ public class HibernateUtil {
             cfg.setProperty("hibernate.show_sql", "false");
             cfg.setProperty("hibernate.hbm2ddl.auto", "update");
             cfg.setProperty("hibernate.connection.characterEncoding", "utf8");
+            cfg.setProperty("hibernate.default_batch_fetch_size", "100"); //Load lazy associations (such as song tags) in batches
+            cfg.setProperty("hibernate.jdbc.batch_size", Integer.toString(Math.max(1, QueleaProperties.get().getDatabaseBatchSize()))); //Batch inserts when adding songs in bulk
+            cfg.setProperty("hibernate.order_inserts", "true");
             cfg.addAnnotatedClass(org.quelea.data.db.model.Song.class);//@todo add reflection code which retrieve all classes from package
             cfg.addAnnotatedClass(org.quelea.data.db.model.Theme.class);
             cfg.addAnnotatedClass(org.quelea.data.db.model.TextShadow.class);
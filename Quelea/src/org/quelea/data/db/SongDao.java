@@ -3,9 +3,18 @@ package org.quelea.data.db;
 import java.util.ArrayList;
 import java.util.Iterator;
 import java.util.List;
+import java.util.function.Consumer;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import org.hibernate.HibernateException;
+import org.hibernate.JDBCException;
 import org.hibernate.Query;
+import org.hibernate.ScrollMode;
+import org.hibernate.ScrollableResults;
 import org.hibernate.Session;
 import org.quelea.data.db.model.Song;
+import org.quelea.data.db.model.Theme;
+import org.quelea.services.utils.LoggerUtils;
 
 /**
  * Implements song entities retrieval operations.
@@ -14,6 +23,8 @@ import org.quelea.data.db.model.Song;
  */
 public class SongDao {
 
+    private static final Logger LOGGER = LoggerUtils.getLogger();
+    private static final int FETCH_SIZE = 500;
     private Session session = null;
 
     public SongDao(Session session) {
@@ -41,4 +52,77 @@ public class SongDao {
         return ret;
     }
 
+    /**
+     * Get the number of songs in the database.
+     *
+     * @return the number of songs.
+     */
+    public int countSongs() {
+        return ((Number) session.createQuery("select count(*) from Song").uniqueResult()).intValue();
+    }
+
+    /**
+     * Get the number of songs that use the given theme.
+     *
+     * @param theme the theme.
+     * @return the number of songs using the theme.
+     */
+    public int countSongsWithTheme(Theme theme) {
+        return ((Number) session.createQuery("select count(*) from Song s where s.theme = :theme")
+                .setParameter("theme", theme).uniqueResult()).intValue();
+    }
+
+    /**
+     * Get all the songs in the database in bulk.
+     *
+     * @return all the songs in the database.
+     * @see #streamSongs(Consumer)
+     */
+    public List<Song> getSongsBulk() {
+        List<Song> ret = new ArrayList<>();
+        streamSongs(ret::add);
+        return ret;
+    }
+
+    /**
+     * Stream all the songs in the database to the given consumer as they're
+     * read. Rather than selecting each song individually, the songs come
+     * through a single cursor with their themes (and the themes' shadows)
+     * joined in the same query; tags are then loaded in batches as they're
+     * accessed. The songs are read only, so they shouldn't be modified in this
+     * session. The consumer is called on the current thread, and must not
+     * hand the songs' lazy associations to another thread.
+     * <p>
+     * As with getSongs(), a song that can't be loaded is skipped rather than
+     * failing the whole lot. If the cursor itself fails, the exception is
+     * thrown and the caller should fall back to getSongs().
+     *
+     * @param consumer the consumer to pass each song to.
+     */
+    public void streamSongs(Consumer<Song> consumer) {
+        Query getAllSongQuery = session.createQuery("select s from Song s left join fetch s.theme t left join fetch t.textShadow");
+        getAllSongQuery.setReadOnly(true);
+        getAllSongQuery.setFetchSize(FETCH_SIZE);
+        ScrollableResults results = getAllSongQuery.scroll(ScrollMode.FORWARD_ONLY);
+        try {
+            while (true) {
+                Song song;
+                try {
+                    if (!results.next()) {
+                        break;
+                    }
+                    song = (Song) results.get(0);
+                } catch (JDBCException ex) {
+                    throw ex;
+                } catch (HibernateException ex) {
+                    LOGGER.log(Level.WARNING, "Couldn't load song, skipping...", ex);
+                    continue;
+                }
+                consumer.accept(song);
+            }
+        } finally {
+            results.close();
+        }
+    }
+
 }
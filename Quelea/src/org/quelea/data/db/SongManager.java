@@ -21,10 +21,14 @@ import java.lang.ref.SoftReference;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
-import java.util.TreeSet;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import javafx.application.Platform;
@@ -38,6 +42,8 @@ import org.quelea.data.displayable.TextSection;
 import org.quelea.services.lucene.SongSearchIndex;
 import org.quelea.services.utils.DatabaseListener;
 import org.quelea.services.utils.LoggerUtils;
+import org.quelea.services.utils.QueleaProperties;
+import org.quelea.services.utils.SongDuplicateIndex;
 import org.quelea.windows.main.widgets.LoadingPane;
 
 /**
@@ -50,7 +56,7 @@ public final class SongManager {
     private static final Logger LOGGER = LoggerUtils.getLogger();
     private static volatile SongManager INSTANCE;
     private final SongSearchIndex index;
-    private boolean indexIsClear;
+    private final SongDuplicateIndex duplicateIndex;
     private SoftReference<SongDisplayable[]> cacheSongs = new SoftReference<>(null);
     private final Set<DatabaseListener> listeners;
 
@@ -59,8 +65,8 @@ public final class SongManager {
      */
     private SongManager() {
         listeners = new HashSet<>();
-        indexIsClear = true;
         index = new SongSearchIndex();
+        duplicateIndex = new SongDuplicateIndex();
     }
 
     /**
@@ -89,6 +95,15 @@ public final class SongManager {
         return index;
     }
 
+    /**
+     * Get the index used to check new songs for duplicates.
+     * <p/>
+     * @return the duplicate index.
+     */
+    public SongDuplicateIndex getDuplicateIndex() {
+        return duplicateIndex;
+    }
+
     /**
      * Register a database listener with this database.
      * <p/>
@@ -112,76 +127,170 @@ public final class SongManager {
     }
 
     /**
-     * Get all the songs in the database.
+     * Get all the songs in the database. Songs are read from the database on
+     * the calling thread, and their lyrics and themes are parsed in parallel
+     * on the fork join pool as they arrive; the whole lot is then sorted once
+     * at the end.
      * <p/>
+     * @param loadingPane the loading pane to update with progress, or null.
      * @return an array of all the songs in the database.
      */
     public synchronized SongDisplayable[] getSongs(LoadingPane loadingPane) {
         if (cacheSongs.get() != null) {
             return cacheSongs.get();
         }
-        final Set<SongDisplayable> songs = new TreeSet<>();
-        HibernateUtil.execute((Session session) -> {
-            List<Song> songsList = new SongDao(session).getSongs();
-            for (int si = 0; si < songsList.size(); si++) {
-                final int finalSi = si;
-                if (loadingPane != null) {
-                    Platform.runLater(() -> {
-                        loadingPane.setProgress((double) finalSi / songsList.size());
-                    });
-                }
-                Song song = songsList.get(si);
-                try {
-                    song.getTitle();
-                } catch (Exception ex) {
-                    /*
-                     * Sometimes (rarely) a song can become corrupt - not entirely 
-                     * sure why, but this allows us to load the database ok whilst
-                     * still skipping over the corrupt entries.
-                     */
-                    LOGGER.log(Level.WARNING, "Song with id " + song.getId() + " is corrupt, skipping...", ex);
-                    continue;
-                }
-                final String[] tags = new String[song.getTags().size()];
-                for (int i = 0; i < song.getTags().size(); i++) {
-                    tags[i] = song.getTags().get(i);
+        final List<ForkJoinTask<SongDisplayable>> tasks = new ArrayList<>();
+        final LoadProgress progress = new LoadProgress(loadingPane);
+        try {
+            HibernateUtil.execute((Session session) -> {
+                SongDao dao = new SongDao(session);
+                progress.setTotal(dao.countSongs());
+                dao.streamSongs((Song song) -> submitDisplayable(song, tasks, progress));
+            });
+        } catch (IllegalStateException ex) {
+            LOGGER.log(Level.WARNING, "Couldn't bulk load songs, loading them individually", ex);
+            for (ForkJoinTask<SongDisplayable> task : tasks) {
+                task.cancel(false);
+            }
+            tasks.clear();
+            HibernateUtil.execute((Session session) -> {
+                List<Song> songsList = new SongDao(session).getSongs();
+                progress.setTotal(songsList.size());
+                for (Song song : songsList) {
+                    submitDisplayable(song, tasks, progress);
                 }
-                final SongDisplayable songDisplayable = new SongDisplayable.Builder(song.getTitle(),
-                        song.getAuthor())
-                        .ccli(song.getCcli())
-                        .year(song.getYear())
-                        .tags(tags)
-                        .publisher(song.getPublisher())
-                        .copyright(song.getCopyright())
-                        .key(song.getKey())
-                        .info(song.getInfo())
-                        .capo(song.getCapo())
-                        .translations(song.getTranslations())
-                        .lyrics(song.getLyrics())
-                        .id(song.getId()).get();
-                final Theme theme = song.getTheme();
+            });
+        }
+
+        final List<SongDisplayable> songs = new ArrayList<>(tasks.size());
+        for (ForkJoinTask<SongDisplayable> task : tasks) {
+            try {
+                songs.add(task.join());
+            } catch (RuntimeException ex) {
+                LOGGER.log(Level.WARNING, "Couldn't parse song, skipping...", ex);
+            }
+        }
+        progress.done();
+        SongDisplayable[] songArr = sortSongs(songs);
+        index.sync(Arrays.asList(songArr));
+        duplicateIndex.setSongs(Arrays.asList(songArr));
+        cacheSongs = new SoftReference<>(songArr);
+        return songArr;
+    }
+
+    /**
+     * Start building the displayable for the given song on the fork join
+     * pool. Everything that might touch the database (including the lazily
+     * loaded tags) is read here on the session's thread; only the lyric
+     * parsing and theme conversion happen on the pool.
+     * <p/>
+     * @param song the song loaded from the database.
+     * @param tasks the list to add the build task to.
+     * @param progress the progress of the load.
+     */
+    private void submitDisplayable(Song song, List<ForkJoinTask<SongDisplayable>> tasks, LoadProgress progress) {
+        try {
+            song.getTitle();
+        } catch (Exception ex) {
+            /*
+             * Sometimes (rarely) a song can become corrupt - not entirely 
+             * sure why, but this allows us to load the database ok whilst
+             * still skipping over the corrupt entries.
+             */
+            LOGGER.log(Level.WARNING, "Song with id " + song.getId() + " is corrupt, skipping...", ex);
+            progress.increment();
+            return;
+        }
+        final String[] tags = song.getTags().toArray(new String[song.getTags().size()]);
+        final SongDisplayable.Builder builder = new SongDisplayable.Builder(song.getTitle(),
+                song.getAuthor())
+                .ccli(song.getCcli())
+                .year(song.getYear())
+                .tags(tags)
+                .publisher(song.getPublisher())
+                .copyright(song.getCopyright())
+                .key(song.getKey())
+                .info(song.getInfo())
+                .capo(song.getCapo())
+                .translations(song.getTranslations())
+                .id(song.getId());
+        final String lyrics = song.getLyrics();
+        final Theme theme = song.getTheme();
+        tasks.add(ForkJoinPool.commonPool().submit(() -> {
+            try {
+                final SongDisplayable songDisplayable = builder.lyrics(lyrics).get();
                 final ThemeDTO themedto = ThemeDTO.getDTO(theme);
                 for (TextSection section : songDisplayable.getSections()) {
                     section.setTheme(themedto);
                 }
                 songDisplayable.setTheme(themedto);
-                songs.add(songDisplayable);
+                return songDisplayable;
+            } finally {
+                progress.increment();
             }
+        }));
+    }
+
+    /**
+     * Sort the given songs into their natural order, dropping any duplicates
+     * (songs that compare as equal) in the same way a sorted set would.
+     * <p/>
+     * @param songs the songs to sort.
+     * @return the sorted array of songs.
+     */
+    private static SongDisplayable[] sortSongs(List<SongDisplayable> songs) {
+        SongDisplayable[] songArr = songs.toArray(new SongDisplayable[songs.size()]);
+        Arrays.parallelSort(songArr);
+        int size = 0;
+        for (SongDisplayable song : songArr) {
+            if (size == 0 || songArr[size - 1].compareTo(song) != 0) {
+                songArr[size++] = song;
+            }
+        }
+        return Arrays.copyOf(songArr, size);
+    }
+
+    /**
+     * Tracks how many songs have been loaded, and passes this on to a loading
+     * pane (if there is one) without flooding the FX thread with updates.
+     */
+    private static class LoadProgress {
+
+        private final LoadingPane loadingPane;
+        private final AtomicInteger count = new AtomicInteger();
+        private volatile int total;
+        private volatile int lastPercent = -1;
+
+        LoadProgress(LoadingPane loadingPane) {
+            this.loadingPane = loadingPane;
+        }
+
+        void setTotal(int total) {
+            this.total = total;
+            count.set(0);
+        }
+
+        void increment() {
+            int current = count.incrementAndGet();
+            if (loadingPane == null || total <= 0) {
+                return;
+            }
+            int percent = (int) (100L * current / total);
+            if (percent != lastPercent) {
+                lastPercent = percent;
+                Platform.runLater(() -> {
+                    loadingPane.setProgress((double) percent / 100);
+                });
+            }
+        }
+
+        void done() {
             if (loadingPane != null) {
                 Platform.runLater(() -> {
                     loadingPane.setProgress(-1);
                 });
             }
-        });
-
-        if (indexIsClear) {
-            indexIsClear = false;
-            LOGGER.log(Level.INFO, "Adding {0} songs to index", songs.size());
-            index.addAll(songs);
         }
-        SongDisplayable[] songArr = songs.toArray(new SongDisplayable[songs.size()]);
-        cacheSongs = new SoftReference<>(songArr);
-        return songArr;
     }
 
     public boolean addSong(final SongDisplayable song, final boolean fireUpdate) {
@@ -193,7 +302,11 @@ public final class SongManager {
     }
 
     /**
-     * Add a song to the database.
+     * Add songs to the database. All the songs are written in a single
+     * transaction, in batches (flushing the session after each batch so it
+     * doesn't hold on to every song at once), and songs with the same theme
+     * share a single theme row. Only the new songs are then added to the
+     * indexes and the cached songs, rather than reloading the whole database.
      * <p/>
      * @param songs the songs to add.
      * @param fireUpdate true if the update should be fired to listeners when
@@ -201,8 +314,6 @@ public final class SongManager {
      * @return true if the operation succeeded, false otherwise.
      */
     public synchronized boolean addSong(final SongDisplayable[] songs, final boolean fireUpdate) {
-        cacheSongs.clear();
-        clearIndex();
         final List<SongDisplayable> adjustedSongs = new ArrayList<>();
         for (SongDisplayable song : songs) {
             if (song.getSections().length > 0) {
@@ -212,10 +323,14 @@ public final class SongManager {
         if (adjustedSongs.isEmpty()) {
             return false;
         }
+        final int batchSize = Math.max(1, QueleaProperties.get().getDatabaseBatchSize());
+        final long[] ids = new long[adjustedSongs.size()];
         try {
             HibernateUtil.execute((Session session) -> {
-                for (SongDisplayable song : adjustedSongs) {
-                    final boolean nullTheme = song.getSections()[0].getTheme() == null;
+                final Map<String, Theme> themes = new HashMap<>();
+                for (int i = 0; i < adjustedSongs.size(); i++) {
+                    SongDisplayable song = adjustedSongs.get(i);
+                    final ThemeDTO themeDTO = song.getSections()[0].getTheme() == null ? ThemeDTO.DEFAULT_THEME : song.getSections()[0].getTheme();
                     final boolean nullTags = song.getTags() == null;
                     Song newSong = new Song(song.getTitle(),
                             song.getAuthor(),
@@ -227,16 +342,35 @@ public final class SongManager {
                             song.getKey(),
                             song.getCapo(),
                             song.getInfo(),
-                            nullTheme ? ThemeDTO.DEFAULT_THEME.getTheme() : new Theme(song.getSections()[0].getTheme().getTheme()),
+                            themes.computeIfAbsent(themeDTO.asString(), key -> themeDTO.getTheme()),
                             nullTags ? new ArrayList<>() : Arrays.asList(song.getTags()),
                             song.getTranslations());
                     session.save(newSong);
+                    ids[i] = newSong.getId();
+                    if ((i + 1) % batchSize == 0) {
+                        session.flush();
+                        session.clear();
+                        themes.replaceAll((key, theme) -> (Theme) session.load(Theme.class, theme.getId()));
+                    }
                 }
             });
         } catch (IllegalStateException ex) {
-            LOGGER.log(Level.WARNING, "Couldn't add song", ex);
+            LOGGER.log(Level.WARNING, "Couldn't add songs", ex);
+            return false;
+        }
+        for (int i = 0; i < ids.length; i++) {
+            adjustedSongs.get(i).setID(ids[i]);
+        }
+        index.addAll(adjustedSongs);
+        for (SongDisplayable song : adjustedSongs) {
+            duplicateIndex.add(song);
+        }
+        SongDisplayable[] cached = cacheSongs.get();
+        if (cached != null) {
+            List<SongDisplayable> merged = new ArrayList<>(Arrays.asList(cached));
+            merged.addAll(adjustedSongs);
+            cacheSongs = new SoftReference<>(sortSongs(merged));
         }
-        getSongs();
         if (fireUpdate) {
             fireUpdate();
         }
@@ -262,7 +396,6 @@ public final class SongManager {
      * @return true if the operation succeeded, false otherwise.
      */
     public synchronized boolean updateSong(final SongDisplayable song, boolean addIfNotFound) {
-        index.remove(song);
         try {
             HibernateUtil.execute((Session session) -> {
                 Song updatedSong;
@@ -284,7 +417,8 @@ public final class SongManager {
                     updatedSong.setTranslations(song.getTranslations());
                     updatedSong.setTheme(nullTheme ? ThemeDTO.DEFAULT_THEME.getTheme() : new Theme(song.getSections()[0].getTheme().getTheme()));
                     session.update(updatedSong);
-                    index.add(song);
+                    index.update(song);
+                    duplicateIndex.add(song);
                 } catch (ObjectNotFoundException e) {
                     LOGGER.log(Level.INFO, "Updating song that doesn't exist, adding instead");
                     addSong(song, true);
@@ -317,21 +451,24 @@ public final class SongManager {
         cacheSongs.clear();
         try {
             HibernateUtil.execute((Session session) -> {
-                Song deletedSong = new SongDao(session).getSongById(song.getID());
+                SongDao dao = new SongDao(session);
+                Song deletedSong = dao.getSongById(song.getID());
+                Theme theme = deletedSong.getTheme();
+                //Themes may be shared between songs, so only delete this one if nothing else uses it
+                deletedSong.setTheme(null);
                 session.delete(deletedSong);
+                if (theme != null && dao.countSongsWithTheme(theme) == 0) {
+                    session.delete(theme);
+                }
             });
         } catch (IllegalStateException ex) {
             LOGGER.log(Level.WARNING, "Couldn't remove song " + song.getID(), ex);
             return false;
         }
         index.remove(song);
+        duplicateIndex.remove(song);
         fireUpdate();
         LOGGER.log(Level.INFO, "Removed song {0}", song.getID());
         return true;
     }
-
-    private void clearIndex() {
-        index.clear();
-        indexIsClear = true;
-    }
 }
@@ -127,6 +127,7 @@ public class PdfDisplayable implements Displayable {
      */
     @Override
     public void dispose() {
+        presentation.dispose();
     }
 
     /**
@@ -166,6 +166,7 @@ public class PresentationDisplayable implements Displayable {
      */
     @Override
     public void dispose() {
+        presentation.dispose();
         if(ooPresentation != null) {
             ooPresentation.dispose();
         }
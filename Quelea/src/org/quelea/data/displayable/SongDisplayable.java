@@ -22,6 +22,7 @@ import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.Serializable;
+import java.text.CollationKey;
 import java.text.Collator;
 import java.util.ArrayList;
 import java.util.Collection;
@@ -272,6 +273,7 @@ public class SongDisplayable implements TextDisplayable, Comparable<SongDisplaya
     private long id = 0;
     private boolean printChords;
     private String lastSearch = "";
+    private transient volatile SortKey sortKey;
 
     /**
      * Copy constructor - creates a shallow copy.
@@ -485,6 +487,7 @@ public class SongDisplayable implements TextDisplayable, Comparable<SongDisplaya
      */
     public void setTitle(String title) {
         this.title = title;
+        sortKey = null;
         refreshLyrics();
     }
 
@@ -508,6 +511,7 @@ public class SongDisplayable implements TextDisplayable, Comparable<SongDisplaya
      */
     public void setAuthor(String author) {
         this.author = author;
+        sortKey = null;
         refreshLyrics();
     }
 
@@ -814,6 +818,7 @@ public class SongDisplayable implements TextDisplayable, Comparable<SongDisplaya
             }
             sections.add(new TextSection(sectionTitle, newLyrics, smallLines, true));
         }
+        sortKey = null;
     }
 
     /**
@@ -826,6 +831,7 @@ public class SongDisplayable implements TextDisplayable, Comparable<SongDisplaya
             section.setTheme(theme);
         }
         sections.add(section);
+        sortKey = null;
     }
 
     /**
@@ -839,6 +845,7 @@ public class SongDisplayable implements TextDisplayable, Comparable<SongDisplaya
             section.setTheme(theme);
         }
         sections.add(index, section);
+        sortKey = null;
     }
 
     /**
@@ -860,6 +867,7 @@ public class SongDisplayable implements TextDisplayable, Comparable<SongDisplaya
      */
     public void replaceSection(TextSection newSection, int index) {
         sections.set(index, newSection);
+        sortKey = null;
     }
 
     /**
@@ -869,6 +877,7 @@ public class SongDisplayable implements TextDisplayable, Comparable<SongDisplaya
      */
     public void removeSection(int index) {
         sections.remove(index);
+        sortKey = null;
     }
 
     /**
@@ -1208,6 +1217,8 @@ public class SongDisplayable implements TextDisplayable, Comparable<SongDisplaya
 
     /**
      * Compare this song to another song, first by title and then by author.
+     * Songs with the same title and author are ordered by a hash of their
+     * lyrics, so they only compare as equal if their lyrics are the same.
      * <p/>
      * @param other the other song.
      * @return 1 if this song is greater than the other song, 0 if they're the
@@ -1215,19 +1226,58 @@ public class SongDisplayable implements TextDisplayable, Comparable<SongDisplaya
      */
     @Override
     public int compareTo(SongDisplayable other) {
-        Collator collator = Collator.getInstance();
-        int result = collator.compare(getTitle(), other.getTitle());
+        SortKey key = getSortKey();
+        SortKey otherKey = other.getSortKey();
+        int result = key.title.compareTo(otherKey.title);
         if (result == 0) {
-            if (getAuthor() != null && other.getAuthor() != null) {
-                result = collator.compare(getAuthor(), other.getAuthor());
+            if (key.author != null && otherKey.author != null) {
+                result = key.author.compareTo(otherKey.author);
             }
-            if (result == 0 && getLyrics(false, false) != null && other.getLyrics(false, false) != null) {
-                result = collator.compare(getLyrics(false, false), other.getLyrics(false, false));
+            if (result == 0) {
+                result = Long.compare(key.lyricsHash, otherKey.lyricsHash);
             }
         }
         return result;
     }
 
+    /**
+     * Get the key used to sort this song, creating it if it's been
+     * invalidated by a change to the song since it was last used.
+     * <p/>
+     * @return the sort key.
+     */
+    private SortKey getSortKey() {
+        SortKey key = sortKey;
+        if (key == null) {
+            key = new SortKey(this);
+            sortKey = key;
+        }
+        return key;
+    }
+
+    /**
+     * The precomputed key used to sort songs, so comparing two songs doesn't
+     * need to run the collator or rebuild the lyrics each time.
+     */
+    private static final class SortKey {
+
+        private final CollationKey title;
+        private final CollationKey author;
+        private final long lyricsHash;
+
+        SortKey(SongDisplayable song) {
+            Collator collator = Collator.getInstance();
+            title = collator.getCollationKey(song.getTitle() == null ? "" : song.getTitle());
+            author = song.getAuthor() == null ? null : collator.getCollationKey(song.getAuthor());
+            String lyrics = song.getLyrics(false, false);
+            long hash = 1125899906842597L;
+            for (int i = 0; i < lyrics.length(); i++) {
+                hash = 31 * hash + lyrics.charAt(i);
+            }
+            lyricsHash = hash;
+        }
+    }
+
     /**
      * Get a string representation of this song.
      * <p/>
@@ -1275,6 +1325,7 @@ public class SongDisplayable implements TextDisplayable, Comparable<SongDisplaya
      */
     public void removeDuplicateSections() {
         Utils.removeDuplicateWithOrder(sections);
+        sortKey = null;
     }
 
     /**
@@ -19,11 +19,7 @@ package org.quelea.data.pdf;
 
 import java.io.File;
 import java.io.IOException;
-import java.nio.file.Files;
-import java.nio.file.Path;
-import java.util.ArrayList;
-import org.apache.pdfbox.pdmodel.PDDocument;
-import org.apache.pdfbox.rendering.PDFRenderer;
+import org.quelea.services.utils.QueleaProperties;
 
 /**
  * A PDF presentation that can be displayed.
@@ -33,6 +29,7 @@ import org.apache.pdfbox.rendering.PDFRenderer;
 public class PDFPresentation implements Pdf {
 
     private PdfSlide[] slides;
+    private PdfPageRenderer renderer;
     public String file;
 
     /**
@@ -67,23 +64,28 @@ public class PDFPresentation implements Pdf {
     }
 
     /**
-     * Make the slides that go in this PDF, this is what takes time and should
-     * only be done once.
+     * Close the PDF and throw away its rendered pages.
+     */
+    @Override
+    public void dispose() {
+        renderer.close();
+    }
+
+    /**
+     * Make the slides that go in this PDF. Only the size of each page is read
+     * here; the thumbnails are rendered in the background, and the full size
+     * pages when they're needed.
      *
      * @return all the slides.
      */
     private PdfSlide[] makeSlides() throws IOException {
-        File pdf = new File(file);
-        PDDocument document = PDDocument.load(pdf.getAbsoluteFile());
-        Path f = Files.createTempDirectory(null);
-        f.toFile().deleteOnExit();
-        ArrayList<PdfSlide> ret = new ArrayList<>();
-        PDFRenderer pdfRenderer = new PDFRenderer(document);
-        int totalPages = document.getNumberOfPages();
-        for (int i = 0; i < totalPages; i++) {
-            ret.add(new PdfSlide(i + 1, pdfRenderer));
+        renderer = new PdfPageRenderer(new File(file).getAbsoluteFile());
+        int thumbnailSize = QueleaProperties.get().getThumbnailSize();
+        PdfSlide[] ret = new PdfSlide[renderer.getPageCount()];
+        for (int i = 0; i < ret.length; i++) {
+            ret[i] = new PdfSlide(renderer, i, thumbnailSize);
         }
-        document.close();
-        return ret.toArray(new PdfSlide[ret.size()]);
+        renderer.renderThumbnails(thumbnailSize, (page, thumbnail) -> ret[page].setThumbnail(thumbnail));
+        return ret;
     }
 }
@@ -37,4 +37,10 @@ public interface Pdf {
      */
     PdfSlide[] getSlides();
     
+    /**
+     * Free the resources used by this presentation, such as its open file
+     * and rendered pages.
+     */
+    void dispose();
+    
 }
@@ -0,0 +1,427 @@
+/*
+ * This file is part of Quelea, free projection software for churches.
+ *
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.quelea.data.pdf;
+
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import javafx.embed.swing.SwingFXUtils;
+import javafx.scene.image.Image;
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.pdmodel.PDPage;
+import org.apache.pdfbox.pdmodel.common.PDRectangle;
+import org.apache.pdfbox.rendering.ImageType;
+import org.apache.pdfbox.rendering.PDFRenderer;
+import org.quelea.services.utils.LoggerUtils;
+
+/**
+ * Renders the pages of a PDF as they're needed, rather than all of them up
+ * front.
+ * <p>
+ * Pages are rendered on a fork join pool shared by all PDFs. A PDF document
+ * can't be rendered from more than one thread at once, so each worker
+ * borrows its own renderer (with its own copy of the document) for as long
+ * as it's rendering. Full size pages are kept in a cache, shared by all PDFs,
+ * that throws away the least recently used pages once they take up more than
+ * a set amount of memory.
+ * <p>
+ * @author Michael
+ */
+final class PdfPageRenderer {
+
+    private static final Logger LOGGER = LoggerUtils.getLogger();
+    /**
+     * The size of the longest side of a full size page.
+     */
+    static final int BIG_SIZE = 1920;
+    private static final ForkJoinPool POOL = new ForkJoinPool(
+            Math.max(1, Math.min(4, Runtime.getRuntime().availableProcessors() - 1)),
+            pool -> {
+                ForkJoinWorkerThread t = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(pool);
+                t.setName("PDF renderer " + t.getPoolIndex());
+                t.setDaemon(true);
+                return t;
+            }, null, true);
+    private static final long MAX_CACHE_BYTES = Math.min(256L << 20, Runtime.getRuntime().maxMemory() / 8);
+    private static final Map<PageKey, Image> PAGES = new LinkedHashMap<>(16, 0.75f, true);
+    private static long cacheBytes;
+    private final File file;
+    private final float[][] pageSizes;
+    private final ConcurrentLinkedDeque<Renderer> idle;
+    private final Map<Integer, PageRender> inFlight;
+    private volatile boolean closed;
+
+    /**
+     * Open a PDF for rendering.
+     * <p>
+     * @param file the PDF file.
+     * @throws IOException if the file couldn't be opened.
+     */
+    PdfPageRenderer(File file) throws IOException {
+        this.file = file;
+        idle = new ConcurrentLinkedDeque<>();
+        inFlight = new ConcurrentHashMap<>();
+        Renderer first = new Renderer(PDDocument.load(file));
+        pageSizes = new float[first.document.getNumberOfPages()][];
+        for (int i = 0; i < pageSizes.length; i++) {
+            pageSizes[i] = getSize(first.document.getPage(i));
+        }
+        idle.push(first);
+    }
+
+    /**
+     * Get the number of pages in the PDF.
+     * <p>
+     * @return the number of pages.
+     */
+    int getPageCount() {
+        return pageSizes.length;
+    }
+
+    /**
+     * Get the size of an image of a page, scaled so its longest side is the
+     * given size.
+     * <p>
+     * @param page the index of the page.
+     * @param size the size of the longest side.
+     * @return the width and height of the image.
+     */
+    int[] getScaledSize(int page, int size) {
+        float scale = getScale(page, size);
+        return new int[]{
+            Math.max(1, (int) (pageSizes[page][0] * scale)),
+            Math.max(1, (int) (pageSizes[page][1] * scale))
+        };
+    }
+
+    /**
+     * Render the thumbnails of every page in the background.
+     * <p>
+     * @param size the size of the longest side of each thumbnail.
+     * @param callback given each thumbnail as it's rendered, on a worker
+     * thread.
+     */
+    void renderThumbnails(int size, ThumbnailCallback callback) {
+        POOL.execute(new ThumbnailTask(0, pageSizes.length, size, callback));
+    }
+
+    /**
+     * Get a full size image of a page, rendering it on this thread if it
+     * isn't in the cache (or already being rendered.)
+     * <p>
+     * @param page the index of the page.
+     * @return the image of the page.
+     * @throws IOException if the page couldn't be rendered.
+     */
+    Image getImage(int page) throws IOException {
+        Image ret = getCached(page);
+        if (ret != null) {
+            return ret;
+        }
+        PageRender render = inFlight.computeIfAbsent(page, PageRender::new);
+        render.run();
+        try {
+            return render.result.join();
+        } catch (CompletionException ex) {
+            if (ex.getCause() instanceof IOException) {
+                throw (IOException) ex.getCause();
+            }
+            throw new IOException("Couldn't render page " + page + " of " + file, ex.getCause());
+        }
+    }
+
+    /**
+     * Get an image of a page at least the given width, for something other
+     * than displaying it (such as the remote control.) A full size page is
+     * used if it's already cached; otherwise the page is rendered on this
+     * thread at that width and not cached, so it doesn't push the pages
+     * being displayed out of the cache.
+     * <p>
+     * @param page the index of the page.
+     * @param width the width wanted, or 0 for full size.
+     * @return the image of the page.
+     * @throws IOException if the page couldn't be rendered.
+     */
+    Image getImage(int page, int width) throws IOException {
+        Image ret = getCached(page);
+        if (ret != null) {
+            return ret;
+        }
+        int size = BIG_SIZE;
+        if (width > 0) {
+            float longest = Math.max(pageSizes[page][0], pageSizes[page][1]);
+            size = Math.min(BIG_SIZE, (int) Math.ceil(width * longest / pageSizes[page][0]));
+        }
+        return SwingFXUtils.toFXImage(render(page, size), null);
+    }
+
+    /**
+     * Render a full size image of a page in the background, so it's ready
+     * when it's needed.
+     * <p>
+     * @param page the index of the page.
+     */
+    void prefetch(int page) {
+        if (page < 0 || page >= pageSizes.length || closed || getCached(page) != null) {
+            return;
+        }
+        PageRender render = inFlight.computeIfAbsent(page, PageRender::new);
+        POOL.execute(render::run);
+    }
+
+    /**
+     * Close the documents this renderer has open and forget its cached
+     * pages. Pages can still be rendered after this, but documents are then
+     * only kept open while they're in use.
+     */
+    void close() {
+        closed = true;
+        Renderer renderer;
+        while ((renderer = idle.poll()) != null) {
+            renderer.close();
+        }
+        synchronized (PAGES) {
+            Iterator<Map.Entry<PageKey, Image>> it = PAGES.entrySet().iterator();
+            while (it.hasNext()) {
+                Map.Entry<PageKey, Image> entry = it.next();
+                if (entry.getKey().renderer == this) {
+                    cacheBytes -= getBytes(entry.getValue());
+                    it.remove();
+                }
+            }
+        }
+    }
+
+    private Image getCached(int page) {
+        synchronized (PAGES) {
+            return PAGES.get(new PageKey(this, page));
+        }
+    }
+
+    private void cache(int page, Image image) {
+        if (closed) {
+            return;
+        }
+        synchronized (PAGES) {
+            if (PAGES.put(new PageKey(this, page), image) == null) {
+                cacheBytes += getBytes(image);
+            }
+            Iterator<Image> it = PAGES.values().iterator();
+            while (cacheBytes > MAX_CACHE_BYTES && PAGES.size() > 1 && it.hasNext()) {
+                cacheBytes -= getBytes(it.next());
+                it.remove();
+            }
+        }
+    }
+
+    private static long getBytes(Image image) {
+        return (long) image.getWidth() * (long) image.getHeight() * 4;
+    }
+
+    /**
+     * Render a page so its longest side is the given size.
+     */
+    private BufferedImage render(int page, int size) throws IOException {
+        Renderer renderer = idle.poll();
+        if (renderer == null) {
+            renderer = new Renderer(PDDocument.load(file));
+        }
+        try {
+            BufferedImage image = renderer.renderer.renderImage(page, getScale(page, size), ImageType.RGB);
+            int[] target = getScaledSize(page, size);
+            if (image.getWidth() != target[0] || image.getHeight() != target[1]) {
+                image = resize(image, target[0], target[1]);
+            }
+            return image;
+        } finally {
+            if (closed) {
+                renderer.close();
+            } else {
+                idle.push(renderer);
+            }
+        }
+    }
+
+    private float getScale(int page, int size) {
+        return size / Math.max(pageSizes[page][0], pageSizes[page][1]);
+    }
+
+    /**
+     * Get the size of a page (in points) as it'll be rendered, taking its
+     * rotation into account.
+     */
+    private static float[] getSize(PDPage page) {
+        PDRectangle box = page.getCropBox();
+        int rotation = page.getRotation();
+        if (rotation == 90 || rotation == 270) {
+            return new float[]{box.getHeight(), box.getWidth()};
+        }
+        return new float[]{box.getWidth(), box.getHeight()};
+    }
+
+    private static BufferedImage resize(BufferedImage image, int width, int height) {
+        BufferedImage ret = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        Graphics2D g = ret.createGraphics();
+        g.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+        g.drawImage(image, 0, 0, width, height, null);
+        g.dispose();
+        return ret;
+    }
+
+    /**
+     * Called with each thumbnail as it's rendered.
+     */
+    interface ThumbnailCallback {
+
+        /**
+         * A thumbnail has been rendered.
+         * <p>
+         * @param page the index of the page.
+         * @param thumbnail the thumbnail.
+         */
+        void thumbnailRendered(int page, BufferedImage thumbnail);
+    }
+
+    /**
+     * Renders the thumbnails for a range of pages, splitting the range up
+     * between the pool's workers.
+     */
+    private final class ThumbnailTask extends RecursiveAction {
+
+        private final int from;
+        private final int to;
+        private final int size;
+        private final ThumbnailCallback callback;
+
+        ThumbnailTask(int from, int to, int size, ThumbnailCallback callback) {
+            this.from = from;
+            this.to = to;
+            this.size = size;
+            this.callback = callback;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from > 2) {
+                int mid = (from + to) >>> 1;
+                invokeAll(new ThumbnailTask(from, mid, size, callback), new ThumbnailTask(mid, to, size, callback));
+                return;
+            }
+            for (int page = from; page < to && !closed; page++) {
+                try {
+                    callback.thumbnailRendered(page, render(page, size));
+                } catch (IOException | RuntimeException ex) {
+                    LOGGER.log(Level.WARNING, "Couldn't render thumbnail of page " + page + " of " + file, ex);
+                }
+            }
+        }
+    }
+
+    /**
+     * A full size render of a page, done by whichever thread gets to it
+     * first - a background worker if it was prefetched in time, otherwise
+     * the thread that needs it.
+     */
+    private final class PageRender {
+
+        private final int page;
+        private final AtomicBoolean claimed = new AtomicBoolean();
+        private final CompletableFuture<Image> result = new CompletableFuture<>();
+
+        PageRender(int page) {
+            this.page = page;
+        }
+
+        void run() {
+            if (!claimed.compareAndSet(false, true)) {
+                return;
+            }
+            try {
+                Image image = SwingFXUtils.toFXImage(render(page, BIG_SIZE), null);
+                cache(page, image);
+                result.complete(image);
+            } catch (IOException | RuntimeException ex) {
+                result.completeExceptionally(ex);
+            } finally {
+                inFlight.remove(page, this);
+            }
+        }
+    }
+
+    /**
+     * A renderer for a PDF, with its own copy of the document.
+     */
+    private static final class Renderer {
+
+        private final PDDocument document;
+        private final PDFRenderer renderer;
+
+        Renderer(PDDocument document) {
+            this.document = document;
+            this.renderer = new PDFRenderer(document);
+        }
+
+        void close() {
+            try {
+                document.close();
+            } catch (IOException ex) {
+                LOGGER.log(Level.WARNING, "Couldn't close PDF", ex);
+            }
+        }
+    }
+
+    private static final class PageKey {
+
+        private final PdfPageRenderer renderer;
+        private final int page;
+
+        PageKey(PdfPageRenderer renderer, int page) {
+            this.renderer = renderer;
+            this.page = page;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (!(obj instanceof PageKey)) {
+                return false;
+            }
+            PageKey other = (PageKey) obj;
+            return renderer == other.renderer && page == other.page;
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * System.identityHashCode(renderer) + page;
+        }
+    }
+}
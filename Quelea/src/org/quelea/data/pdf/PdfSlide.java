@@ -17,101 +17,93 @@
  */
 package org.quelea.data.pdf;
 
-import java.awt.Graphics;
-import java.awt.Graphics2D;
-import java.awt.RenderingHints;
 import java.awt.image.BufferedImage;
-import java.io.File;
 import java.io.IOException;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import javafx.application.Platform;
 import javafx.embed.swing.SwingFXUtils;
 import javafx.scene.image.Image;
 import javafx.scene.image.WritableImage;
-import javax.imageio.ImageIO;
-import org.apache.pdfbox.pdmodel.PDDocument;
-import org.apache.pdfbox.rendering.ImageType;
-import org.apache.pdfbox.rendering.PDFRenderer;
-import org.apache.pdfbox.tools.imageio.ImageIOUtil;
-import org.quelea.services.utils.QueleaProperties;
+import org.quelea.services.utils.LoggerUtils;
 
 /**
- * A slide in a PDF presentation.
+ * A slide in a PDF presentation. Its thumbnail starts off blank and is filled
+ * in once it's been rendered in the background; the full size image is only
+ * rendered when it's first needed.
  *
  * @author Arvid
  */
 public class PdfSlide {
 
-    private BufferedImage thumbnail;
-    private BufferedImage originalImage;
-    private final File outputfile;
-    private final File thumbnailFile;
-    private final int BIG_SIZE = 1920;
+    private static final Logger LOGGER = LoggerUtils.getLogger();
+    private final PdfPageRenderer renderer;
+    private final int index;
+    private final WritableImage thumbnail;
 
     /**
      * Create a new PDF slide.
      *
-     * @param numSlide slide number
-     * @param pdfRenderer the renderer of the file
+     * @param renderer the renderer of the file
+     * @param index the index of the page this slide shows
+     * @param thumbnailSize the size of the longest side of the thumbnail
      */
-    public PdfSlide(int numSlide, PDFRenderer pdfRenderer) throws IOException {
-        originalImage = resizeImage(pdfRenderer.renderImageWithDPI(numSlide - 1, 200, ImageType.RGB), BIG_SIZE, BIG_SIZE);
-        outputfile = File.createTempFile("slide" + numSlide, ".png");
-        outputfile.deleteOnExit();
-        ImageIO.write(originalImage, "png", outputfile);
+    PdfSlide(PdfPageRenderer renderer, int index, int thumbnailSize) {
+        this.renderer = renderer;
+        this.index = index;
+        int[] size = renderer.getScaledSize(index, thumbnailSize);
+        thumbnail = new WritableImage(size[0], size[1]);
+    }
 
-        thumbnail = resizeImage(originalImage, QueleaProperties.get().getThumbnailSize(), QueleaProperties.get().getThumbnailSize());
-        thumbnailFile = File.createTempFile("thumb" + numSlide, ".png");
-        thumbnailFile.deleteOnExit();
-        ImageIO.write(thumbnail, "png", thumbnailFile);
-        
-        originalImage.flush();
-        originalImage = null;
-        thumbnail.flush();
-        thumbnail = null;
+    /**
+     * Fill in the thumbnail once it's been rendered.
+     *
+     * @param image the rendered thumbnail.
+     */
+    void setThumbnail(BufferedImage image) {
+        Platform.runLater(() -> SwingFXUtils.toFXImage(image, thumbnail));
     }
 
     /**
-     * Get the image from this slide.
+     * Get the image from this slide. This renders the slide if it hasn't
+     * already been, and starts rendering the next one in the background.
      *
      * @return the image of this slide.
      */
     public final Image getImage() {
-        return new Image("file:" + outputfile.getAbsolutePath());
+        renderer.prefetch(index + 1);
+        try {
+            return renderer.getImage(index);
+        } catch (IOException ex) {
+            LOGGER.log(Level.WARNING, "Couldn't render PDF slide " + index, ex);
+            return thumbnail;
+        }
     }
 
     /**
-     * Get the thumbnail of this slide.
+     * Get the image from this slide for something other than displaying it,
+     * such as the remote control. Unlike {@link #getImage()} this doesn't
+     * render the slide at full size or start rendering the next one.
      *
+     * @param width the width wanted, or 0 for full size. The image may be
+     * wider if the slide has already been rendered at full size.
      * @return the image of this slide.
      */
-    public final Image getThumbnail() {
-        return new Image("file:" + thumbnailFile.getAbsolutePath());
+    public final Image getImage(int width) {
+        try {
+            return renderer.getImage(index, width);
+        } catch (IOException ex) {
+            LOGGER.log(Level.WARNING, "Couldn't render PDF slide " + index, ex);
+            return thumbnail;
+        }
     }
 
     /**
-     * Scale image to a smaller size of this slide.
+     * Get the thumbnail of this slide.
      *
-     * @param originalImage source image to scale
-     * @param width desired width
-     * @param height desired height
-     * @return the resixed image
+     * @return the image of this slide.
      */
-    private BufferedImage resizeImage(BufferedImage originalImage, int width, int height) {
-        int finalw = width;
-        int finalh = height;
-        double factor;
-        if (originalImage.getWidth() > originalImage.getHeight()) {
-            factor = ((double) originalImage.getHeight() / (double) originalImage.getWidth());
-            finalh = (int) (finalw * factor);
-        } else {
-            factor = ((double) originalImage.getWidth() / (double) originalImage.getHeight());
-            finalw = (int) (finalh * factor);
-        }
-
-        BufferedImage scaledImage = new BufferedImage(finalw, finalh, BufferedImage.TYPE_INT_RGB);
-        Graphics2D g2 = scaledImage.createGraphics();
-        g2.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
-        g2.drawImage(originalImage, 0, 0, finalw, finalh, null);
-        g2.dispose();
-        return scaledImage;
+    public final Image getThumbnail() {
+        return thumbnail;
     }
 }
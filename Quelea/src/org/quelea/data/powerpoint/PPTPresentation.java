@@ -20,10 +20,7 @@ package org.quelea.data.powerpoint;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.IOException;
-import java.util.List;
-import org.apache.poi.hslf.usermodel.HSLFSlide;
 import org.apache.poi.hslf.usermodel.HSLFSlideShow;
-import org.apache.poi.xslf.usermodel.XMLSlideShow;
 
 /**
  * A presentation that can be displayed. At the moment represents a powerpoint
@@ -35,6 +32,7 @@ public class PPTPresentation implements Presentation {
 
     private HSLFSlideShow slideshow;
     private PresentationSlide[] slides;
+    private SlideStore store;
 
     /**
      * Create a presentation from a file.
@@ -67,18 +65,22 @@ public class PPTPresentation implements Presentation {
         return slides;
     }
 
+    /**
+     * Delete the stored images of this presentation's slides.
+     */
+    @Override
+    public void dispose() {
+        store.dispose();
+    }
+
     /**
      * Make the slides that go in this presentation, this is what takes time and
      * should only be done once.
      *
      * @return all the slides.
      */
-    private PresentationSlide[] makeSlides() {
-        List<HSLFSlide> lSlides = slideshow.getSlides();
-        PresentationSlide[] ret = new PresentationSlide[lSlides.size()];
-        for (int i = 0; i < lSlides.size(); i++) {
-            ret[i] = new PresentationSlide(lSlides.get(i), i + 1);
-        }
-        return ret;
+    private PresentationSlide[] makeSlides() throws IOException {
+        store = new SlideStore();
+        return PresentationSlide.makeSlides(slideshow, store);
     }
 }
@@ -20,10 +20,7 @@ package org.quelea.data.powerpoint;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.IOException;
-import java.util.ArrayList;
-import java.util.List;
 import org.apache.poi.xslf.usermodel.XMLSlideShow;
-import org.apache.poi.xslf.usermodel.XSLFSlide;
 
 /**
  * A presentation that uses the newer PPTX file format.
@@ -34,6 +31,7 @@ public class PPTXPresentation implements Presentation {
 
     private XMLSlideShow slideshow;
     private PresentationSlide[] slides;
+    private SlideStore store;
 
     /**
      * Create a new XML presentation.
@@ -66,20 +64,22 @@ public class PPTXPresentation implements Presentation {
         return slides;
     }
 
+    /**
+     * Delete the stored images of this presentation's slides.
+     */
+    @Override
+    public void dispose() {
+        store.dispose();
+    }
+
     /**
      * Make the slides that go in this presentation, this is what takes time and
      * should only be done once.
      *
      * @return all the slides.
      */
-    private PresentationSlide[] makeSlides() {
-        List<XSLFSlide> lSlides = slideshow.getSlides();
-        ArrayList<PresentationSlide> ret = new ArrayList<>();
-        for (int i = 0; i < lSlides.size(); i++) {
-            if (lSlides.get(i) != null) {
-                ret.add(new PresentationSlide(lSlides.get(i), i + 1));
-            }
-        }
-        return ret.toArray(new PresentationSlide[ret.size()]);
+    private PresentationSlide[] makeSlides() throws IOException {
+        store = new SlideStore();
+        return PresentationSlide.makeSlides(slideshow, store);
     }
 }
@@ -37,4 +37,10 @@ public interface Presentation {
      */
     PresentationSlide[] getSlides();
     
+    /**
+     * Free the resources used by this presentation, such as its stored
+     * slides.
+     */
+    void dispose();
+    
 }
@@ -24,6 +24,13 @@ import java.awt.Graphics2D;
 import java.awt.RenderingHints;
 import java.awt.geom.AffineTransform;
 import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ForkJoinPool;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import javafx.embed.swing.SwingFXUtils;
@@ -31,92 +38,152 @@ import javafx.scene.image.Image;
 import javafx.scene.image.WritableImage;
 import org.apache.poi.sl.usermodel.Slide;
 import org.apache.poi.sl.usermodel.SlideShow;
-import org.apache.poi.xslf.usermodel.XSLFSlide;
 import org.quelea.services.languages.LabelGrabber;
 import org.quelea.services.utils.LoggerUtils;
 import org.quelea.services.utils.QueleaProperties;
 
 /**
- * A slide in a powerpoint presentation.
+ * A slide in a powerpoint presentation. Only its thumbnail is kept in
+ * memory; the full size image is kept in the presentation's slide store and
+ * decoded when it's needed.
  *
  * @author Michael
  */
 public class PresentationSlide {
 
     private static final Logger LOGGER = LoggerUtils.getLogger();
-    private WritableImage image;
-    private static final int WIDTH = 1920;
     private static final int HEIGHT = 1080;
-    private static double scaleWidth = 0;
-    private static double scaleHeight = 0;
+    private final SlideStore store;
+    private final int index;
+    private final WritableImage thumbnail;
 
     /**
-     * Create a new presentation slide.
+     * Create a new presentation slide, storing its full size image and
+     * making its thumbnail. Doesn't touch the slide show, so may be called
+     * from any thread.
      *
-     * @param slide the underlying apache POI slide.
+     * @param image the full size image of the slide.
+     * @param index the index of the slide.
+     * @param store the store to keep the full size slide in.
+     * @throws IOException if the slide couldn't be stored.
+     */
+    private PresentationSlide(BufferedImage image, int index, SlideStore store) throws IOException {
+        this.store = store;
+        this.index = index;
+        store.put(index, image);
+        BufferedImage thumbnailImage = scale(image, QueleaProperties.get().getThumbnailSize());
+        thumbnail = SwingFXUtils.toFXImage(thumbnailImage, null);
+    }
+
+    /**
+     * Make the slides for a presentation. Apache POI's slide shows aren't
+     * thread safe (slides share fonts, masters and pictures), so the slides
+     * are drawn one at a time on this thread; storing each one and making
+     * its thumbnail is done in parallel while the next is drawn. Only a few
+     * drawn slides are ever waiting to be stored, so a long presentation
+     * doesn't need all its full size images in memory at once.
+     *
+     * @param slideshow the presentation.
+     * @param store the store to keep the full size slides in.
+     * @return the slides.
+     * @throws IOException if the slides couldn't be stored.
      */
-    public PresentationSlide(Slide slide, int numSlide) {
-        SlideShow slideshow = slide.getSlideShow();
-        if (Math.abs(slideshow.getPageSize().getHeight() - HEIGHT) > 0.1) {
-            int adjustHeight = HEIGHT;
-            int adjustWidth = (int) ((adjustHeight / slideshow.getPageSize().getHeight()) * slideshow.getPageSize().getWidth());
-            scaleWidth = (double) adjustWidth / slideshow.getPageSize().getWidth();
-            scaleHeight = (double) adjustHeight / slideshow.getPageSize().getHeight();
-            slideshow.setPageSize(new Dimension(adjustWidth, adjustHeight));
+    static PresentationSlide[] makeSlides(SlideShow slideshow, SlideStore store) throws IOException {
+        List<Slide> slides = new ArrayList<>();
+        for (Object slide : slideshow.getSlides()) {
+            if (slide != null) {
+                slides.add((Slide) slide);
+            }
         }
-        BufferedImage originalImage = new BufferedImage((int) slideshow.getPageSize().getWidth(), (int) slideshow.getPageSize().getHeight(), BufferedImage.TYPE_INT_ARGB);
-        Graphics2D g2 = originalImage.createGraphics();
-        g2.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+        double scale = fitToHeight(slideshow);
+        int maxPending = Math.max(1, ForkJoinPool.commonPool().getParallelism());
+        List<CompletableFuture<PresentationSlide>> futures = new ArrayList<>(slides.size());
         try {
-            g2.setTransform(AffineTransform.getScaleInstance(scaleWidth, scaleHeight));
-            slide.draw(g2);
-        } catch (Exception ex) {
-            if (QueleaProperties.get().getUsePP()) {
-                LOGGER.log(Level.INFO, "Couldn't use library to generate thumbnail, using default");
-                draw(g2, originalImage.getWidth(), originalImage.getHeight(), numSlide);
-            } else {
-                throw ex;
+            for (int i = 0; i < slides.size(); i++) {
+                if (i >= maxPending) {
+                    futures.get(i - maxPending).join();
+                }
+                BufferedImage image = draw(slides.get(i), i + 1, scale);
+                int index = i;
+                futures.add(CompletableFuture.supplyAsync(() -> {
+                    try {
+                        return new PresentationSlide(image, index, store);
+                    } catch (IOException ex) {
+                        throw new UncheckedIOException(ex);
+                    }
+                }));
+            }
+            PresentationSlide[] ret = new PresentationSlide[futures.size()];
+            for (int i = 0; i < ret.length; i++) {
+                ret[i] = futures.get(i).join();
+            }
+            return ret;
+        } catch (CompletionException ex) {
+            if (ex.getCause() instanceof UncheckedIOException) {
+                throw ((UncheckedIOException) ex.getCause()).getCause();
             }
+            throw ex;
         }
-        image = new WritableImage(originalImage.getWidth(), originalImage.getHeight());
-        SwingFXUtils.toFXImage(originalImage, image);
-        originalImage.flush();
-        originalImage = null;
     }
 
     /**
-     * Create a new presentation slide.
+     * Draw a slide at full size.
      *
      * @param slide the underlying apache POI slide.
+     * @param numSlide the number of the slide, from 1.
+     * @param scale the scale to draw the slide at.
+     * @return the image of the slide.
      */
-    public PresentationSlide(XSLFSlide slide, int numSlide) {
-        org.apache.poi.xslf.usermodel.XMLSlideShow slideshow = slide.getSlideShow();
-        if (Math.abs(slideshow.getPageSize().getHeight() - HEIGHT) > 0.1) {
-            int adjustHeight = HEIGHT;
-            int adjustWidth = (int) ((adjustHeight / slideshow.getPageSize().getHeight()) * slideshow.getPageSize().getWidth());
-            scaleWidth = (double) adjustWidth / slideshow.getPageSize().getWidth();
-            scaleHeight = (double) adjustHeight / slideshow.getPageSize().getHeight();
-            slideshow.setPageSize(new Dimension(adjustWidth, adjustHeight));
-        }
-        BufferedImage originalImage = new BufferedImage((int) slideshow.getPageSize().getWidth(), (int) slideshow.getPageSize().getHeight(), BufferedImage.TYPE_INT_ARGB);
-        Graphics2D g2 = originalImage.createGraphics();
+    private static BufferedImage draw(Slide slide, int numSlide, double scale) {
+        Dimension size = slide.getSlideShow().getPageSize();
+        BufferedImage image = new BufferedImage((int) size.getWidth(), (int) size.getHeight(), BufferedImage.TYPE_INT_ARGB);
+        Graphics2D g2 = image.createGraphics();
         g2.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
         try {
-            g2.setTransform(AffineTransform.getScaleInstance(scaleWidth, scaleHeight));
+            g2.setTransform(AffineTransform.getScaleInstance(scale, scale));
             slide.draw(g2);
-        } catch (NullPointerException ex) {
+        } catch (RuntimeException ex) {
             if (QueleaProperties.get().getUsePP()) {
                 LOGGER.log(Level.INFO, "Couldn't use library to generate thumbnail, using default");
-                draw(g2, originalImage.getWidth(), originalImage.getHeight(), numSlide);
+                g2.setTransform(new AffineTransform());
+                draw(g2, image.getWidth(), image.getHeight(), numSlide);
             } else {
                 throw ex;
             }
+        } finally {
+            g2.dispose();
         }
-        image = new WritableImage(originalImage.getWidth(), originalImage.getHeight());
-        SwingFXUtils.toFXImage(originalImage, image);
+        return image;
     }
 
-    private void draw(Graphics2D graphics, int width, int height, int num) {
+    /**
+     * Resize a presentation's pages so they're full height, keeping their
+     * aspect ratio.
+     *
+     * @param slideshow the presentation.
+     * @return the scale to draw its slides at.
+     */
+    private static double fitToHeight(SlideShow slideshow) {
+        Dimension size = slideshow.getPageSize();
+        if (Math.abs(size.getHeight() - HEIGHT) <= 0.1) {
+            return 1;
+        }
+        int adjustWidth = (int) ((HEIGHT / size.getHeight()) * size.getWidth());
+        slideshow.setPageSize(new Dimension(adjustWidth, HEIGHT));
+        return HEIGHT / size.getHeight();
+    }
+
+    private static BufferedImage scale(BufferedImage image, int width) {
+        int height = Math.max(1, (int) ((double) image.getHeight() * width / image.getWidth()));
+        BufferedImage ret = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
+        Graphics2D g2 = ret.createGraphics();
+        g2.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+        g2.drawImage(image, 0, 0, width, height, null);
+        g2.dispose();
+        return ret;
+    }
+
+    private static void draw(Graphics2D graphics, int width, int height, int num) {
         String slideText = LabelGrabber.INSTANCE.getLabel("preview.failed");
         graphics.setColor(new Color(174, 167, 159));
         graphics.fillRect(0, 0, width, height);
@@ -134,6 +201,28 @@ public class PresentationSlide {
      * @return the image of this slide.
      */
     public final Image getImage() {
-        return image;
+        return store.get(index);
+    }
+
+    /**
+     * Get the image from this slide for something other than displaying it,
+     * such as the remote control. Unlike {@link #getImage()} this doesn't
+     * change which slides are kept decoded.
+     *
+     * @param width the width wanted, or 0 for full size. The image may be
+     * wider if the slide is already decoded.
+     * @return the image of this slide.
+     */
+    public final Image getImage(int width) {
+        return store.peek(index, width);
+    }
+
+    /**
+     * Get the thumbnail of this slide.
+     *
+     * @return the thumbnail of this slide.
+     */
+    public final Image getThumbnail() {
+        return thumbnail;
     }
 }
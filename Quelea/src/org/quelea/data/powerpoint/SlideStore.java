@@ -0,0 +1,160 @@
+/*
+ * This file is part of Quelea, free projection software for churches.
+ *
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.quelea.data.powerpoint;
+
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import javafx.scene.image.Image;
+import javax.imageio.ImageIO;
+import org.quelea.services.utils.LoggerUtils;
+
+/**
+ * Keeps the full size images of a presentation's slides compressed on disk,
+ * rather than all of them decoded in memory for as long as the presentation
+ * is open.
+ * <p>
+ * Only a small window of slides around the one last asked for (normally the
+ * live one) is kept decoded, and the next slide is decoded in the background
+ * so it's ready when the presentation moves on. Other readers, such as the
+ * remote control, use {@link #peek(int, int)} so they don't move the window
+ * away from the live slide.
+ * <p>
+ * @author Michael
+ */
+final class SlideStore {
+
+    private static final Logger LOGGER = LoggerUtils.getLogger();
+    /**
+     * How many slides either side of the current one are kept decoded.
+     */
+    private static final int WINDOW = 1;
+    private static final ExecutorService DECODER = Executors.newSingleThreadExecutor(r -> {
+        Thread t = new Thread(r, "Slide decoder");
+        t.setDaemon(true);
+        return t;
+    });
+    private final File dir;
+    private final Map<Integer, Image> decoded;
+    private volatile int current;
+
+    /**
+     * Create a new, empty slide store.
+     * <p>
+     * @throws IOException if the store's directory couldn't be created.
+     */
+    SlideStore() throws IOException {
+        dir = Files.createTempDirectory("quelea-slides").toFile();
+        dir.deleteOnExit();
+        decoded = new ConcurrentHashMap<>();
+    }
+
+    /**
+     * Store the image of a slide. May be called from any thread.
+     * <p>
+     * @param index the index of the slide.
+     * @param image the image of the slide.
+     * @throws IOException if the image couldn't be stored.
+     */
+    void put(int index, BufferedImage image) throws IOException {
+        File file = getFile(index);
+        file.deleteOnExit();
+        if (!ImageIO.write(image, "png", file)) {
+            throw new IOException("No image writer for png");
+        }
+    }
+
+    /**
+     * Get the image of a slide, decoding it if it isn't in the window. This
+     * moves the window to this slide, and starts decoding the next one.
+     * <p>
+     * @param index the index of the slide.
+     * @return the image of the slide.
+     */
+    Image get(int index) {
+        current = index;
+        Image ret = decoded.computeIfAbsent(index, this::decode);
+        Iterator<Integer> it = decoded.keySet().iterator();
+        while (it.hasNext()) {
+            if (!inWindow(it.next())) {
+                it.remove();
+            }
+        }
+        DECODER.execute(() -> {
+            int next = index + 1;
+            if (inWindow(next) && getFile(next).exists()) {
+                decoded.computeIfAbsent(next, this::decode);
+            }
+        });
+        return ret;
+    }
+
+    /**
+     * Get the image of a slide without moving the window. If the slide is
+     * already decoded that image is returned, otherwise it's read from disk
+     * at the given width and not kept.
+     * <p>
+     * @param index the index of the slide.
+     * @param width the width to read the slide at if it isn't decoded, or 0
+     * for full size.
+     * @return the image of the slide.
+     */
+    Image peek(int index, int width) {
+        Image ret = decoded.get(index);
+        if (ret != null) {
+            return ret;
+        }
+        return new Image(getFile(index).toURI().toString(), Math.max(0, width), 0, true, true);
+    }
+
+    /**
+     * Throw away the decoded slides and delete the stored ones.
+     */
+    void dispose() {
+        decoded.clear();
+        File[] files = dir.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                if (!file.delete()) {
+                    LOGGER.log(Level.INFO, "Couldn't delete {0}", file);
+                }
+            }
+        }
+        dir.delete();
+    }
+
+    private boolean inWindow(int index) {
+        return Math.abs(index - current) <= WINDOW;
+    }
+
+    private Image decode(int index) {
+        return new Image(getFile(index).toURI().toString());
+    }
+
+    private File getFile(int index) {
+        return new File(dir, "slide" + index + ".png");
+    }
+}
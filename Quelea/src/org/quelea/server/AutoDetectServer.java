@@ -21,8 +21,9 @@ import com.sun.net.httpserver.HttpExchange;
 import com.sun.net.httpserver.HttpHandler;
 import com.sun.net.httpserver.HttpServer;
 import java.io.IOException;
-import java.io.OutputStream;
 import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ExecutorService;
 import org.quelea.windows.main.QueleaApp;
 
 /**
@@ -34,6 +35,8 @@ import org.quelea.windows.main.QueleaApp;
 public class AutoDetectServer {
 
     private final HttpServer server;
+    private final ServerMetrics metrics;
+    private final ExecutorService executor;
     private boolean running;
 
     /**
@@ -44,8 +47,11 @@ public class AutoDetectServer {
      * @throws IOException if something goes wrong.
      */
     public AutoDetectServer(int port) throws IOException {
+        metrics = new ServerMetrics("Auto detect server");
+        executor = ServerUtils.createExecutor("Auto detect server");
         server = HttpServer.create(new InetSocketAddress(port), 0);
-        server.createContext("/", new RootHandler());
+        metrics.track(server.createContext("/", new RootHandler()));
+        server.setExecutor(executor);
     }
 
     /**
@@ -66,6 +72,8 @@ public class AutoDetectServer {
         if (server != null) {
             running = false;
             server.stop(0);
+            executor.shutdown();
+            metrics.log();
         }
     }
 
@@ -85,10 +93,7 @@ public class AutoDetectServer {
             String response;
             response = "" + QueleaApp.get().getMainWindow().getOptionsDialog().getServerSettingsPanel().getMLURL() + "\n";
             response = response + QueleaApp.get().getMainWindow().getOptionsDialog().getServerSettingsPanel().getRCURL();
-            t.sendResponseHeaders(200, response.length());
-            try (OutputStream os = t.getResponseBody()) {
-                os.write(response.getBytes());
-            }
+            ServerUtils.sendText(t, response.getBytes(StandardCharsets.UTF_8));
         }
     }
 }
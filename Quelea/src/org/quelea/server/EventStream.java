@@ -0,0 +1,244 @@
+/*
+ * This file is part of Quelea, free projection software for churches.
+ *
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.quelea.server;
+
+import com.sun.net.httpserver.HttpExchange;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import org.quelea.services.utils.LoggerUtils;
+
+/**
+ * A stream of server-sent events, pushed to any number of connected clients.
+ * <p>
+ * Each named event holds its latest value. A new client is sent the latest
+ * value of every event as soon as it connects, and after that only events
+ * whose value has actually changed are sent, so clients get one message per
+ * change rather than having to poll. Each client has its own queue of
+ * messages and its own thread writing them out, so publishing never blocks
+ * the caller and one slow client (such as a phone with a stalled connection)
+ * can't hold up the others - if a client falls so far behind that its queue
+ * fills up, it's disconnected. A comment is sent every so often so dead
+ * connections are noticed and dropped.
+ * <p>
+ * @author Michael
+ */
+class EventStream {
+
+    private static final Logger LOGGER = LoggerUtils.getLogger();
+    private static final long HEARTBEAT_SECONDS = 15;
+    /**
+     * The most messages that can be waiting to be sent to a client before
+     * it's disconnected as too slow.
+     */
+    private static final int MAX_QUEUED = 64;
+    private static final byte[] HEARTBEAT = ":\n\n".getBytes(StandardCharsets.UTF_8);
+    private static final byte[] PREAMBLE = "retry: 2000\n\n".getBytes(StandardCharsets.UTF_8);
+    private final Map<String, String> latest;
+    private final List<Client> clients;
+    private final ScheduledExecutorService heartbeat;
+
+    /**
+     * Create a new event stream with no clients.
+     */
+    EventStream() {
+        latest = new LinkedHashMap<>();
+        clients = new CopyOnWriteArrayList<>();
+        heartbeat = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "Event stream heartbeat");
+            t.setDaemon(true);
+            return t;
+        });
+        heartbeat.scheduleWithFixedDelay(() -> broadcast(HEARTBEAT), HEARTBEAT_SECONDS, HEARTBEAT_SECONDS, TimeUnit.SECONDS);
+    }
+
+    /**
+     * Start streaming events to the client that made the given request. The
+     * exchange is left open until the client goes away or the stream is
+     * closed, so the calling handler returns straight away.
+     * <p>
+     * @param exchange the client's request.
+     * @throws IOException if the response couldn't be started.
+     */
+    void addClient(HttpExchange exchange) throws IOException {
+        exchange.getResponseHeaders().add("Content-Type", "text/event-stream; charset=utf-8");
+        exchange.getResponseHeaders().add("Cache-Control", "no-cache, no-store, must-revalidate");
+        exchange.sendResponseHeaders(200, 0);
+        Client client = new Client(exchange);
+        synchronized (latest) {
+            StringBuilder initial = new StringBuilder();
+            for (Map.Entry<String, String> event : latest.entrySet()) {
+                appendEvent(initial, event.getKey(), event.getValue());
+            }
+            byte[] initialBytes = initial.toString().getBytes(StandardCharsets.UTF_8);
+            byte[] message = Arrays.copyOf(PREAMBLE, PREAMBLE.length + initialBytes.length);
+            System.arraycopy(initialBytes, 0, message, PREAMBLE.length, initialBytes.length);
+            client.offer(message);
+            clients.add(client);
+        }
+        Thread t = new Thread(client, "Event stream client");
+        t.setDaemon(true);
+        client.thread = t;
+        t.start();
+    }
+
+    /**
+     * Set the values of the given events, and push any that have changed to
+     * every client.
+     * <p>
+     * @param events the new value of each event, keyed by event name.
+     */
+    void publish(Map<String, String> events) {
+        StringBuilder message = new StringBuilder();
+        synchronized (latest) {
+            for (Map.Entry<String, String> event : events.entrySet()) {
+                String value = event.getValue() == null ? "" : event.getValue();
+                if (!value.equals(latest.put(event.getKey(), value))) {
+                    appendEvent(message, event.getKey(), value);
+                }
+            }
+            if (message.length() > 0) {
+                //Queued while holding the lock so every client gets changes in the same order
+                broadcast(message.toString().getBytes(StandardCharsets.UTF_8));
+            }
+        }
+    }
+
+    /**
+     * Disconnect every client and stop the stream.
+     */
+    void close() {
+        heartbeat.shutdownNow();
+        for (Client client : clients) {
+            client.close();
+        }
+        clients.clear();
+    }
+
+    /**
+     * Queue a message for every client, disconnecting any that have too many
+     * messages waiting already. Never blocks.
+     */
+    private void broadcast(byte[] message) {
+        for (Client client : clients) {
+            if (!client.offer(message)) {
+                LOGGER.log(Level.INFO, "Event stream client {0} is too slow, disconnecting it", client.exchange.getRemoteAddress());
+                clients.remove(client);
+                client.close();
+            }
+        }
+    }
+
+    /**
+     * Append an event in the server-sent events format, with each line of
+     * the value on its own data line.
+     */
+    private static void appendEvent(StringBuilder sb, String name, String value) {
+        sb.append("event: ").append(name).append('\n');
+        for (String line : value.replace("\r", "").split("\n", -1)) {
+            sb.append("data: ").append(line).append('\n');
+        }
+        sb.append('\n');
+    }
+
+    /**
+     * A connected client, with the messages waiting to be sent to it. Runs
+     * on the client's own thread, writing out messages as they're queued
+     * until the client goes away or is closed.
+     */
+    private final class Client implements Runnable {
+
+        private final HttpExchange exchange;
+        private final BlockingQueue<byte[]> queue;
+        private volatile boolean closed;
+        private volatile Thread thread;
+        private final AtomicBoolean exchangeClosed = new AtomicBoolean();
+
+        Client(HttpExchange exchange) {
+            this.exchange = exchange;
+            queue = new ArrayBlockingQueue<>(MAX_QUEUED);
+        }
+
+        /**
+         * Queue a message to send to this client.
+         * <p>
+         * @return true if it was queued, false if the client is closed or
+         * its queue is full.
+         */
+        boolean offer(byte[] message) {
+            return !closed && queue.offer(message);
+        }
+
+        /**
+         * Stop sending to this client and close its connection. Socket writes
+         * ignore interrupts, so closing the connection is what makes a write
+         * that's stalled on a slow client fail and its thread finish.
+         */
+        void close() {
+            closed = true;
+            queue.clear();
+            Thread t = thread;
+            if (t != null) {
+                t.interrupt();
+            }
+            closeExchange();
+        }
+
+        /**
+         * Close the connection, the first time this is called.
+         */
+        private void closeExchange() {
+            if (exchangeClosed.compareAndSet(false, true)) {
+                exchange.close();
+            }
+        }
+
+        @Override
+        public void run() {
+            try {
+                OutputStream os = exchange.getResponseBody();
+                while (!closed) {
+                    byte[] message = queue.take();
+                    os.write(message);
+                    os.flush();
+                }
+            } catch (IOException ex) {
+                LOGGER.log(Level.FINE, "Event stream client disconnected", ex);
+            } catch (InterruptedException ex) {
+                //Closed
+            } finally {
+                closed = true;
+                clients.remove(this);
+                closeExchange();
+            }
+        }
+    }
+}
@@ -0,0 +1,299 @@
+/*
+ * This file is part of Quelea, free projection software for churches.
+ *
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.quelea.server;
+
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.FutureTask;
+import java.util.function.Supplier;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import javafx.embed.swing.SwingFXUtils;
+import javafx.scene.image.Image;
+import javax.imageio.ImageIO;
+import org.quelea.services.utils.LoggerUtils;
+
+/**
+ * A cache of encoded images (slides and theme previews) for the remote
+ * control server, so each one is only converted and encoded once, however
+ * many times it's asked for.
+ * <p>
+ * Images are keyed by where they came from (such as the displayable they're
+ * a slide of, compared by identity), their index there, the width they were
+ * scaled to and their format. The least recently used images are thrown away
+ * once the cache gets too big. Images can be encoded ahead of time in the
+ * background, and if the same image is asked for while it's being encoded the
+ * request waits for that rather than encoding it again. None of this needs
+ * the platform thread - the images handed to the cache must already be fully
+ * loaded.
+ * <p>
+ * @author Michael
+ */
+final class ImageCache {
+
+    private static final Logger LOGGER = LoggerUtils.getLogger();
+    private static final long MAX_BYTES = 32L << 20;
+    /**
+     * The widths images are scaled to. Requested widths are rounded up to one
+     * of these, so clients can't fill the cache with a copy of each image for
+     * every width they ask for.
+     */
+    private static final int[] WIDTHS = {192, 384, 768, 1280, 1920};
+    private final Map<Key, Entry> entries;
+    private final ExecutorService executor;
+    private long totalBytes;
+
+    /**
+     * Create a new, empty image cache.
+     */
+    ImageCache() {
+        entries = new LinkedHashMap<>(16, 0.75f, true);
+        executor = Executors.newSingleThreadExecutor(r -> {
+            Thread t = new Thread(r, "Image cache");
+            t.setDaemon(true);
+            t.setPriority(Thread.MIN_PRIORITY);
+            return t;
+        });
+    }
+
+    /**
+     * Round a requested width up to one of the widths images are cached at.
+     * <p>
+     * @param width the width asked for, or 0 for full size.
+     * @return the width to scale the image to, or 0 for full size.
+     */
+    static int snapWidth(int width) {
+        if (width <= 0) {
+            return 0;
+        }
+        for (int size : WIDTHS) {
+            if (width <= size) {
+                return size;
+            }
+        }
+        return 0;
+    }
+
+    /**
+     * Get an encoded image, encoding it if it isn't already cached.
+     * <p>
+     * @param source where the image comes from, such as its displayable.
+     * @param index the index of the image in its source.
+     * @param width the width to scale the image to, or 0 for full size.
+     * Images are never scaled up. Should come from snapWidth().
+     * @param format the format to encode the image in, "png" or "jpg".
+     * @param image gets the image if it needs encoding. May return null if
+     * there's no such image.
+     * @return the encoded image, or null if there's no such image.
+     * @throws IOException if the image couldn't be encoded.
+     */
+    byte[] get(Object source, int index, int width, String format, Supplier<Image> image) throws IOException {
+        Key key = new Key(source, index, width, format);
+        Entry entry;
+        boolean encode = false;
+        synchronized (entries) {
+            entry = entries.get(key);
+            if (entry == null) {
+                entry = new Entry(new FutureTask<>(() -> encode(image.get(), width, format)));
+                entries.put(key, entry);
+                encode = true;
+            }
+        }
+        if (encode) {
+            entry.task.run();
+        }
+        byte[] ret;
+        try {
+            ret = entry.task.get();
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted waiting for image", ex);
+        } catch (ExecutionException ex) {
+            remove(key, entry);
+            throw new IOException("Couldn't encode image", ex.getCause());
+        }
+        if (ret == null) {
+            remove(key, entry);
+        } else if (encode) {
+            added(entry, ret.length);
+        }
+        return ret;
+    }
+
+    /**
+     * Get an image that's already in the cache, without encoding anything.
+     * <p>
+     * @return the encoded image, or null if it isn't in the cache (or is
+     * still being encoded.)
+     */
+    byte[] getIfPresent(Object source, int index, int width, String format) {
+        Entry entry;
+        synchronized (entries) {
+            entry = entries.get(new Key(source, index, width, format));
+        }
+        if (entry == null || !entry.task.isDone()) {
+            return null;
+        }
+        try {
+            return entry.task.get();
+        } catch (InterruptedException | ExecutionException ex) {
+            return null;
+        }
+    }
+
+    /**
+     * Encode an image in the background, so it's ready when it's asked for.
+     * Takes the same parameters as get().
+     */
+    void prefetch(Object source, int index, int width, String format, Supplier<Image> image) {
+        executor.execute(() -> {
+            try {
+                get(source, index, width, format, image);
+            } catch (IOException | RuntimeException ex) {
+                LOGGER.log(Level.WARNING, "Couldn't encode image " + index + " of " + source, ex);
+            }
+        });
+    }
+
+    /**
+     * Remove all the images from the given source.
+     * <p>
+     * @param source the source.
+     */
+    void removeAll(Object source) {
+        synchronized (entries) {
+            Iterator<Map.Entry<Key, Entry>> it = entries.entrySet().iterator();
+            while (it.hasNext()) {
+                Map.Entry<Key, Entry> next = it.next();
+                if (next.getKey().source == source) {
+                    totalBytes -= next.getValue().size;
+                    it.remove();
+                }
+            }
+        }
+    }
+
+    /**
+     * Stop encoding images in the background.
+     */
+    void shutdown() {
+        executor.shutdownNow();
+    }
+
+    private void remove(Key key, Entry entry) {
+        synchronized (entries) {
+            if (entries.remove(key, entry)) {
+                totalBytes -= entry.size;
+            }
+        }
+    }
+
+    /**
+     * Account for a newly encoded image, throwing away the least recently
+     * used ones if the cache is now too big.
+     */
+    private void added(Entry entry, int size) {
+        synchronized (entries) {
+            if (!entries.containsValue(entry)) {
+                return;
+            }
+            entry.size = size;
+            totalBytes += size;
+            Iterator<Entry> it = entries.values().iterator();
+            while (totalBytes > MAX_BYTES && it.hasNext()) {
+                Entry eldest = it.next();
+                if (eldest != entry && eldest.task.isDone()) {
+                    totalBytes -= eldest.size;
+                    it.remove();
+                }
+            }
+        }
+    }
+
+    private static byte[] encode(Image fxImage, int width, String format) throws IOException {
+        if (fxImage == null) {
+            return null;
+        }
+        BufferedImage image = SwingFXUtils.fromFXImage(fxImage, null);
+        boolean jpeg = format.equals("jpg");
+        int targetWidth = (width <= 0 || width >= image.getWidth()) ? image.getWidth() : width;
+        if (targetWidth != image.getWidth() || jpeg) {
+            int targetHeight = Math.max(1, (int) Math.round(image.getHeight() * (double) targetWidth / image.getWidth()));
+            BufferedImage scaled = new BufferedImage(targetWidth, targetHeight, jpeg ? BufferedImage.TYPE_INT_RGB : BufferedImage.TYPE_INT_ARGB);
+            Graphics2D g = scaled.createGraphics();
+            g.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+            g.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
+            g.drawImage(image, 0, 0, targetWidth, targetHeight, null);
+            g.dispose();
+            image = scaled;
+        }
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        if (!ImageIO.write(image, format, output)) {
+            throw new IOException("No image writer for " + format);
+        }
+        return output.toByteArray();
+    }
+
+    private static final class Entry {
+
+        private final FutureTask<byte[]> task;
+        private int size;
+
+        Entry(FutureTask<byte[]> task) {
+            this.task = task;
+        }
+    }
+
+    private static final class Key {
+
+        private final Object source;
+        private final int index;
+        private final int width;
+        private final String format;
+
+        Key(Object source, int index, int width, String format) {
+            this.source = source;
+            this.index = index;
+            this.width = width;
+            this.format = format;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (!(obj instanceof Key)) {
+                return false;
+            }
+            Key other = (Key) obj;
+            return source == other.source && index == other.index && width == other.width && format.equals(other.format);
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * (31 * (31 * System.identityHashCode(source) + index) + width) + format.hashCode();
+        }
+    }
+}
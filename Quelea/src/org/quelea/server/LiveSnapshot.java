@@ -0,0 +1,175 @@
+/*
+ * This file is part of Quelea, free projection software for churches.
+ *
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.quelea.server;
+
+import com.sun.net.httpserver.HttpExchange;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * An immutable snapshot of the live state served by one of the HTTP servers
+ * (the lyrics, chords, title, status and so on), each part held as ready
+ * encoded UTF-8 bytes (and compressed, once, for clients that want it.)
+ * <p>
+ * A snapshot is built once whenever the live state changes, rather than once
+ * per request, and handlers serve straight from it. Each snapshot has a
+ * version one higher than the one before it, and each part is tagged with the
+ * version it last changed in, so clients that already have the latest copy of
+ * a part are sent a 304 rather than the same content again.
+ * <p>
+ * @author Michael
+ */
+final class LiveSnapshot {
+
+    /**
+     * A snapshot with nothing in it, for before the first real one is built.
+     */
+    static final LiveSnapshot EMPTY = new LiveSnapshot(0, Collections.<String, Part>emptyMap());
+    /**
+     * Distinguishes this run's tags from those of previous runs, since
+     * versions start again from 1 every time.
+     */
+    private static final String RUN_ID = Long.toString(System.currentTimeMillis(), 36);
+    private static final byte[] NO_CONTENT = new byte[0];
+    private final long version;
+    private final long created;
+    private final Map<String, Part> parts;
+
+    private LiveSnapshot(long version, Map<String, Part> parts) {
+        this.version = version;
+        this.parts = parts;
+        this.created = System.currentTimeMillis();
+    }
+
+    /**
+     * Create the snapshot that follows this one.
+     * <p>
+     * @param values the content of each part of the new snapshot, keyed by
+     * name.
+     * @return the new snapshot. Any parts whose content hasn't changed keep
+     * their old tag.
+     */
+    LiveSnapshot next(Map<String, String> values) {
+        long nextVersion = version + 1;
+        Map<String, Part> nextParts = new HashMap<>();
+        for (Map.Entry<String, String> value : values.entrySet()) {
+            String text = value.getValue() == null ? "" : value.getValue();
+            byte[] bytes = text.getBytes(StandardCharsets.UTF_8);
+            Part old = parts.get(value.getKey());
+            if (old != null && Arrays.equals(old.bytes, bytes)) {
+                nextParts.put(value.getKey(), old);
+            } else {
+                nextParts.put(value.getKey(), new Part(text, bytes, "\"" + RUN_ID + "-" + nextVersion + "\""));
+            }
+        }
+        return new LiveSnapshot(nextVersion, Collections.unmodifiableMap(nextParts));
+    }
+
+    /**
+     * Get the version of this snapshot.
+     * <p>
+     * @return the version, 0 for the empty snapshot.
+     */
+    long getVersion() {
+        return version;
+    }
+
+    /**
+     * Get how long ago this snapshot was built.
+     * <p>
+     * @return the age of this snapshot in milliseconds.
+     */
+    long getAge() {
+        return System.currentTimeMillis() - created;
+    }
+
+    /**
+     * Get the content of a part of this snapshot.
+     * <p>
+     * @param name the name of the part.
+     * @return the content, or an empty string if there's no such part.
+     */
+    String get(String name) {
+        Part part = parts.get(name);
+        return part == null ? "" : part.text;
+    }
+
+    /**
+     * Send a part of this snapshot as the response to the given request, or
+     * a 304 if the client already has it.
+     * <p>
+     * @param he the request.
+     * @param name the name of the part to send.
+     * @throws IOException if the response couldn't be sent.
+     */
+    void send(HttpExchange he, String name) throws IOException {
+        Part part = parts.get(name);
+        byte[] bytes = part == null ? NO_CONTENT : part.bytes;
+        he.getResponseHeaders().add("Cache-Control", "no-cache");
+        if (part != null) {
+            he.getResponseHeaders().add("ETag", part.tag);
+            String ifNoneMatch = he.getRequestHeaders().getFirst("If-None-Match");
+            if (ifNoneMatch != null && ifNoneMatch.contains(part.tag)) {
+                he.sendResponseHeaders(304, -1);
+                he.close();
+                return;
+            }
+        }
+        if (part == null) {
+            ServerUtils.send(he, bytes, null);
+            return;
+        }
+        String encoding = ServerUtils.getEncoding(he, bytes.length);
+        ServerUtils.send(he, encoding == null ? bytes : part.getEncoded(encoding), encoding);
+    }
+
+    private static final class Part {
+
+        private final String text;
+        private final byte[] bytes;
+        private final String tag;
+        private volatile byte[] gzipped;
+
+        Part(String text, byte[] bytes, String tag) {
+            this.text = text;
+            this.bytes = bytes;
+            this.tag = tag;
+        }
+
+        /**
+         * Get this part compressed. It's only compressed with gzip once, the
+         * first time it's asked for, since that's what almost every client
+         * wants.
+         */
+        byte[] getEncoded(String encoding) {
+            if (!encoding.equals("gzip")) {
+                return ServerUtils.encode(bytes, encoding);
+            }
+            byte[] ret = gzipped;
+            if (ret == null) {
+                ret = ServerUtils.encode(bytes, encoding);
+                gzipped = ret;
+            }
+            return ret;
+        }
+    }
+}
@@ -31,10 +31,15 @@ import java.nio.file.Files;
 import java.nio.file.Paths;
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.logging.Level;
 import java.util.logging.Logger;
+import javafx.application.Platform;
 import org.quelea.data.bible.BibleBook;
 import org.quelea.data.displayable.BiblePassage;
 import org.quelea.data.displayable.SongDisplayable;
@@ -52,6 +57,11 @@ import org.quelea.windows.main.QueleaApp;
  * The mobile lyrics server, responsible for handling the mobile HTTP calls and
  * pushing out the correct content.
  * <p>
+ * Rather than polling, the mobile page listens on /events, which pushes the
+ * lyrics, chords, live text and available translations whenever they change.
+ * These are worked out once per change of the live slide, not once per phone,
+ * and kept in a snapshot that the plain HTTP handlers also serve from.
+ * <p>
  * @author Michael
  */
 public class MobileLyricsServer {
@@ -60,9 +70,15 @@ public class MobileLyricsServer {
     private static final Logger LOGGER = LoggerUtils.getLogger();
     private final HttpServer server;
     private boolean running;
-    private String pageContent;
+    private volatile String pageContent;
     private final Map<String, byte[]> fileCache;
+    private final ServerMetrics metrics;
+    private final ExecutorService executor;
     private String text = "";
+    private final EventStream events;
+    private final AtomicBoolean updatePending;
+    private volatile LiveSnapshot snapshot = LiveSnapshot.EMPTY;
+    private final Runnable liveChangeListener;
 
     /**
      * Create a new mobile lyrics server on a specified port. The port must not
@@ -72,23 +88,29 @@ public class MobileLyricsServer {
      * @throws IOException if something goes wrong.
      */
     public MobileLyricsServer(int port) throws IOException {
-        fileCache = new HashMap<>();
+        fileCache = new ConcurrentHashMap<>();
+        metrics = new ServerMetrics("Mobile lyrics server");
+        executor = ServerUtils.createExecutor("Mobile lyrics server");
+        events = new EventStream();
+        updatePending = new AtomicBoolean();
+        liveChangeListener = this::liveChanged;
         server = HttpServer.create(new InetSocketAddress(port), 0);
-        server.createContext("/", new RootHandler());
-        server.createContext("/lyrics", new LyricsHandler());
-        server.createContext("/chords", new ChordsHandler());
-        server.createContext("/title", new TitleHandler());
-        server.createContext("/songtranslations", new SongTranslationsHandler());
-        server.createContext("/gettranslation", new SongTranslationsHandler());
-        server.createContext("/livetext", new LiveTextHandler());
-        server.createContext("/jscolor.js", new FileHandler("icons/jscolor.js"));
-        server.createContext("/arrow.gif", new FileHandler("icons/arrow.gif"));
-        server.createContext("/gear.png", new FileHandler("icons/gear.png"));
-        server.createContext("/translate.png", new FileHandler("icons/translate_on.png"));
-        server.createContext("/cross.gif", new FileHandler("icons/cross.gif"));
-        server.createContext("/hs.png", new FileHandler("icons/hs.png"));
-        server.createContext("/hv.png", new FileHandler("icons/hv.png"));
-        server.setExecutor(null);
+        metrics.track(server.createContext("/", new RootHandler()));
+        metrics.track(server.createContext("/events", new EventsHandler()));
+        metrics.track(server.createContext("/lyrics", new LyricsHandler()));
+        metrics.track(server.createContext("/chords", new ChordsHandler()));
+        metrics.track(server.createContext("/title", new TitleHandler()));
+        metrics.track(server.createContext("/songtranslations", new SongTranslationsHandler()));
+        metrics.track(server.createContext("/gettranslation", new SongTranslationsHandler()));
+        metrics.track(server.createContext("/livetext", new LiveTextHandler()));
+        metrics.track(server.createContext("/jscolor.js", new FileHandler("icons/jscolor.js")));
+        metrics.track(server.createContext("/arrow.gif", new FileHandler("icons/arrow.gif")));
+        metrics.track(server.createContext("/gear.png", new FileHandler("icons/gear.png")));
+        metrics.track(server.createContext("/translate.png", new FileHandler("icons/translate_on.png")));
+        metrics.track(server.createContext("/cross.gif", new FileHandler("icons/cross.gif")));
+        metrics.track(server.createContext("/hs.png", new FileHandler("icons/hs.png")));
+        metrics.track(server.createContext("/hv.png", new FileHandler("icons/hv.png")));
+        server.setExecutor(executor);
     }
 
     /**
@@ -98,6 +120,12 @@ public class MobileLyricsServer {
         if (server != null) {
             server.start();
             running = true;
+            QueleaApp.get().doOnLoad(() -> {
+                Platform.runLater(() -> {
+                    QueleaApp.get().getMainWindow().getMainPanel().getLivePanel().addLiveChangeListener(liveChangeListener);
+                    liveChanged();
+                });
+            });
         }
     }
 
@@ -108,7 +136,15 @@ public class MobileLyricsServer {
     public void stop() {
         if (server != null) {
             running = false;
+            events.close();
             server.stop(0);
+            executor.shutdown();
+            metrics.log();
+            Platform.runLater(() -> {
+                if (QueleaApp.get().getMainWindow() != null) {
+                    QueleaApp.get().getMainWindow().getMainPanel().getLivePanel().removeLiveChangeListener(liveChangeListener);
+                }
+            });
         }
     }
 
@@ -142,12 +178,73 @@ public class MobileLyricsServer {
             }
             byte[] bytes = pageContent.getBytes(Charset.forName("UTF-8"));
             t.getResponseHeaders().add("Cache-Control", "no-cache, no-store, must-revalidate");
-            t.sendResponseHeaders(200, bytes.length);
-            try (OutputStream os = t.getResponseBody()) {
-                os.write(bytes);
+            ServerUtils.sendText(t, bytes);
+        }
+
+    }
+
+    /**
+     * Called on the platform thread whenever what's live changes. Changes
+     * that come in together (such as a new displayable and its first slide
+     * being selected) are pushed out as one update.
+     */
+    private void liveChanged() {
+        if (running && updatePending.compareAndSet(false, true)) {
+            Platform.runLater(() -> {
+                updatePending.set(false);
+                pushLiveState();
+            });
+        }
+    }
+
+    /**
+     * Work out the current lyrics, chords, title and translations, take a new
+     * snapshot of them and push any that have changed to the connected
+     * clients. Must be called on the platform thread.
+     */
+    private void pushLiveState() {
+        if (!running) {
+            return;
+        }
+        Map<String, String> state = new HashMap<>();
+        String lyrics = getLyrics(false);
+        state.put("lyrics", lyrics);
+        state.put("chords", getLyrics(true));
+        state.put("alllyrics", allLyrics());
+        state.put("title", getTitle());
+        state.put("translations", lyrics.isEmpty() ? "" : getTranslationList());
+        LiveSnapshot next = snapshot.next(state);
+        snapshot = next;
+        Map<String, String> changed = new LinkedHashMap<>();
+        for (String event : new String[]{"lyrics", "chords", "translations"}) {
+            changed.put(event, next.get(event));
+        }
+        events.publish(changed);
+    }
+
+    /**
+     * Get the list of translations for the live song, one per line.
+     * <p>
+     * @return the translations, "None" if the live song doesn't have any,
+     * or an empty string if there's no live song.
+     */
+    private String getTranslationList() {
+        try {
+            if (checkInitialised() && QueleaApp.get().getMainWindow().getMainPanel().getLivePanel().getDisplayable() instanceof SongDisplayable) {
+                return listSongTranslations(null);
             }
+        } catch (Exception ex) {
+            LOGGER.log(Level.WARNING, "Error getting translations", ex);
         }
+        return "";
+    }
+
+    private class EventsHandler implements HttpHandler {
 
+        @Override
+        public void handle(HttpExchange t) throws IOException {
+            events.addClient(t);
+        }
     }
 
     private class FileHandler implements HttpHandler {
@@ -167,6 +264,10 @@ public class MobileLyricsServer {
                     fileCache.put(file, ret);
                 }
             }
+            if (file.endsWith(".js")) {
+                ServerUtils.sendText(t, ret);
+                return;
+            }
             t.sendResponseHeaders(200, ret.length);
             try (OutputStream os = t.getResponseBody()) {
                 os.write(ret);
@@ -179,17 +280,10 @@ public class MobileLyricsServer {
 
         @Override
         public void handle(HttpExchange t) throws IOException {
-            String response;
             if (t.getRequestURI().toString().contains("all")) {
-                response = allLyrics();
+                snapshot.send(t, "alllyrics");
             } else {
-                response = getLyrics(false);
-            }
-            byte[] bytes = response.getBytes("UTF-8");
-            t.getResponseHeaders().add("Cache-Control", "no-cache, no-store, must-revalidate");
-            t.sendResponseHeaders(200, bytes.length);
-            try (OutputStream os = t.getResponseBody()) {
-                os.write(bytes);
+                snapshot.send(t, "lyrics");
             }
         }
     }
@@ -198,13 +292,7 @@ public class MobileLyricsServer {
 
         @Override
         public void handle(HttpExchange t) throws IOException {
-            String response = getLyrics(true);
-            byte[] bytes = response.getBytes("UTF-8");
-            t.getResponseHeaders().add("Cache-Control", "no-cache, no-store, must-revalidate");
-            t.sendResponseHeaders(200, bytes.length);
-            try (OutputStream os = t.getResponseBody()) {
-                os.write(bytes);
-            }
+            snapshot.send(t, "chords");
         }
     }
 
@@ -215,10 +303,7 @@ public class MobileLyricsServer {
             String response = getText();
             byte[] bytes = response.getBytes("UTF-8");
             t.getResponseHeaders().add("Cache-Control", "no-cache, no-store, must-revalidate");
-            t.sendResponseHeaders(200, bytes.length);
-            try (OutputStream os = t.getResponseBody()) {
-                os.write(bytes);
-            }
+            ServerUtils.sendText(t, bytes);
         }
     }
 
@@ -226,13 +311,7 @@ public class MobileLyricsServer {
 
         @Override
         public void handle(HttpExchange t) throws IOException {
-            String response = getTitle();
-            byte[] bytes = response.getBytes("UTF-8");
-            t.getResponseHeaders().add("Cache-Control", "no-cache, no-store, must-revalidate");
-            t.sendResponseHeaders(200, bytes.length);
-            try (OutputStream os = t.getResponseBody()) {
-                os.write(bytes);
-            }
+            snapshot.send(t, "title");
         }
     }
 
@@ -240,23 +319,17 @@ public class MobileLyricsServer {
 
         @Override
         public void handle(HttpExchange he) throws IOException {
+            if (he.getRequestURI().toString().contains("/songtranslations")) {
+                snapshot.send(he, "translations");
+                return;
+            }
             String response = "";
             LivePanel lp = QueleaApp.get().getMainWindow().getMainPanel().getLivePanel();
-            if (running && lp.getDisplayable() instanceof TextDisplayable) {
-                if (he.getRequestURI().toString().contains("/songtranslations")) {
-                    response = listSongTranslations(he);
-                } else {
-                    response = getSongTranslation(he);
-                }
-                if (getLyrics(false).equals("")) {
-                    response = "";
-                }
+            if (running && lp.getDisplayable() instanceof TextDisplayable && !snapshot.get("lyrics").isEmpty()) {
+                response = getSongTranslation(he);
             }
             he.getResponseHeaders().add("Cache-Control", "no-cache, no-store, must-revalidate");
-            he.sendResponseHeaders(200, response.getBytes(Charset.forName("UTF-8")).length);
-            OutputStream os = he.getResponseBody();
-            os.write(response.getBytes(Charset.forName("UTF-8")));
-            os.close();
+            ServerUtils.sendText(he, response.getBytes(Charset.forName("UTF-8")));
         }
     }
 
@@ -341,7 +414,7 @@ public class MobileLyricsServer {
             }
         } catch (Exception ex) {
             LOGGER.log(Level.WARNING, "Error getting lyrics", ex);
-            return null;
+            return new ArrayList<>();
         }
     }
 
@@ -444,6 +517,9 @@ public class MobileLyricsServer {
     
     public void setText(String text) {
         this.text = text;
+        Map<String, String> state = new HashMap<>();
+        state.put("livetext", text);
+        events.publish(state);
     }
 
     /**
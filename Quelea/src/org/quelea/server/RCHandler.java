@@ -18,20 +18,17 @@
 package org.quelea.server;
 
 import com.sun.net.httpserver.HttpExchange;
-import java.awt.image.BufferedImage;
-import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.UnsupportedEncodingException;
 import java.net.URLDecoder;
-import java.util.ArrayList;
-import java.util.Arrays;
+import java.util.Set;
 import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import java.util.regex.Pattern;
 import javafx.application.Platform;
-import javafx.embed.swing.SwingFXUtils;
-import javax.imageio.ImageIO;
+import javafx.scene.image.Image;
 import org.quelea.data.ThemeDTO;
 import org.quelea.data.bible.Bible;
 import org.quelea.data.bible.BibleBook;
@@ -43,7 +40,8 @@ import org.quelea.data.displayable.PresentationDisplayable;
 import org.quelea.data.displayable.SongDisplayable;
 import org.quelea.data.displayable.TimerDisplayable;
 import org.quelea.services.languages.LabelGrabber;
-import org.quelea.services.lucene.SongSearchIndex;
+import org.quelea.services.lucene.SearchIndex.FilterType;
+import org.quelea.services.lucene.SongSearchResult;
 import org.quelea.services.utils.LoggerUtils;
 import org.quelea.services.utils.QueleaProperties;
 import org.quelea.services.utils.Utils;
@@ -64,7 +62,7 @@ import org.quelea.windows.multimedia.VLCWindow;
  */
 public class RCHandler {
 
-    private static final ArrayList<String> devices = new ArrayList<>();
+    private static final Set<String> devices = ConcurrentHashMap.newKeySet();
     private static final Logger LOGGER = LoggerUtils.getLogger();
 
     public static void logo() {
@@ -180,13 +178,7 @@ public class RCHandler {
     }
 
     public static boolean isLoggedOn(String ip) {
-        boolean found = false;
-        for (String s : devices) {
-            if (s.equals(ip)) {
-                found = true;
-            }
-        }
-        return found;
+        return devices.contains(ip);
     }
 
     public static void logout(String ip) {
@@ -292,20 +284,15 @@ public class RCHandler {
             if (searchString == null || searchString.trim().isEmpty() || Pattern.compile("[^\\w ]", Pattern.UNICODE_CHARACTER_CLASS).matcher(searchString).replaceAll("").isEmpty()) {
                 return LabelGrabber.INSTANCE.getLabel("invalid.search");
             } else {
-                SongDisplayable[] titleSongs = SongManager.get().getIndex().filter(searchString, SongSearchIndex.FilterType.TITLE);
-                for (SongDisplayable song : titleSongs) {
-                    song.setLastSearch(searchString);
-                    songs.add(song);
-                }
-
-                SongDisplayable[] lyricSongs = SongManager.get().getIndex().filter(searchString, SongSearchIndex.FilterType.BODY);
-                for (SongDisplayable song : lyricSongs) {
-                    song.setLastSearch(null);
+                for (SongSearchResult result : SongManager.get().getIndex().search(searchString)) {
+                    SongDisplayable song = result.getSong();
+                    if (result.getType() == FilterType.TITLE) {
+                        song.setLastSearch(searchString);
+                    } else if (result.getType() == FilterType.BODY) {
+                        song.setLastSearch(null);
+                    }
                     songs.add(song);
                 }
-
-                SongDisplayable[] authorSongs = SongManager.get().getIndex().filter(searchString, SongSearchIndex.FilterType.AUTHOR);
-                songs.addAll(Arrays.asList(authorSongs));
             }
 
             StringBuilder response = new StringBuilder();
@@ -469,25 +456,32 @@ public class RCHandler {
         return "";
     }
 
-    public static byte[] getPresentationSlides(HttpExchange he) {
+    /**
+     * Get one of the slides of the live presentation, PDF or image group as
+     * an encoded image, or (if no slide is given) a list of the slides. The
+     * slide is given as /slides/slideN.png or /slides/slideN.jpg, with an
+     * optional width parameter to scale it down for phones. Slides come
+     * from the given cache, so each variant is only encoded once.
+     * <p/>
+     * @param he the request.
+     * @param cache the cache to get the slide from.
+     * @return the slide or list of slides, or an empty array if there's
+     * nothing to send.
+     */
+    static byte[] getPresentationSlides(HttpExchange he, ImageCache cache) {
         String targetPath = he.getRequestURI().getPath().replace("/slides", "");
         Displayable d = QueleaApp.get().getMainWindow().getMainPanel().getLivePanel().getDisplayable();
         if (d instanceof PresentationDisplayable || d instanceof PdfDisplayable || d instanceof ImageGroupDisplayable) {
             if (targetPath.contains("/")) {
                 try {
-                    BufferedImage image;
-                    int slide = Integer.parseInt(targetPath.replace("/slide", "").replace(".png", ""));
-                    if (d instanceof PresentationDisplayable) {
-                        image = SwingFXUtils.fromFXImage(((PresentationDisplayable) d).getPresentation().getSlide(slide - 1).getImage(), null);
-                    } else if (d instanceof PdfDisplayable) {
-                        image = SwingFXUtils.fromFXImage(((PdfDisplayable) d).getPresentation().getSlide(slide - 1).getImage(), null);
-                    } else {
-                        image = SwingFXUtils.fromFXImage(((ImageGroupDisplayable) d).getPresentation().getSlide(slide - 1).getImage(), null);
+                    String format = targetPath.endsWith(".jpg") ? "jpg" : "png";
+                    int slide = Integer.parseInt(targetPath.replace("/slide", "").replace(".png", "").replace(".jpg", ""));
+                    int width = getWidthParam(he);
+                    byte[] image = cache.get(d, slide - 1, width, format, () -> getSlideImage(d, slide - 1, width));
+                    if (image != null) {
+                        return image;
                     }
-                    ByteArrayOutputStream output = new ByteArrayOutputStream();
-                    ImageIO.write(image, "png", output);
-                    return output.toByteArray();
-                } catch (IOException ex) {
+                } catch (IOException | NumberFormatException ex) {
                     LOGGER.log(Level.WARNING, "Error getting PowerPoint slides", ex);
                 }
             } else {
@@ -509,6 +503,70 @@ public class RCHandler {
         return "".getBytes();
     }
 
+    /**
+     * Get the number of slides in a presentation, PDF or image group.
+     * <p/>
+     * @param d the displayable.
+     * @return the number of slides, or 0 if the displayable doesn't have
+     * slides.
+     */
+    public static int getSlideCount(Displayable d) {
+        if (d instanceof PresentationDisplayable) {
+            return ((PresentationDisplayable) d).getPresentation().getSlides().length;
+        } else if (d instanceof PdfDisplayable) {
+            return ((PdfDisplayable) d).getPresentation().getSlides().length;
+        } else if (d instanceof ImageGroupDisplayable) {
+            return ((ImageGroupDisplayable) d).getPresentation().getSlides().length;
+        }
+        return 0;
+    }
+
+    /**
+     * Get the image of a slide in a presentation, PDF or image group. This
+     * doesn't change which slides are kept ready for display.
+     * <p/>
+     * @param d the displayable.
+     * @param index the index of the slide.
+     * @param width the width the image is wanted at, or 0 for full size. The
+     * image may be wider than this.
+     * @return the slide's image, or null if there's no such slide.
+     */
+    public static Image getSlideImage(Displayable d, int index, int width) {
+        if (index < 0 || index >= getSlideCount(d)) {
+            return null;
+        }
+        if (d instanceof PresentationDisplayable) {
+            return ((PresentationDisplayable) d).getPresentation().getSlide(index).getImage(width);
+        } else if (d instanceof PdfDisplayable) {
+            return ((PdfDisplayable) d).getPresentation().getSlide(index).getImage(width);
+        } else {
+            return ((ImageGroupDisplayable) d).getPresentation().getSlide(index).getImage();
+        }
+    }
+
+    /**
+     * Get the width parameter of an image request.
+     * <p/>
+     * @param he the request.
+     * @return the width asked for, rounded up to one the image cache keeps,
+     * or 0 for full size.
+     */
+    static int getWidthParam(HttpExchange he) {
+        String query = he.getRequestURI().getQuery();
+        if (query != null) {
+            for (String param : query.split("&")) {
+                if (param.startsWith("width=")) {
+                    try {
+                        return ImageCache.snapWidth(Integer.parseInt(param.substring("width=".length())));
+                    } catch (NumberFormatException ex) {
+                        return 0;
+                    }
+                }
+            }
+        }
+        return 0;
+    }
+
     public static String listBibleTranslations(HttpExchange he) {
         StringBuilder ret = new StringBuilder();
         final LibraryBiblePanel lbp = QueleaApp.get().getMainWindow().getMainPanel().getLibraryPanel().getBiblePanel();
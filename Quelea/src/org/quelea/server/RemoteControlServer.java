@@ -22,17 +22,13 @@ import com.sun.net.httpserver.HttpContext;
 import com.sun.net.httpserver.HttpExchange;
 import com.sun.net.httpserver.HttpHandler;
 import com.sun.net.httpserver.HttpServer;
-import java.awt.image.BufferedImage;
 import java.io.BufferedReader;
-import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStreamReader;
 import java.io.OutputStream;
 import java.io.UnsupportedEncodingException;
-import java.net.FileNameMap;
 import java.net.InetSocketAddress;
 import java.net.URI;
-import java.net.URLConnection;
 import java.net.URLDecoder;
 import java.nio.ByteBuffer;
 import java.nio.charset.Charset;
@@ -42,10 +38,15 @@ import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.logging.Level;
 import java.util.logging.Logger;
-import javafx.embed.swing.SwingFXUtils;
-import javax.imageio.ImageIO;
+import javafx.application.Platform;
+import javafx.collections.ListChangeListener;
+import javafx.scene.Node;
+import javafx.scene.image.Image;
 import org.quelea.data.displayable.Displayable;
 import org.quelea.data.displayable.ImageGroupDisplayable;
 import org.quelea.data.displayable.MultimediaDisplayable;
@@ -56,7 +57,6 @@ import org.quelea.data.displayable.TextSection;
 import org.quelea.services.languages.LabelGrabber;
 import org.quelea.services.utils.LineTypeChecker;
 import org.quelea.services.utils.LoggerUtils;
-import org.quelea.services.utils.Utils;
 import org.quelea.windows.main.LivePanel;
 import org.quelea.windows.main.QueleaApp;
 import org.quelea.windows.main.ThemePreviewPanel;
@@ -76,9 +76,35 @@ public class RemoteControlServer {
     private static final Logger LOGGER = LoggerUtils.getLogger();
     private final HttpServer server;
     private boolean running;
-    private String pageContent;
+    private volatile String pageContent;
     private final Map<String, byte[]> fileCache;
+    private final ServerMetrics metrics;
+    private final ExecutorService executor;
     public int count = 0;
+    /**
+     * Some of what's shown (the preview item, the current presentation
+     * slide, whether a video is playing) can change without telling us, so
+     * snapshots older than this are rebuilt when they're next asked for.
+     */
+    private static final long MAX_SNAPSHOT_AGE = 1000;
+    private volatile LiveSnapshot snapshot = LiveSnapshot.EMPTY;
+    private final AtomicBoolean updatePending;
+    private final Runnable liveChangeListener;
+    private final ListChangeListener<Displayable> scheduleListener;
+    /**
+     * The width slides are scaled to for the lyrics page - twice the size
+     * they're shown at, for high resolution phone screens.
+     */
+    private static final int SLIDE_THUMBNAIL_WIDTH = 384;
+    /**
+     * The source theme previews are cached under.
+     */
+    private static final Object THEME_PREVIEWS = new Object();
+    private final ImageCache images;
+    private final AtomicBoolean themeCapturePending;
+    private final ListChangeListener<Node> themeListener;
+    private volatile Image[] themePreviews;
+    private volatile Displayable prefetched;
 
     /**
      * Create a new mobile lyrics server on a specified port. The port must not
@@ -88,45 +114,53 @@ public class RemoteControlServer {
      * @throws IOException if something goes wrong.
      */
     public RemoteControlServer(int port) throws IOException {
-        fileCache = new HashMap<>();
+        fileCache = new ConcurrentHashMap<>();
+        metrics = new ServerMetrics("Remote control server");
+        executor = ServerUtils.createExecutor("Remote control server");
+        updatePending = new AtomicBoolean();
+        liveChangeListener = this::liveChanged;
+        scheduleListener = change -> liveChanged();
+        images = new ImageCache();
+        themeCapturePending = new AtomicBoolean();
+        themeListener = change -> themesChanged();
         server = HttpServer.create(new InetSocketAddress(port), 0);
-        HttpContext rootcontext = server.createContext("/", new RootHandler());
-        server.createContext("/logout", new LogoutHandler());
-        server.createContext("/tlogo", new LogoToggleHandler());
-        server.createContext("/black", new BlackToggleHandler());
-        server.createContext("/clear", new ClearToggleHandler());
-        server.createContext("/next", new NextSlideHandler());
-        server.createContext("/prev", new PreviousSlideHandler());
-        server.createContext("/nextitem", new NextItemHandler());
-        server.createContext("/previtem", new PreviousItemHandler());
-        server.createContext("/play", new PlayHandler());
-        server.createContext("/lyrics", new LyricsHandler());
-        server.createContext("/chords", new ChordsHandler());
-        server.createContext("/status", new StatusHandler());
-        server.createContext("/schedule", new ScheduleHandler());
-        server.createContext("/songsearch", new SongSearchHandler());
-        server.createContext("/search", new DatabaseSearchHandler());
-        server.createContext("/song", new SongDisplayHandler());
-        server.createContext("/add", new AddSongHandler());
-        server.createContext("/addbible", new AddBibleHandler());
-        server.createContext("/translations", new ListBibleTranslationsHandler());
-        server.createContext("/books", new ListBibleBooksHandler());
-        server.createContext("/passage", new PassageSelecterHandler());
-        server.createContext("/sidebar.png", new FileHandler("icons/sidebar.png"));
-        server.createContext("/section", new SectionHandler());
-        server.createContext("/songtranslations", new SongTranslationsHandler());
-        server.createContext("/gettranslation", new SongTranslationsHandler());
-        server.createContext("/record", new RecordToggleHandler());
-        server.createContext("/gotoitem", new GotoItemHandler());
-        server.createContext("/remove", new RemoveItemHandler());
-        server.createContext("/getthemes", new GetThemesHandler());
-        server.createContext("/settheme", new SetThemeHandler());
-        server.createContext("/moveup", new MoveItemUpHandler());
-        server.createContext("/movedown", new MoveItemDownHandler());
-        server.createContext("/themethumb", new ThemeThumbnailsHandler());
-        server.createContext("/slides", new PresentationSlidesHandler());
+        HttpContext rootcontext = metrics.track(server.createContext("/", new RootHandler()));
+        metrics.track(server.createContext("/logout", new LogoutHandler()));
+        metrics.track(server.createContext("/tlogo", new LogoToggleHandler()));
+        metrics.track(server.createContext("/black", new BlackToggleHandler()));
+        metrics.track(server.createContext("/clear", new ClearToggleHandler()));
+        metrics.track(server.createContext("/next", new NextSlideHandler()));
+        metrics.track(server.createContext("/prev", new PreviousSlideHandler()));
+        metrics.track(server.createContext("/nextitem", new NextItemHandler()));
+        metrics.track(server.createContext("/previtem", new PreviousItemHandler()));
+        metrics.track(server.createContext("/play", new PlayHandler()));
+        metrics.track(server.createContext("/lyrics", new LyricsHandler()));
+        metrics.track(server.createContext("/chords", new ChordsHandler()));
+        metrics.track(server.createContext("/status", new StatusHandler()));
+        metrics.track(server.createContext("/schedule", new ScheduleHandler()));
+        metrics.track(server.createContext("/songsearch", new SongSearchHandler()));
+        metrics.track(server.createContext("/search", new DatabaseSearchHandler()));
+        metrics.track(server.createContext("/song", new SongDisplayHandler()));
+        metrics.track(server.createContext("/add", new AddSongHandler()));
+        metrics.track(server.createContext("/addbible", new AddBibleHandler()));
+        metrics.track(server.createContext("/translations", new ListBibleTranslationsHandler()));
+        metrics.track(server.createContext("/books", new ListBibleBooksHandler()));
+        metrics.track(server.createContext("/passage", new PassageSelecterHandler()));
+        metrics.track(server.createContext("/sidebar.png", new FileHandler("icons/sidebar.png")));
+        metrics.track(server.createContext("/section", new SectionHandler()));
+        metrics.track(server.createContext("/songtranslations", new SongTranslationsHandler()));
+        metrics.track(server.createContext("/gettranslation", new SongTranslationsHandler()));
+        metrics.track(server.createContext("/record", new RecordToggleHandler()));
+        metrics.track(server.createContext("/gotoitem", new GotoItemHandler()));
+        metrics.track(server.createContext("/remove", new RemoveItemHandler()));
+        metrics.track(server.createContext("/getthemes", new GetThemesHandler()));
+        metrics.track(server.createContext("/settheme", new SetThemeHandler()));
+        metrics.track(server.createContext("/moveup", new MoveItemUpHandler()));
+        metrics.track(server.createContext("/movedown", new MoveItemDownHandler()));
+        metrics.track(server.createContext("/themethumb", new ThemeThumbnailsHandler()));
+        metrics.track(server.createContext("/slides", new PresentationSlidesHandler()));
         rootcontext.getFilters().add(new ParameterFilter());
-        server.setExecutor(null);
+        server.setExecutor(executor);
     }
 
     /**
@@ -136,6 +170,15 @@ public class RemoteControlServer {
         if (server != null) {
             server.start();
             running = true;
+            QueleaApp.get().doOnLoad(() -> {
+                Platform.runLater(() -> {
+                    QueleaApp.get().getMainWindow().getMainPanel().getLivePanel().addLiveChangeListener(liveChangeListener);
+                    QueleaApp.get().getMainWindow().getMainPanel().getSchedulePanel().getScheduleList().getItems().addListener(scheduleListener);
+                    QueleaApp.get().getMainWindow().getMainPanel().getSchedulePanel().getThemeNode().getThemePreviews().getChildren().addListener(themeListener);
+                    liveChanged();
+                    themesChanged();
+                });
+            });
         }
     }
 
@@ -147,6 +190,16 @@ public class RemoteControlServer {
         if (server != null) {
             running = false;
             server.stop(0);
+            executor.shutdown();
+            images.shutdown();
+            metrics.log();
+            Platform.runLater(() -> {
+                if (QueleaApp.get().getMainWindow() != null) {
+                    QueleaApp.get().getMainWindow().getMainPanel().getLivePanel().removeLiveChangeListener(liveChangeListener);
+                    QueleaApp.get().getMainWindow().getMainPanel().getSchedulePanel().getScheduleList().getItems().removeListener(scheduleListener);
+                    QueleaApp.get().getMainWindow().getMainPanel().getSchedulePanel().getThemeNode().getThemePreviews().getChildren().removeListener(themeListener);
+                }
+            });
         }
     }
 
@@ -159,6 +212,96 @@ public class RemoteControlServer {
         return running;
     }
 
+    /**
+     * Called whenever what's live (or the schedule) changes. Changes that
+     * come in together are taken as one new snapshot.
+     */
+    private void liveChanged() {
+        if (running && updatePending.compareAndSet(false, true)) {
+            Platform.runLater(() -> {
+                updatePending.set(false);
+                takeSnapshot();
+            });
+        }
+    }
+
+    /**
+     * Work out the lyrics, chords, button status and schedule, and make them
+     * the current snapshot. Must be called on the platform thread.
+     */
+    private void takeSnapshot() {
+        if (!running) {
+            return;
+        }
+        Map<String, String> state = new HashMap<>();
+        try {
+            state.put("lyrics", lyricsPage());
+            state.put("chords", chordsPage());
+            state.put("status", status());
+            state.put("schedule", RCHandler.schedule());
+        } catch (Exception ex) {
+            LOGGER.log(Level.WARNING, "Error taking live snapshot", ex);
+            return;
+        }
+        snapshot = snapshot.next(state);
+        Displayable live = QueleaApp.get().getMainWindow().getMainPanel().getLivePanel().getDisplayable();
+        if (live != prefetched) {
+            //Only the live item's slides are served, so drop the old ones
+            if (prefetched != null) {
+                images.removeAll(prefetched);
+            }
+            prefetched = live;
+            for (int i = 0; i < RCHandler.getSlideCount(live); i++) {
+                int index = i;
+                //Skip slides still queued once the item is no longer live
+                images.prefetch(live, index, SLIDE_THUMBNAIL_WIDTH, "jpg", () -> live == prefetched ? RCHandler.getSlideImage(live, index, SLIDE_THUMBNAIL_WIDTH) : null);
+            }
+        }
+    }
+
+    /**
+     * Called whenever the theme previews change. The new previews are
+     * captured (which has to be done on the platform thread) once they've
+     * all been added, then encoded in the background.
+     */
+    private void themesChanged() {
+        if (running && themeCapturePending.compareAndSet(false, true)) {
+            Platform.runLater(() -> {
+                themeCapturePending.set(false);
+                captureThemePreviews();
+            });
+        }
+    }
+
+    private void captureThemePreviews() {
+        List<Node> nodes = QueleaApp.get().getMainWindow().getMainPanel().getSchedulePanel().getThemeNode().getThemePreviews().getChildren();
+        Image[] previews = new Image[nodes.size()];
+        for (int i = 0; i < previews.length; i++) {
+            if (nodes.get(i) instanceof ThemePreviewPanel) {
+                previews[i] = ((ThemePreviewPanel) nodes.get(i)).getThemePreviewImage();
+            }
+        }
+        themePreviews = previews;
+        images.removeAll(THEME_PREVIEWS);
+        for (int i = 0; i < previews.length; i++) {
+            int index = i;
+            images.prefetch(THEME_PREVIEWS, index, 0, "png", () -> previews[index]);
+        }
+    }
+
+    /**
+     * Get the current snapshot, asking for a new one if it's getting old.
+     * <p/>
+     * @return the current snapshot.
+     */
+    private LiveSnapshot currentSnapshot() {
+        LiveSnapshot current = snapshot;
+        if (current.getAge() > MAX_SNAPSHOT_AGE) {
+            liveChanged();
+        }
+        return current;
+    }
+
     private class SongSearchHandler implements HttpHandler {
 
         @Override
@@ -168,10 +311,7 @@ public class RemoteControlServer {
                 pageContent = pageContent.replace("$1", LabelGrabber.INSTANCE.getLabel("rcs.submit"));
                 byte[] bytes = pageContent.getBytes(Charset.forName("UTF-8"));
                 he.getResponseHeaders().add("Cache-Control", "no-cache, no-store, must-revalidate");
-                he.sendResponseHeaders(200, bytes.length);
-                try (OutputStream os = he.getResponseBody()) {
-                    os.write(bytes);
-                }
+                ServerUtils.sendText(he, bytes);
             } else {
                 passwordPage(he);
             }
@@ -186,10 +326,7 @@ public class RemoteControlServer {
                 final String response;
                 response = RCHandler.addBiblePassage(he);
                 he.getResponseHeaders().add("Cache-Control", "no-cache, no-store, must-revalidate");
-                he.sendResponseHeaders(200, response.getBytes(Charset.forName("UTF-8")).length);
-                OutputStream os = he.getResponseBody();
-                os.write(response.getBytes(Charset.forName("UTF-8")));
-                os.close();
+                ServerUtils.sendText(he, response.getBytes(Charset.forName("UTF-8")));
             } else {
                 passwordPage(he);
             }
@@ -204,10 +341,7 @@ public class RemoteControlServer {
                 final String response;
                 response = RCHandler.listBibleTranslations(he);
                 he.getResponseHeaders().add("Cache-Control", "no-cache, no-store, must-revalidate");
-                he.sendResponseHeaders(200, response.getBytes(Charset.forName("UTF-8")).length);
-                OutputStream os = he.getResponseBody();
-                os.write(response.getBytes(Charset.forName("UTF-8")));
-                os.close();
+                ServerUtils.sendText(he, response.getBytes(Charset.forName("UTF-8")));
             } else {
                 passwordPage(he);
             }
@@ -222,10 +356,7 @@ public class RemoteControlServer {
                 final String response;
                 response = RCHandler.listBibleBooks(he);
                 he.getResponseHeaders().add("Cache-Control", "no-cache, no-store, must-revalidate");
-                he.sendResponseHeaders(200, response.getBytes(Charset.forName("UTF-8")).length);
-                OutputStream os = he.getResponseBody();
-                os.write(response.getBytes(Charset.forName("UTF-8")));
-                os.close();
+                ServerUtils.sendText(he, response.getBytes(Charset.forName("UTF-8")));
             } else {
                 passwordPage(he);
             }
@@ -251,10 +382,7 @@ public class RemoteControlServer {
                 }
             }
             he.getResponseHeaders().add("Cache-Control", "no-cache, no-store, must-revalidate");
-            he.sendResponseHeaders(200, response.getBytes(Charset.forName("UTF-8")).length);
-            OutputStream os = he.getResponseBody();
-            os.write(response.getBytes(Charset.forName("UTF-8")));
-            os.close();
+            ServerUtils.sendText(he, response.getBytes(Charset.forName("UTF-8")));
         }
     }
 
@@ -268,10 +396,7 @@ public class RemoteControlServer {
                 pageContent = pageContent.replace("$2", LabelGrabber.INSTANCE.getLabel("bible.passage.selector.prompt"));
                 byte[] bytes = pageContent.getBytes(Charset.forName("UTF-8"));
                 he.getResponseHeaders().add("Cache-Control", "no-cache, no-store, must-revalidate");
-                he.sendResponseHeaders(200, bytes.length);
-                try (OutputStream os = he.getResponseBody()) {
-                    os.write(bytes);
-                }
+                ServerUtils.sendText(he, bytes);
             } else {
                 passwordPage(he);
             }
@@ -286,10 +411,7 @@ public class RemoteControlServer {
                 final String response;
                 response = RCHandler.songDisplay(he);
                 he.getResponseHeaders().add("Cache-Control", "no-cache, no-store, must-revalidate");
-                he.sendResponseHeaders(200, response.getBytes(Charset.forName("UTF-8")).length);
-                OutputStream os = he.getResponseBody();
-                os.write(response.getBytes(Charset.forName("UTF-8")));
-                os.close();
+                ServerUtils.sendText(he, response.getBytes(Charset.forName("UTF-8")));
             } else {
                 passwordPage(he);
             }
@@ -297,30 +419,37 @@ public class RemoteControlServer {
 
     }
 
+    /**
+     * Sends a theme preview, as /themethumbN (with an optional width
+     * parameter.) Previews are captured whenever the themes change, so this
+     * never has to wait for the platform thread.
+     */
     private class ThemeThumbnailsHandler implements HttpHandler {
 
-        FileNameMap fileNameMap = URLConnection.getFileNameMap();
-
-        public void handle(HttpExchange t) {
-            Utils.fxRunAndWait(() -> {
-                try {
-                    ScheduleThemeNode stn = QueleaApp.get().getMainWindow().getMainPanel().getSchedulePanel().getThemeNode();
-                    int themeNum = Integer.parseInt(t.getRequestURI().getPath().replace("/themethumb", ""));
-                    BufferedImage image = SwingFXUtils.fromFXImage(((ThemePreviewPanel) stn.getThemePreviews().getChildren().get(themeNum)).getThemePreviewImage(), null);
-                    ByteArrayOutputStream output = new ByteArrayOutputStream();
-                    ImageIO.write(image, "png", output);
-                    byte[] byteArray = output.toByteArray();
-                    t.sendResponseHeaders(200, byteArray.length);
-                    OutputStream out = t.getResponseBody();
-                    out.write(byteArray);
-                    out.close();
-
-                } catch (IOException e) {
-                    System.out.println("Failed saving");
-                } catch (Exception e) {
-                    System.out.println("Exception " + e);
+        @Override
+        public void handle(HttpExchange t) throws IOException {
+            Image[] previews = themePreviews;
+            byte[] image = null;
+            try {
+                int themeNum = Integer.parseInt(t.getRequestURI().getPath().replace("/themethumb", ""));
+                if (previews != null && themeNum >= 0 && themeNum < previews.length) {
+                    image = images.get(THEME_PREVIEWS, themeNum, RCHandler.getWidthParam(t), "png", () -> previews[themeNum]);
                 }
-            });
+            } catch (NumberFormatException ex) {
+                LOGGER.log(Level.WARNING, "Bad theme thumbnail request {0}", t.getRequestURI());
+            }
+            if (image == null) {
+                //Not captured yet (or no such theme)
+                t.getResponseHeaders().add("Retry-After", "1");
+                t.sendResponseHeaders(503, -1);
+                t.close();
+                return;
+            }
+            t.getResponseHeaders().add("Content-Type", "image/png");
+            t.sendResponseHeaders(200, image.length);
+            try (OutputStream out = t.getResponseBody()) {
+                out.write(image);
+            }
         }
     }
 
@@ -329,7 +458,11 @@ public class RemoteControlServer {
         @Override
         public void handle(HttpExchange t) throws IOException {
             if (RCHandler.isLoggedOn(t.getRemoteAddress().getAddress().toString())) {
-                byte[] byteArray = RCHandler.getPresentationSlides(t);
+                byte[] byteArray = RCHandler.getPresentationSlides(t, images);
+                String path = t.getRequestURI().getPath();
+                if (byteArray.length > 0 && (path.endsWith(".png") || path.endsWith(".jpg"))) {
+                    t.getResponseHeaders().add("Content-Type", path.endsWith(".png") ? "image/png" : "image/jpeg");
+                }
                 t.getResponseHeaders().add("Cache-Control", "no-cache, no-store, must-revalidate");
                 t.sendResponseHeaders(200, byteArray.length);
                 OutputStream out = t.getResponseBody();
@@ -349,10 +482,7 @@ public class RemoteControlServer {
                 final String response;
                 response = RCHandler.addSongToSchedule(he);
                 he.getResponseHeaders().add("Cache-Control", "no-cache, no-store, must-revalidate");
-                he.sendResponseHeaders(200, response.getBytes(Charset.forName("UTF-8")).length);
-                OutputStream os = he.getResponseBody();
-                os.write(response.getBytes(Charset.forName("UTF-8")));
-                os.close();
+                ServerUtils.sendText(he, response.getBytes(Charset.forName("UTF-8")));
             } else {
                 passwordPage(he);
             }
@@ -368,10 +498,7 @@ public class RemoteControlServer {
                 final String response;
                 response = RCHandler.removeItemFromSchedule(he);
                 he.getResponseHeaders().add("Cache-Control", "no-cache, no-store, must-revalidate");
-                he.sendResponseHeaders(200, response.getBytes(Charset.forName("UTF-8")).length);
-                OutputStream os = he.getResponseBody();
-                os.write(response.getBytes(Charset.forName("UTF-8")));
-                os.close();
+                ServerUtils.sendText(he, response.getBytes(Charset.forName("UTF-8")));
             } else {
                 passwordPage(he);
             }
@@ -386,10 +513,7 @@ public class RemoteControlServer {
                 final String response;
                 response = RCHandler.databaseSearch(he);
                 he.getResponseHeaders().add("Cache-Control", "no-cache, no-store, must-revalidate");
-                he.sendResponseHeaders(200, response.getBytes(Charset.forName("UTF-8")).length);
-                OutputStream os = he.getResponseBody();
-                os.write(response.getBytes(Charset.forName("UTF-8")));
-                os.close();
+                ServerUtils.sendText(he, response.getBytes(Charset.forName("UTF-8")));
             } else {
                 passwordPage(he);
             }
@@ -404,10 +528,7 @@ public class RemoteControlServer {
                 final String response;
                 response = RCHandler.getThemes(he);
                 he.getResponseHeaders().add("Cache-Control", "no-cache, no-store, must-revalidate");
-                he.sendResponseHeaders(200, response.getBytes(Charset.forName("UTF-8")).length);
-                OutputStream os = he.getResponseBody();
-                os.write(response.getBytes(Charset.forName("UTF-8")));
-                os.close();
+                ServerUtils.sendText(he, response.getBytes(Charset.forName("UTF-8")));
             } else {
                 passwordPage(he);
             }
@@ -422,10 +543,7 @@ public class RemoteControlServer {
                 final String response;
                 response = RCHandler.setTheme(he);
                 he.getResponseHeaders().add("Cache-Control", "no-cache, no-store, must-revalidate");
-                he.sendResponseHeaders(200, response.getBytes(Charset.forName("UTF-8")).length);
-                OutputStream os = he.getResponseBody();
-                os.write(response.getBytes(Charset.forName("UTF-8")));
-                os.close();
+                ServerUtils.sendText(he, response.getBytes(Charset.forName("UTF-8")));
             } else {
                 passwordPage(he);
             }
@@ -440,12 +558,7 @@ public class RemoteControlServer {
 
         @Override
         public void handle(HttpExchange he) throws IOException {
-            byte[] bytes = RCHandler.schedule().getBytes(Charset.forName("UTF-8"));
-            he.getResponseHeaders().set("Cache-Control", "no-cache, no-store, must-revalidate");
-            he.sendResponseHeaders(200, bytes.length);
-            try (OutputStream os = he.getResponseBody()) {
-                os.write(bytes);
-            }
+            currentSnapshot().send(he, "schedule");
         }
     }
 
@@ -577,10 +690,7 @@ public class RemoteControlServer {
             if (RCHandler.isLoggedOn(he.getRemoteAddress().getAddress().toString())) {
                 final String response = "";
                 he.getResponseHeaders().add("Cache-Control", "no-cache, no-store, must-revalidate");
-                he.sendResponseHeaders(200, response.getBytes(Charset.forName("UTF-8")).length);
-                OutputStream os = he.getResponseBody();
-                os.write(response.getBytes(Charset.forName("UTF-8")));
-                os.close();
+                ServerUtils.sendText(he, response.getBytes(Charset.forName("UTF-8")));
                 RCHandler.moveUp(he.getRequestURI().toString());
             } else {
                 reload(he);
@@ -596,10 +706,7 @@ public class RemoteControlServer {
             if (RCHandler.isLoggedOn(he.getRemoteAddress().getAddress().toString())) {
                 final String response = "";
                 he.getResponseHeaders().add("Cache-Control", "no-cache, no-store, must-revalidate");
-                he.sendResponseHeaders(200, response.getBytes(Charset.forName("UTF-8")).length);
-                OutputStream os = he.getResponseBody();
-                os.write(response.getBytes(Charset.forName("UTF-8")));
-                os.close();
+                ServerUtils.sendText(he, response.getBytes(Charset.forName("UTF-8")));
                 RCHandler.moveDown(he.getRequestURI().toString());
             } else {
                 reload(he);
@@ -612,31 +719,36 @@ public class RemoteControlServer {
 
         @Override
         public void handle(HttpExchange he) throws IOException {
-            MainToolbar toolbar = QueleaApp.get().getMainWindow().getMainToolbar();
-            RecordingsHandler recHandler = toolbar.getRecordButtonHandler().getRecordingsHandler();
             if (RCHandler.isLoggedOn(he.getRemoteAddress().getAddress().toString())) {
-                StringBuilder sb = new StringBuilder();
-                sb.append(RCHandler.getLogo()).append(",");
-                sb.append(RCHandler.getBlack()).append(",");
-                sb.append(RCHandler.getClear()).append(",");
-                sb.append(RCHandler.videoStatus()).append(",");
-                if (toolbar.getRecordButtonHandler() != null && recHandler != null) {
-                    sb.append(recHandler.getIsRecording());
-                } else {
-                    sb.append("false");
-                }
-                byte[] bytes = sb.toString().getBytes(Charset.forName("UTF-8"));
-                he.getResponseHeaders().add("Cache-Control", "no-cache, no-store, must-revalidate");
-                he.sendResponseHeaders(200, bytes.length);
-                try (OutputStream os = he.getResponseBody()) {
-                    os.write(bytes);
-                }
+                currentSnapshot().send(he, "status");
             } else {
                 reload(he);
             }
         }
     }
 
+    /**
+     * Get the state of the logo, black and clear buttons, the play / pause
+     * button and whether we're recording, separated by commas.
+     * <p/>
+     * @return the button status.
+     */
+    private String status() {
+        MainToolbar toolbar = QueleaApp.get().getMainWindow().getMainToolbar();
+        RecordingsHandler recHandler = toolbar.getRecordButtonHandler().getRecordingsHandler();
+        StringBuilder sb = new StringBuilder();
+        sb.append(RCHandler.getLogo()).append(",");
+        sb.append(RCHandler.getBlack()).append(",");
+        sb.append(RCHandler.getClear()).append(",");
+        sb.append(RCHandler.videoStatus()).append(",");
+        if (toolbar.getRecordButtonHandler() != null && recHandler != null) {
+            sb.append(recHandler.getIsRecording());
+        } else {
+            sb.append("false");
+        }
+        return sb.toString();
+    }
+
     //Handles clicking on a section
     private class SectionHandler implements HttpHandler {
 
@@ -703,10 +815,7 @@ public class RemoteControlServer {
                     pageContent = langStrings(pageContent);
                 }
                 byte[] bytes = pageContent.getBytes(Charset.forName("UTF-8"));
-                he.sendResponseHeaders(200, bytes.length);
-                try (OutputStream os = he.getResponseBody()) {
-                    os.write(bytes);
-                }
+                ServerUtils.sendText(he, bytes);
             } else {
                 passwordPage(he);
             }
@@ -729,10 +838,7 @@ public class RemoteControlServer {
                     pageContent = langStrings(pageContent);
                 }
                 byte[] bytes = pageContent.getBytes(Charset.forName("UTF-8"));
-                he.sendResponseHeaders(200, bytes.length);
-                try (OutputStream os = he.getResponseBody()) {
-                    os.write(bytes);
-                }
+                ServerUtils.sendText(he, bytes);
                 return;
             }
 
@@ -742,10 +848,7 @@ public class RemoteControlServer {
         content = content.replace("[submit.button.text]", LabelGrabber.INSTANCE.getLabel("remote.submit.text"));
         byte[] bytes = content.getBytes(Charset.forName("UTF-8"));
         he.getResponseHeaders().add("Cache-Control", "no-cache, no-store, must-revalidate");
-        he.sendResponseHeaders(200, bytes.length);
-        try (OutputStream os = he.getResponseBody()) {
-            os.write(bytes);
-        }
+        ServerUtils.sendText(he, bytes);
     }
 
     private void reload(HttpExchange he) throws IOException {
@@ -762,55 +865,7 @@ public class RemoteControlServer {
 
         @Override
         public void handle(HttpExchange t) throws IOException {
-            String response = "<i>" + LabelGrabber.INSTANCE.getLabel("remote.empty.lyrics") + "</i>";
-            Displayable d = QueleaApp.get().getMainWindow().getMainPanel().getLivePanel().getDisplayable();
-            if (d instanceof TextDisplayable) {
-                response = "<i>" + LabelGrabber.INSTANCE.getLabel("currently.displaying.text") + ": " + d.getPreviewText() + "<br/>" + "</i>";
-                response += lyrics(false);
-            } else if (d instanceof MultimediaDisplayable) {
-                response = "<i>" + LabelGrabber.INSTANCE.getLabel("currently.displaying.text") + ": " + d.getPreviewText() + "<br/>" + "</i>";
-                response += "<button type=\"button\" onclick=\"play();\" id=\"playbutton\">" + LabelGrabber.INSTANCE.getLabel("play") + "</button><br/><br/>";
-                response += "<i>" + LabelGrabber.INSTANCE.getLabel("remote.empty.lyrics") + "</i>";
-            } else if (d instanceof PresentationDisplayable || d instanceof PdfDisplayable || d instanceof ImageGroupDisplayable) {
-                StringBuilder sb = new StringBuilder();
-                sb.append("\n<html><i>").append(LabelGrabber.INSTANCE.getLabel("currently.displaying.text")).append(": ").append(d.getPreviewText()).append("<br/>" + "</i>");
-                int numberOfImages;
-                if (d instanceof PresentationDisplayable) {
-                    numberOfImages = ((PresentationDisplayable) d).getPresentation().getSlides().length;
-                } else if (d instanceof PdfDisplayable) {
-                    numberOfImages = ((PdfDisplayable) d).getPresentation().getSlides().length;
-                } else {
-                    numberOfImages = ((ImageGroupDisplayable) d).getPresentation().getSlides().length;
-                }
-                for (int i = 0; i < numberOfImages; i++) {
-                    int currentIndex;
-                    if (d instanceof PresentationDisplayable) {
-                        currentIndex = QueleaApp.get().getMainWindow().getMainPanel().getLivePanel().getPresentationPanel().getCurrentIndex() - 1;
-                    } else if (d instanceof PdfDisplayable) {
-                        currentIndex = QueleaApp.get().getMainWindow().getMainPanel().getLivePanel().getPdfPanel().getCurrentIndex() - 1;
-                    } else {
-                        currentIndex = QueleaApp.get().getMainWindow().getMainPanel().getLivePanel().getImageGroupPanel().getCurrentIndex() - 1;
-                    }
-                    if (i == currentIndex) {
-                        sb.append("<div class=\"inner current\">");
-                    } else {
-                        sb.append("<div class=\"inner\">");
-                    }
-                    sb.append("<p class=\"empty\" onclick=\"section(").append(i).append(");\"><img src=\"/slides/slide").append(i + 1).append(".png\" style=\"width:192px;height:108px;\">");
-                    sb.append("<br/>Slide ").append(i + 1).append("</p></div><br/><br/>");
-                }
-                response = sb.append("\n</html>").toString();
-            } else if (d != null) {
-                response = "<i>" + LabelGrabber.INSTANCE.getLabel("currently.displaying.text") + ": " + d.getPreviewText() + "<br/><br/>" + "</i>";
-                response += "<i>" + LabelGrabber.INSTANCE.getLabel("remote.empty.lyrics") + "</i>";
-            }
-            byte[] bytes = response.getBytes("UTF-8");
-
-            t.getResponseHeaders().add("Cache-Control", "no-cache, no-store, must-revalidate");
-            t.sendResponseHeaders(200, bytes.length);
-            try (OutputStream os = t.getResponseBody()) {
-                os.write(bytes);
-            }
+            currentSnapshot().send(t, "lyrics");
         }
     }
 
@@ -819,27 +874,82 @@ public class RemoteControlServer {
 
         @Override
         public void handle(HttpExchange t) throws IOException {
-            String response = "<i>" + LabelGrabber.INSTANCE.getLabel("remote.empty.lyrics") + "</i>";
-            LivePanel lp = QueleaApp.get().getMainWindow().getMainPanel().getLivePanel();
-            if (lp.getDisplayable() instanceof TextDisplayable) {
-                response = "<i>" + LabelGrabber.INSTANCE.getLabel("currently.displaying.text") + ": " + lp.getDisplayable().getPreviewText() + "<br/>" + "</i>";
-                response += lyrics(true);
-            } else if (lp.getDisplayable() instanceof MultimediaDisplayable) {
-                response = "<i>" + LabelGrabber.INSTANCE.getLabel("currently.displaying.text") + ": " + lp.getDisplayable().getPreviewText() + "<br/>" + "</i>";
-                response += "<button type=\"button\" onclick=\"play();\" id=\"playbutton\">" + LabelGrabber.INSTANCE.getLabel("play") + "</button><br/><br/>";
-                response += "<i>" + LabelGrabber.INSTANCE.getLabel("remote.empty.lyrics") + "</i>";
-            } else if (lp.getDisplayable() != null) {
-                response = "<i>" + LabelGrabber.INSTANCE.getLabel("currently.displaying.text") + ": " + lp.getDisplayable().getPreviewText() + "<br/><br/>" + "</i>";
-                response += "<i>" + LabelGrabber.INSTANCE.getLabel("remote.empty.lyrics") + "</i>";
-            }
-            byte[] bytes = response.getBytes("UTF-8");
+            currentSnapshot().send(t, "chords");
+        }
+    }
 
-            t.getResponseHeaders().add("Cache-Control", "no-cache, no-store, must-revalidate");
-            t.sendResponseHeaders(200, bytes.length);
-            try (OutputStream os = t.getResponseBody()) {
-                os.write(bytes);
+    /**
+     * Get the lyrics page - the lyrics if a song or bible passage is live, or
+     * the slides if it's a presentation.
+     * <p/>
+     * @return the lyrics page content.
+     */
+    private String lyricsPage() {
+        String response = "<i>" + LabelGrabber.INSTANCE.getLabel("remote.empty.lyrics") + "</i>";
+        Displayable d = QueleaApp.get().getMainWindow().getMainPanel().getLivePanel().getDisplayable();
+        if (d instanceof TextDisplayable) {
+            response = "<i>" + LabelGrabber.INSTANCE.getLabel("currently.displaying.text") + ": " + d.getPreviewText() + "<br/>" + "</i>";
+            response += lyrics(false);
+        } else if (d instanceof MultimediaDisplayable) {
+            response = "<i>" + LabelGrabber.INSTANCE.getLabel("currently.displaying.text") + ": " + d.getPreviewText() + "<br/>" + "</i>";
+            response += "<button type=\"button\" onclick=\"play();\" id=\"playbutton\">" + LabelGrabber.INSTANCE.getLabel("play") + "</button><br/><br/>";
+            response += "<i>" + LabelGrabber.INSTANCE.getLabel("remote.empty.lyrics") + "</i>";
+        } else if (d instanceof PresentationDisplayable || d instanceof PdfDisplayable || d instanceof ImageGroupDisplayable) {
+            StringBuilder sb = new StringBuilder();
+            sb.append("\n<html><i>").append(LabelGrabber.INSTANCE.getLabel("currently.displaying.text")).append(": ").append(d.getPreviewText()).append("<br/>" + "</i>");
+            int numberOfImages;
+            if (d instanceof PresentationDisplayable) {
+                numberOfImages = ((PresentationDisplayable) d).getPresentation().getSlides().length;
+            } else if (d instanceof PdfDisplayable) {
+                numberOfImages = ((PdfDisplayable) d).getPresentation().getSlides().length;
+            } else {
+                numberOfImages = ((ImageGroupDisplayable) d).getPresentation().getSlides().length;
             }
+            for (int i = 0; i < numberOfImages; i++) {
+                int currentIndex;
+                if (d instanceof PresentationDisplayable) {
+                    currentIndex = QueleaApp.get().getMainWindow().getMainPanel().getLivePanel().getPresentationPanel().getCurrentIndex() - 1;
+                } else if (d instanceof PdfDisplayable) {
+                    currentIndex = QueleaApp.get().getMainWindow().getMainPanel().getLivePanel().getPdfPanel().getCurrentIndex() - 1;
+                } else {
+                    currentIndex = QueleaApp.get().getMainWindow().getMainPanel().getLivePanel().getImageGroupPanel().getCurrentIndex() - 1;
+                }
+                if (i == currentIndex) {
+                    sb.append("<div class=\"inner current\">");
+                } else {
+                    sb.append("<div class=\"inner\">");
+                }
+                sb.append("<p class=\"empty\" onclick=\"section(").append(i).append(");\"><img src=\"/slides/slide").append(i + 1).append(".jpg?width=").append(SLIDE_THUMBNAIL_WIDTH).append("\" style=\"width:192px;height:108px;\">");
+                sb.append("<br/>Slide ").append(i + 1).append("</p></div><br/><br/>");
+            }
+            response = sb.append("\n</html>").toString();
+        } else if (d != null) {
+            response = "<i>" + LabelGrabber.INSTANCE.getLabel("currently.displaying.text") + ": " + d.getPreviewText() + "<br/><br/>" + "</i>";
+            response += "<i>" + LabelGrabber.INSTANCE.getLabel("remote.empty.lyrics") + "</i>";
+        }
+        return response;
+    }
+
+    /**
+     * Get the chords page - the lyrics with their chords if a song is live.
+     * <p/>
+     * @return the chords page content.
+     */
+    private String chordsPage() {
+        String response = "<i>" + LabelGrabber.INSTANCE.getLabel("remote.empty.lyrics") + "</i>";
+        LivePanel lp = QueleaApp.get().getMainWindow().getMainPanel().getLivePanel();
+        if (lp.getDisplayable() instanceof TextDisplayable) {
+            response = "<i>" + LabelGrabber.INSTANCE.getLabel("currently.displaying.text") + ": " + lp.getDisplayable().getPreviewText() + "<br/>" + "</i>";
+            response += lyrics(true);
+        } else if (lp.getDisplayable() instanceof MultimediaDisplayable) {
+            response = "<i>" + LabelGrabber.INSTANCE.getLabel("currently.displaying.text") + ": " + lp.getDisplayable().getPreviewText() + "<br/>" + "</i>";
+            response += "<button type=\"button\" onclick=\"play();\" id=\"playbutton\">" + LabelGrabber.INSTANCE.getLabel("play") + "</button><br/><br/>";
+            response += "<i>" + LabelGrabber.INSTANCE.getLabel("remote.empty.lyrics") + "</i>";
+        } else if (lp.getDisplayable() != null) {
+            response = "<i>" + LabelGrabber.INSTANCE.getLabel("currently.displaying.text") + ": " + lp.getDisplayable().getPreviewText() + "<br/><br/>" + "</i>";
+            response += "<i>" + LabelGrabber.INSTANCE.getLabel("remote.empty.lyrics") + "</i>";
         }
+        return response;
     }
 
     /**
@@ -0,0 +1,132 @@
+/*
+ * This file is part of Quelea, free projection software for churches.
+ *
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.quelea.server;
+
+import com.sun.net.httpserver.Filter;
+import com.sun.net.httpserver.HttpContext;
+import com.sun.net.httpserver.HttpExchange;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import org.quelea.services.utils.LoggerUtils;
+
+/**
+ * Times the requests to each of a server's endpoints. Slow requests are
+ * logged as they happen, and a summary for each endpoint is logged when the
+ * server stops.
+ * <p>
+ * @author Michael
+ */
+final class ServerMetrics extends Filter {
+
+    private static final Logger LOGGER = LoggerUtils.getLogger();
+    private static final long SLOW_NANOS = TimeUnit.MILLISECONDS.toNanos(500);
+    private final String name;
+    private final Map<String, Timing> timings;
+
+    /**
+     * Create a new set of metrics.
+     * <p>
+     * @param name the name of the server, for the log.
+     */
+    ServerMetrics(String name) {
+        this.name = name;
+        timings = new ConcurrentHashMap<>();
+    }
+
+    /**
+     * Time the requests to the given context.
+     * <p>
+     * @param context the context.
+     * @return the same context, for chaining.
+     */
+    HttpContext track(HttpContext context) {
+        context.getFilters().add(this);
+        return context;
+    }
+
+    @Override
+    public String description() {
+        return "Times requests to each endpoint";
+    }
+
+    @Override
+    public void doFilter(HttpExchange exchange, Chain chain) throws IOException {
+        long start = System.nanoTime();
+        try {
+            chain.doFilter(exchange);
+        } finally {
+            long elapsed = System.nanoTime() - start;
+            String path = exchange.getHttpContext().getPath();
+            timings.computeIfAbsent(path, p -> new Timing()).add(elapsed);
+            if (elapsed > SLOW_NANOS) {
+                LOGGER.log(Level.INFO, "{0}: request to {1} took {2}ms", new Object[]{name, exchange.getRequestURI(), TimeUnit.NANOSECONDS.toMillis(elapsed)});
+            }
+        }
+    }
+
+    /**
+     * Get a summary of the request times for each endpoint, slowest (by total
+     * time) first.
+     * <p>
+     * @return the summary, one line per endpoint.
+     */
+    String getSummary() {
+        List<Map.Entry<String, Timing>> entries = new ArrayList<>(timings.entrySet());
+        entries.sort((a, b) -> Long.compare(b.getValue().total.sum(), a.getValue().total.sum()));
+        StringBuilder ret = new StringBuilder();
+        for (Map.Entry<String, Timing> entry : entries) {
+            Timing timing = entry.getValue();
+            long count = timing.count.sum();
+            ret.append(entry.getKey())
+                    .append(": ").append(count).append(" requests, ")
+                    .append(String.format("%.1f", count == 0 ? 0 : timing.total.sum() / (count * 1e6))).append("ms average, ")
+                    .append(String.format("%.1f", timing.max.get() / 1e6)).append("ms max\n");
+        }
+        return ret.toString();
+    }
+
+    /**
+     * Log the summary of request times, if there have been any requests.
+     */
+    void log() {
+        if (!timings.isEmpty()) {
+            LOGGER.log(Level.INFO, "{0} request times:\n{1}", new Object[]{name, getSummary()});
+        }
+    }
+
+    private static final class Timing {
+
+        private final LongAdder count = new LongAdder();
+        private final LongAdder total = new LongAdder();
+        private final AtomicLong max = new AtomicLong();
+
+        void add(long nanos) {
+            count.increment();
+            total.add(nanos);
+            max.accumulateAndGet(nanos, Math::max);
+        }
+    }
+}
@@ -0,0 +1,184 @@
+/*
+ * This file is part of Quelea, free projection software for churches.
+ *
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.quelea.server;
+
+import com.sun.net.httpserver.HttpExchange;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.GZIPOutputStream;
+import org.quelea.services.utils.LoggerUtils;
+import org.quelea.services.utils.QueleaProperties;
+
+/**
+ * Utilities shared by the HTTP servers - their worker threads, and sending
+ * text responses compressed when the client supports it.
+ * <p>
+ * @author Michael
+ */
+final class ServerUtils {
+
+    private static final Logger LOGGER = LoggerUtils.getLogger();
+    /**
+     * Requests that can be queued up waiting for a worker thread. Past this
+     * the dispatcher thread handles requests itself, which slows down
+     * accepting new ones.
+     */
+    private static final int QUEUE_SIZE = 64;
+    /**
+     * Responses smaller than this aren't worth compressing.
+     */
+    private static final int MIN_COMPRESS_SIZE = 512;
+
+    private ServerUtils() {
+        throw new AssertionError();
+    }
+
+    /**
+     * Create the executor a server handles its requests on, so a slow request
+     * (such as encoding a large image) doesn't hold up everyone else's. It
+     * has a fixed number of threads, set in the properties, and uses virtual
+     * threads if the JVM has them.
+     * <p>
+     * @param name the name of the server, used to name its threads.
+     * @return the executor.
+     */
+    static ExecutorService createExecutor(String name) {
+        int threads = Math.max(1, QueleaProperties.get().getServerThreads());
+        ThreadFactory factory = getVirtualThreadFactory(name);
+        if (factory == null) {
+            AtomicInteger count = new AtomicInteger();
+            factory = r -> {
+                Thread t = new Thread(r, name + " " + count.incrementAndGet());
+                t.setDaemon(true);
+                return t;
+            };
+        }
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(threads, threads, 30, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(QUEUE_SIZE), factory, new ThreadPoolExecutor.CallerRunsPolicy());
+        executor.allowCoreThreadTimeOut(true);
+        return executor;
+    }
+
+    /**
+     * Get a factory for virtual threads, found reflectively since they're
+     * only in newer JVMs.
+     * <p>
+     * @return the factory, or null if virtual threads aren't available.
+     */
+    private static ThreadFactory getVirtualThreadFactory(String name) {
+        try {
+            Class<?> builderClass = Class.forName("java.lang.Thread$Builder");
+            Object builder = Thread.class.getMethod("ofVirtual").invoke(null);
+            builder = builderClass.getMethod("name", String.class, long.class).invoke(builder, name + " ", 1L);
+            return (ThreadFactory) builderClass.getMethod("factory").invoke(builder);
+        } catch (ReflectiveOperationException | RuntimeException ex) {
+            LOGGER.log(Level.FINE, "Virtual threads not available, using platform threads", ex);
+            return null;
+        }
+    }
+
+    /**
+     * Send a text response, compressed if it's big enough to be worth it and
+     * the client accepts gzip or deflate.
+     * <p>
+     * @param he the request.
+     * @param bytes the encoded response.
+     * @throws IOException if the response couldn't be sent.
+     */
+    static void sendText(HttpExchange he, byte[] bytes) throws IOException {
+        String encoding = getEncoding(he, bytes.length);
+        send(he, encoding == null ? bytes : encode(bytes, encoding), encoding);
+    }
+
+    /**
+     * Send a response that's already been encoded.
+     * <p>
+     * @param he the request.
+     * @param bytes the response.
+     * @param encoding the encoding the response is in, as returned from
+     * getEncoding(), or null if it isn't compressed.
+     * @throws IOException if the response couldn't be sent.
+     */
+    static void send(HttpExchange he, byte[] bytes, String encoding) throws IOException {
+        he.getResponseHeaders().add("Vary", "Accept-Encoding");
+        if (encoding != null) {
+            he.getResponseHeaders().add("Content-Encoding", encoding);
+        }
+        he.sendResponseHeaders(200, bytes.length);
+        try (OutputStream os = he.getResponseBody()) {
+            os.write(bytes);
+        }
+    }
+
+    /**
+     * Work out how a response should be compressed.
+     * <p>
+     * @param he the request.
+     * @param length the length of the uncompressed response.
+     * @return "gzip" or "deflate", or null if the response shouldn't be
+     * compressed.
+     */
+    static String getEncoding(HttpExchange he, int length) {
+        String accept = he.getRequestHeaders().getFirst("Accept-Encoding");
+        if (accept == null || length < MIN_COMPRESS_SIZE) {
+            return null;
+        }
+        boolean deflate = false;
+        for (String token : accept.split(",")) {
+            String[] parts = token.split(";");
+            if (parts.length > 1 && parts[1].replace(" ", "").matches("q=0(\\.0*)?")) {
+                continue;
+            }
+            String coding = parts[0].trim().toLowerCase();
+            if (coding.equals("gzip")) {
+                return "gzip";
+            }
+            if (coding.equals("deflate")) {
+                deflate = true;
+            }
+        }
+        return deflate ? "deflate" : null;
+    }
+
+    /**
+     * Compress the given bytes.
+     * <p>
+     * @param bytes the bytes to compress.
+     * @param encoding "gzip" or "deflate".
+     * @return the compressed bytes.
+     */
+    static byte[] encode(byte[] bytes, String encoding) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(bytes.length / 3 + 64);
+        try (DeflaterOutputStream zip = encoding.equals("gzip") ? new GZIPOutputStream(out) : new DeflaterOutputStream(out)) {
+            zip.write(bytes);
+        } catch (IOException ex) {
+            throw new IllegalStateException("Couldn't compress in memory", ex);
+        }
+        return out.toByteArray();
+    }
+}
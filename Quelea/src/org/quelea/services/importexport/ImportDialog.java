@@ -21,11 +21,12 @@ import java.beans.PropertyChangeEvent;
 import java.beans.PropertyChangeListener;
 import java.io.File;
 import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.util.ArrayList;
+import java.util.BitSet;
 import java.util.List;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
-import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import javafx.application.Platform;
@@ -55,7 +56,6 @@ import org.quelea.services.languages.LabelGrabber;
 import org.quelea.services.utils.LoggerUtils;
 import org.quelea.services.utils.QueleaProperties;
 import org.quelea.services.utils.SongDuplicateChecker;
-import org.quelea.services.utils.Utils;
 import org.quelea.windows.main.QueleaApp;
 import org.quelea.windows.main.StatusPanel;
 
@@ -72,7 +72,7 @@ public abstract class ImportDialog extends Stage implements PropertyChangeListen
     private final CheckBox checkDuplicates;
     private final SelectSongsDialog importedDialog;
     private StatusPanel statusPanel;
-    private boolean halt;
+    private volatile boolean halt;
     private List<File> files;
     private static final Logger LOGGER = LoggerUtils.getLogger();
 
@@ -195,49 +195,43 @@ public abstract class ImportDialog extends Stage implements PropertyChangeListen
                 Thread worker = new Thread() {
                     private List<SongDisplayable> localSongs;
                     private boolean[] localSongsDuplicate;
-                    private final ExecutorService checkerService = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors());
 
                     @Override
                     public void run() {
                         try {
-                            localSongs = new ArrayList<>();
+                            final List<SongDisplayable> songs = new ArrayList<>();
+                            final BitSet duplicates = new BitSet();
+                            final SongDuplicateChecker checker = checkDuplicates.isSelected() ? new SongDuplicateChecker() : null;
+                            final AtomicBoolean checking = new AtomicBoolean();
+                            Consumer<SongDisplayable> consumer = song -> {
+                                if (halt) {
+                                    return;
+                                }
+                                if (checker != null && checking.compareAndSet(false, true)) {
+                                    //Songs are now being checked for duplicates as they arrive
+                                    statusPanel.setProgress(-1);
+                                }
+                                boolean duplicate = checker != null && checker.checkSong(song);
+                                synchronized (songs) {
+                                    duplicates.set(songs.size(), duplicate);
+                                    songs.add(song);
+                                }
+                            };
                             if (files == null || files.isEmpty()) {
                                 //Assume Kingsway Import!
-                                localSongs.addAll(parser.getSongs(null, statusPanel));
+                                parser.getSongs(null, statusPanel, consumer, () -> halt);
                             } else {
-                                for (File file : files) {
-                                    localSongs.addAll(parser.getSongs(file, statusPanel));
-                                }
-                            }
-                            if (halt) {
-                                localSongs = null;
+                                getSongs(parser, files, consumer);
                             }
-                            statusPanel.setProgress(0);
-                            if (checkDuplicates.isSelected()) {
-//                                localSongsDuplicate = new SongDuplicateChecker().checkSongs(localSongsArr);
-                                for (int i = 0; i < (localSongs == null ? 0 : localSongs.size()); i++) {
-                                    final int finali = i;
-                                    checkerService.submit(Utils.wrapAsLowPriority(new Runnable() {
-                                        @Override
-                                        public void run() {
-                                            if (!halt) {
-                                                final boolean result = new SongDuplicateChecker().checkSong(localSongs.get(finali));
-                                                localSongsDuplicate[finali] = result;
-                                                final double progress = ((double) finali / localSongs.size());
-                                                if (statusPanel.getProgress() < progress) {
-                                                    statusPanel.setProgress(progress);
-                                                }
-                                            }
-                                        }
-                                    }));
-                                }
-                                try {
-                                    checkerService.shutdown();
-                                    checkerService.awaitTermination(365, TimeUnit.DAYS); //Year eh? ;-)
-                                } catch (InterruptedException ex) {
-                                    LOGGER.log(Level.WARNING, "Interrupted?!", ex);
+                            localSongs = halt ? null : songs;
+                            if (checker != null && localSongs != null) {
+                                //Checked means import, so duplicates start off unchecked
+                                localSongsDuplicate = new boolean[localSongs.size()];
+                                for (int i = 0; i < localSongsDuplicate.length; i++) {
+                                    localSongsDuplicate[i] = !duplicates.get(i);
                                 }
                             }
+                            statusPanel.setProgress(0);
                             Platform.runLater(new Runnable() {
                                 @Override
                                 public void run() {
@@ -270,6 +264,32 @@ public abstract class ImportDialog extends Stage implements PropertyChangeListen
         setScene(new Scene(mainPane));
     }
 
+    /**
+     * Parse the songs in all the given files, several files at once, handing
+     * each song to the consumer as soon as it's been parsed.
+     * <p/>
+     * @param parser the parser to use.
+     * @param files the files to parse.
+     * @param songs given each song as it's parsed, from several threads.
+     * @throws IOException if one of the files couldn't be read.
+     */
+    private void getSongs(SongParser parser, List<File> files, Consumer<SongDisplayable> songs) throws IOException {
+        try {
+            new ArrayList<>(files).parallelStream().forEach(file -> {
+                if (halt) {
+                    return;
+                }
+                try {
+                    parser.getSongs(file, statusPanel, songs, () -> halt);
+                } catch (IOException ex) {
+                    throw new UncheckedIOException(ex);
+                }
+            });
+        } catch (UncheckedIOException ex) {
+            throw ex.getCause();
+        }
+    }
+
     /**
      * Get the import button.
      * <p/>
@@ -26,6 +26,8 @@ import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.function.BooleanSupplier;
+import java.util.function.Consumer;
 import javax.xml.parsers.DocumentBuilder;
 import javax.xml.parsers.DocumentBuilderFactory;
 import javax.xml.parsers.ParserConfigurationException;
@@ -54,11 +56,31 @@ public class OpenLPParser implements SongParser {
     @Override
     public List<SongDisplayable> getSongs(File location, StatusPanel statusPanel) throws IOException {
         List<SongDisplayable> ret = new ArrayList<>();
+        getSongs(location, statusPanel, ret::add, () -> false);
+        return ret;
+    }
+
+    /**
+     * Read the songs in the given OpenLP database, handing each one on as
+     * soon as its row has been read.
+     * <p>
+     * @param location the location of the OpenLP database.
+     * @param statusPanel the status panel (ignored.)
+     * @param songs given each song found.
+     * @param halt checked before each row is read.
+     * @throws IOException if something goes wrong.
+     */
+    @Override
+    public void getSongs(File location, StatusPanel statusPanel, Consumer<SongDisplayable> songs, BooleanSupplier halt) throws IOException {
         try {
             Class.forName("org.sqlite.JDBC");
-            Connection conn = DriverManager.getConnection("jdbc:sqlite:" + location.getAbsolutePath());
+        }
+        catch(ClassNotFoundException ex) {
+            return;
+        }
+        try(Connection conn = DriverManager.getConnection("jdbc:sqlite:" + location.getAbsolutePath())) {
             ResultSet rs = conn.createStatement().executeQuery("SELECT * FROM songs");
-            while(rs.next()) {
+            while(!halt.getAsBoolean() && rs.next()) {
                 String lyrics = getLyricsFromXML(rs.getString("lyrics"));
                 String title = rs.getString("title");
                 String ccli = rs.getString("ccli_number");
@@ -72,13 +94,12 @@ public class OpenLPParser implements SongParser {
                     if(copyright != null) {
                         displayable.setCopyright(copyright.trim());
                     }
-                    ret.add(displayable);
+                    songs.accept(displayable);
                 }
             }
-            return ret;
         }
-        catch(ClassNotFoundException | SQLException ex) {
-            return ret;
+        catch(SQLException ex) {
+            //Keep the songs that were read before the error
         }
     }
 
@@ -26,10 +26,9 @@ import java.io.BufferedReader;
 import java.io.File;
 import java.io.IOException;
 import java.io.InputStreamReader;
-import java.nio.charset.Charset;
-import java.util.ArrayList;
-import java.util.Enumeration;
 import java.util.List;
+import java.util.function.BooleanSupplier;
+import java.util.function.Consumer;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import java.util.zip.ZipEntry;
@@ -58,38 +57,37 @@ public class OpenLyricsParser implements SongParser {
      */
     @Override
     public List<SongDisplayable> getSongs(File location, StatusPanel statusPanel) throws IOException {
-        final ZipFile file = new ZipFile(location, Charset.forName("Cp437"));
-        List<SongDisplayable> ret = new ArrayList<>();
-        try {
-            final Enumeration<? extends ZipEntry> entries = file.entries();
-            while (entries.hasMoreElements()) {
-                final ZipEntry entry = entries.nextElement();
-                StringBuilder fileContents = new StringBuilder();
-                try (BufferedReader reader = new BufferedReader(new InputStreamReader(file.getInputStream(entry), "UTF-8"))) {
-                    String line;
-                    while ((line = reader.readLine()) != null) {
-                        fileContents.append(line.trim());
-                    }
-                }
-                OpenLyricsObject ol = new OpenLyricsObject(fileContents.toString());
-                String lyrics = getLyrics(ol);
-                String title = getTitle(ol.getProperties().getTitleProperty());
-                String author = getAuthor(ol);
-                if (!lyrics.isEmpty()) {
-                    SongDisplayable displayable = new SongDisplayable(title, author);
-                    displayable.setLyrics(lyrics);
-                    ret.add(displayable);
-                }
-                else {
-                    LOGGER.log(Level.INFO, "Song had empty lyrics");
-                }
+        return ZipSongReader.getSongs(location, "openlyrics", this::parseEntry);
+    }
+
+    @Override
+    public void getSongs(File location, StatusPanel statusPanel, Consumer<SongDisplayable> songs, BooleanSupplier halt) throws IOException {
+        ZipSongReader.readSongs(location, "openlyrics", this::parseEntry, songs, halt);
+    }
+
+    /**
+     * Parse the song in a single entry of an openlyrics archive.
+     */
+    private void parseEntry(ZipFile file, ZipEntry entry, Consumer<SongDisplayable> songs) throws IOException, OpenLyricsException, ParserConfigurationException, SAXException {
+        StringBuilder fileContents = new StringBuilder();
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(file.getInputStream(entry), "UTF-8"))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                fileContents.append(line.trim());
             }
-        } catch (OpenLyricsException | IOException | ParserConfigurationException | SAXException ex) {
-            LOGGER.log(Level.WARNING, "Error importing openlyrics archive", ex);
-        } finally {
-            file.close();
         }
-        return ret;
+        OpenLyricsObject ol = new OpenLyricsObject(fileContents.toString());
+        String lyrics = getLyrics(ol);
+        String title = getTitle(ol.getProperties().getTitleProperty());
+        String author = getAuthor(ol);
+        if (!lyrics.isEmpty()) {
+            SongDisplayable displayable = new SongDisplayable(title, author);
+            displayable.setLyrics(lyrics);
+            songs.accept(displayable);
+        }
+        else {
+            LOGGER.log(Level.INFO, "Song had empty lyrics");
+        }
     }
     
     private String getTitle(TitleProperty titleProp) {
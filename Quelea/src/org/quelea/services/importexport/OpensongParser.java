@@ -19,19 +19,15 @@ package org.quelea.services.importexport;
 
 import java.io.File;
 import java.io.IOException;
-import java.nio.charset.Charset;
-import java.util.ArrayList;
-import java.util.Enumeration;
 import java.util.List;
-import java.util.logging.Level;
-import java.util.logging.Logger;
+import java.util.function.BooleanSupplier;
+import java.util.function.Consumer;
 import java.util.zip.ZipEntry;
 import java.util.zip.ZipFile;
 import javax.xml.parsers.DocumentBuilder;
 import javax.xml.parsers.DocumentBuilderFactory;
 import javax.xml.parsers.ParserConfigurationException;
 import org.quelea.data.displayable.SongDisplayable;
-import org.quelea.services.utils.LoggerUtils;
 import org.quelea.services.utils.UnicodeReader;
 import org.quelea.windows.main.StatusPanel;
 import org.w3c.dom.Document;
@@ -47,35 +43,32 @@ import org.xml.sax.SAXException;
  */
 public class OpensongParser implements SongParser {
 
-    private static final Logger LOGGER = LoggerUtils.getLogger();
-
     @Override
     public List<SongDisplayable> getSongs(File location, StatusPanel statusPanel) throws IOException {
-        ZipFile file = new ZipFile(location, Charset.forName("Cp437"));
-        List<SongDisplayable> ret = new ArrayList<>();
-        try {
-            final Enumeration<? extends ZipEntry> entries = file.entries();
-            while (entries.hasMoreElements()) {
-                final ZipEntry entry = entries.nextElement();
-                DocumentBuilderFactory dbFactory = DocumentBuilderFactory.newInstance();
-                DocumentBuilder dBuilder = dbFactory.newDocumentBuilder();
-                Document doc = dBuilder.parse(new InputSource(new UnicodeReader(file.getInputStream(entry), "UTF-8")));
-                NodeList list = doc.getChildNodes();
-                for (int i = 0; i < list.getLength(); i++) {
-                    if (list.item(i).getNodeName().equalsIgnoreCase("song")) {
-                        SongDisplayable displayable = getDisplayable(list.item(i));
-                        if (displayable != null) {
-                            ret.add(displayable);
-                        }
-                    }
+        return ZipSongReader.getSongs(location, "opensong", this::parseEntry);
+    }
+
+    @Override
+    public void getSongs(File location, StatusPanel statusPanel, Consumer<SongDisplayable> songs, BooleanSupplier halt) throws IOException {
+        ZipSongReader.readSongs(location, "opensong", this::parseEntry, songs, halt);
+    }
+
+    /**
+     * Parse the songs in a single entry of an opensong archive.
+     */
+    private void parseEntry(ZipFile file, ZipEntry entry, Consumer<SongDisplayable> songs) throws IOException, ParserConfigurationException, SAXException {
+        DocumentBuilderFactory dbFactory = DocumentBuilderFactory.newInstance();
+        DocumentBuilder dBuilder = dbFactory.newDocumentBuilder();
+        Document doc = dBuilder.parse(new InputSource(new UnicodeReader(file.getInputStream(entry), "UTF-8")));
+        NodeList list = doc.getChildNodes();
+        for (int i = 0; i < list.getLength(); i++) {
+            if (list.item(i).getNodeName().equalsIgnoreCase("song")) {
+                SongDisplayable displayable = getDisplayable(list.item(i));
+                if (displayable != null) {
+                    songs.accept(displayable);
                 }
             }
-        } catch (IOException | ParserConfigurationException | SAXException ex) {
-            LOGGER.log(Level.WARNING, "Error importing opensong", ex);
-        } finally {
-            file.close();
         }
-        return ret;
     }
 
     /**
@@ -17,14 +17,20 @@
  */
 package org.quelea.services.importexport;
 
+import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.nio.charset.Charset;
-import java.nio.file.Files;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Deque;
 import java.util.HashSet;
 import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import java.util.regex.Matcher;
@@ -40,6 +46,7 @@ import org.quelea.services.languages.LabelGrabber;
 import org.quelea.services.print.SongPDFPrinter;
 import org.quelea.services.utils.FileFilters;
 import org.quelea.services.utils.LoggerUtils;
+import org.quelea.services.utils.QueleaProperties;
 import org.quelea.windows.main.QueleaApp;
 import org.quelea.windows.main.StatusPanel;
 
@@ -90,19 +97,8 @@ public class PDFExporter implements Exporter {
         final List<SongDisplayable> songDisplayablesThreadSafe = new ArrayList<>(songDisplayables);
         new Thread() {
             public void run() {
-                final HashSet<String> names = new HashSet<>();
                 try (ZipOutputStream out = new ZipOutputStream(new FileOutputStream(file), Charset.forName("UTF-8"))) {
-                    for (int i = 0; i < songDisplayablesThreadSafe.size(); i++) {
-                        SongDisplayable song = songDisplayablesThreadSafe.get(i);
-                        String name = sanitise(song.getTitle()) + ".pdf";
-                        while (names.contains(name)) {
-                            name = incrementExtension(name);
-                        }
-                        names.add(name);
-                        out.putNextEntry(new ZipEntry(name));
-                        out.write(getPDF(song, printChords));
-                        panel.setProgress((double) i / songDisplayablesThreadSafe.size());
-                    }
+                    writePDFs(out, songDisplayablesThreadSafe, printChords, panel);
                     panel.done();
                 } catch (IOException ex) {
                     LOGGER.log(Level.WARNING, "Couldn't export PDF songs", ex);
@@ -111,6 +107,60 @@ public class PDFExporter implements Exporter {
         }.start();
     }
 
+    /**
+     * Write a PDF of each song to a zip file, one entry per song. The PDFs
+     * are printed in parallel (on as many threads as set in the properties)
+     * and written to the zip file in order as each one is ready; only a few
+     * more PDFs than there are threads are ever held in memory at once.
+     *
+     * @param out the zip file to write to.
+     * @param songs the songs to write.
+     * @param printChords true if the chords should be printed.
+     * @param panel the status panel to update with progress.
+     * @throws IOException if the zip file couldn't be written to.
+     */
+    public static void writePDFs(ZipOutputStream out, List<SongDisplayable> songs, boolean printChords, StatusPanel panel) throws IOException {
+        int threads = Math.max(1, QueleaProperties.get().getPdfExportThreads());
+        ExecutorService executor = Executors.newFixedThreadPool(threads, r -> {
+            Thread t = new Thread(r, "PDF export");
+            t.setDaemon(true);
+            return t;
+        });
+        try {
+            final HashSet<String> names = new HashSet<>();
+            Deque<Future<byte[]>> pending = new ArrayDeque<>();
+            int submitted = 0;
+            for (int i = 0; i < songs.size(); i++) {
+                while (submitted < songs.size() && pending.size() < threads * 2) {
+                    final SongDisplayable song = songs.get(submitted++);
+                    pending.add(executor.submit(() -> getPDF(song, printChords)));
+                }
+                SongDisplayable song = songs.get(i);
+                String name = sanitise(song.getTitle()) + ".pdf";
+                while (names.contains(name)) {
+                    name = incrementExtension(name);
+                }
+                names.add(name);
+                out.putNextEntry(new ZipEntry(name));
+                out.write(getResult(pending.remove()));
+                panel.setProgress((double) i / songs.size());
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private static byte[] getResult(Future<byte[]> future) throws IOException {
+        try {
+            return future.get();
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted exporting PDFs", ex);
+        } catch (ExecutionException ex) {
+            throw new IOException("Couldn't export PDF", ex.getCause());
+        }
+    }
+
     public static String incrementExtension(String name) {
         name = name.substring(0, name.length() - 4).trim();
         Pattern p = Pattern.compile(".*\\(([0-9]+)\\)");
@@ -139,17 +189,14 @@ public class PDFExporter implements Exporter {
      * @return the bytes that make up a PDF file for each song.
      */
     public static byte[] getPDF(SongDisplayable song, boolean printChords) {
+        if (song == null) {
+            return new byte[0];
+        }
         song.setPrintChords(printChords);
-        File temp = null;
         try {
-            temp = File.createTempFile("queleasong", ".pdf");
-            temp.deleteOnExit();
-            if (song == null) {
-                return new byte[0];
-            } else {
-                SongPDFPrinter.INSTANCE.print(song, temp, false);
-                return Files.readAllBytes(temp.toPath());
-            }
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            SongPDFPrinter.INSTANCE.print(song, out, false);
+            return out.toByteArray();
         } catch (IOException ex) {
             LOGGER.log(Level.WARNING, "Couldn't get PDF bytes for song", ex);
             return new byte[0];
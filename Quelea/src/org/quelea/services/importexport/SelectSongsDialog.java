@@ -129,8 +129,13 @@ public class SelectSongsDialog extends Stage {
      * @param defaultVal the default value to use for the checkbox if checkList
      * is null or smaller than the songs list.
      */
-    public void setSongs(final List<SongDisplayable> songs, final boolean[] checkList, final boolean defaultVal) {
-        Collections.sort(songs);
+    public void setSongs(final List<SongDisplayable> songs, boolean[] checkList, final boolean defaultVal) {
+        if(checkList != null) {
+            checkList = sortWith(songs, checkList);
+        }
+        else {
+            Collections.sort(songs);
+        }
         this.songs = songs;
         gridPane.getChildren().clear();
         checkBoxes.clear();
@@ -187,6 +192,29 @@ public class SelectSongsDialog extends Stage {
         checkEnableButton();
     }
 
+    /**
+     * Sort the songs, keeping each entry in the check list with its song.
+     * <p/>
+     * @param songs the songs to sort.
+     * @param checkList the check list corresponding to the songs.
+     * @return the check list in the new order of the songs.
+     */
+    private static boolean[] sortWith(List<SongDisplayable> songs, boolean[] checkList) {
+        List<Integer> order = new ArrayList<>();
+        for(int i = 0; i < songs.size(); i++) {
+            order.add(i);
+        }
+        List<SongDisplayable> original = new ArrayList<>(songs);
+        Collections.sort(order, (a, b) -> original.get(a).compareTo(original.get(b)));
+        boolean[] ret = new boolean[songs.size()];
+        for(int i = 0; i < order.size(); i++) {
+            int index = order.get(i);
+            songs.set(i, original.get(index));
+            ret[i] = index < checkList.length && checkList[index];
+        }
+        return ret;
+    }
+
     /**
      * Disable / enable the add button depending on if anything is selected.
      */
@@ -20,6 +20,8 @@ package org.quelea.services.importexport;
 import java.io.File;
 import java.io.IOException;
 import java.util.List;
+import java.util.function.BooleanSupplier;
+import java.util.function.Consumer;
 import org.quelea.data.displayable.SongDisplayable;
 import org.quelea.windows.main.StatusPanel;
 
@@ -40,4 +42,30 @@ public interface SongParser {
      * @throws IOException if something goes wrong accessing the given location.
      */
     List<SongDisplayable> getSongs(File location, StatusPanel statusPanel) throws IOException;
+
+    /**
+     * Get all the songs from a particular location, handing each one on as
+     * soon as it's been parsed rather than collecting them all first. Parsers
+     * of large sources (such as zip archives) override this to parse in
+     * parallel, so the consumer may be called from several threads at once.
+     * By default this just hands on the songs from getSongs().
+     * @param location the location to search for the songs.
+     * @param statusPanel the status panel used when parsing this song. It can
+     * be updated or ignored.
+     * @param songs given each song as it's parsed. Must be thread safe.
+     * @param halt checked as parsing goes on; once it returns true no more
+     * songs are parsed and this returns early.
+     * @throws IOException if something goes wrong accessing the given location.
+     */
+    default void getSongs(File location, StatusPanel statusPanel, Consumer<SongDisplayable> songs, BooleanSupplier halt) throws IOException {
+        if (halt.getAsBoolean()) {
+            return;
+        }
+        for (SongDisplayable song : getSongs(location, statusPanel)) {
+            if (halt.getAsBoolean()) {
+                return;
+            }
+            songs.accept(song);
+        }
+    }
 }
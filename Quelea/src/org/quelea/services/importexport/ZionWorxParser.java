@@ -21,6 +21,8 @@ import java.io.File;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.function.BooleanSupplier;
+import java.util.function.Consumer;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 import org.quelea.data.displayable.SongDisplayable;
@@ -44,14 +46,29 @@ public class ZionWorxParser implements SongParser {
     @Override
     public List<SongDisplayable> getSongs(File location, StatusPanel statusPanel) throws IOException {
         List<SongDisplayable> songs = new ArrayList<>();
+        getSongs(location, statusPanel, songs::add, () -> false);
+        return songs;
+    }
+
+    /**
+     * Read the songs in the given ZionWorx database, handing each one on as
+     * soon as it's been parsed.
+     * <p>
+     * @param location the location of the ZionWorx MainTable.dat file.
+     * @param statusPanel the status panel (ignored.)
+     * @param songs given each song found.
+     * @param halt checked before each song is parsed.
+     * @throws IOException if something goes wrong.
+     */
+    @Override
+    public void getSongs(File location, StatusPanel statusPanel, Consumer<SongDisplayable> songs, BooleanSupplier halt) throws IOException {
         File csvLocation = new ZWCsvConverter(location).getCSV();
         String fileContent = Utils.getTextFromFile(csvLocation.getAbsolutePath(), null);
         RawTextWrapper rawText;
-        while((rawText = getRawText(fileContent)) != null) {
-            songs.add(getSong(rawText.rawText));
+        while(!halt.getAsBoolean() && (rawText = getRawText(fileContent)) != null) {
+            songs.accept(getSong(rawText.rawText));
             fileContent = fileContent.substring(rawText.endIndex);
         }
-        return songs;
     }
 
     /**
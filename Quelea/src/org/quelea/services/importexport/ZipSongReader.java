@@ -0,0 +1,110 @@
+/*
+ * This file is part of Quelea, free projection software for churches.
+ *
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.quelea.services.importexport;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.function.BooleanSupplier;
+import java.util.function.Consumer;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+import org.quelea.data.displayable.SongDisplayable;
+import org.quelea.services.utils.LoggerUtils;
+
+/**
+ * Reads the songs in a zip archive that holds one song file per entry,
+ * parsing the entries in parallel. Each entry is parsed (and its document
+ * thrown away) on its own, so only as many documents as there are threads
+ * are ever in memory at once, however big the archive is.
+ *
+ * @author Michael
+ */
+final class ZipSongReader {
+
+    private static final Logger LOGGER = LoggerUtils.getLogger();
+
+    /**
+     * Parses the songs in a single entry of an archive.
+     */
+    interface EntryParser {
+
+        /**
+         * Parse the songs in an entry.
+         *
+         * @param file the archive.
+         * @param entry the entry to parse.
+         * @param songs given each song found in the entry.
+         * @throws Exception if the entry couldn't be parsed.
+         */
+        void parse(ZipFile file, ZipEntry entry, Consumer<SongDisplayable> songs) throws Exception;
+    }
+
+    private ZipSongReader() {
+        throw new AssertionError();
+    }
+
+    /**
+     * Read all the songs in a zip archive. Entries that can't be parsed are
+     * logged and skipped.
+     *
+     * @param location the archive.
+     * @param name the type of archive, for the log.
+     * @param parser parses each entry.
+     * @param songs given each song as it's parsed, possibly from several
+     * threads at once.
+     * @param halt checked before each entry is parsed; once it returns true
+     * the remaining entries are skipped.
+     * @throws IOException if the archive couldn't be read.
+     */
+    static void readSongs(File location, String name, EntryParser parser, Consumer<SongDisplayable> songs, BooleanSupplier halt) throws IOException {
+        try (ZipFile file = new ZipFile(location, Charset.forName("Cp437"))) {
+            List<? extends ZipEntry> entries = Collections.list(file.entries());
+            entries.parallelStream().filter(entry -> !entry.isDirectory()).forEach(entry -> {
+                if (halt.getAsBoolean()) {
+                    return;
+                }
+                try {
+                    parser.parse(file, entry, songs);
+                } catch (Exception ex) {
+                    LOGGER.log(Level.WARNING, "Error importing " + entry.getName() + " from " + name + " archive", ex);
+                }
+            });
+        }
+    }
+
+    /**
+     * Read all the songs in a zip archive into a list.
+     *
+     * @param location the archive.
+     * @param name the type of archive, for the log.
+     * @param parser parses each entry.
+     * @return the songs in the archive.
+     * @throws IOException if the archive couldn't be read.
+     */
+    static List<SongDisplayable> getSongs(File location, String name, EntryParser parser) throws IOException {
+        List<SongDisplayable> ret = Collections.synchronizedList(new ArrayList<>());
+        readSongs(location, name, parser, ret::add, () -> false);
+        return new ArrayList<>(ret);
+    }
+}
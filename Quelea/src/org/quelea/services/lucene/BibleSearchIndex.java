@@ -18,13 +18,19 @@
  */
 package org.quelea.services.lucene;
 
+import java.io.File;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import org.apache.lucene.analysis.Analyzer;
@@ -34,40 +40,193 @@ import org.apache.lucene.document.Field;
 import org.apache.lucene.index.IndexReader;
 import org.apache.lucene.index.IndexWriter;
 import org.apache.lucene.index.IndexWriterConfig;
+import org.apache.lucene.index.IndexWriterConfig.OpenMode;
 import org.apache.lucene.index.Term;
 import org.apache.lucene.queryParser.ParseException;
 import org.apache.lucene.queryParser.complexPhrase.ComplexPhraseQueryParser;
+import org.apache.lucene.search.BooleanClause;
 import org.apache.lucene.search.BooleanQuery;
+import org.apache.lucene.search.Collector;
+import org.apache.lucene.search.FieldCache;
 import org.apache.lucene.search.IndexSearcher;
-import org.apache.lucene.search.Query;
-import org.apache.lucene.search.ScoreDoc;
-import org.apache.lucene.search.TopScoreDocCollector;
+import org.apache.lucene.search.Scorer;
+import org.apache.lucene.search.SearcherManager;
+import org.apache.lucene.search.TermQuery;
+import org.apache.lucene.store.AlreadyClosedException;
 import org.apache.lucene.store.Directory;
+import org.apache.lucene.store.FSDirectory;
 import org.apache.lucene.store.RAMDirectory;
 import org.apache.lucene.util.Version;
+import org.quelea.data.bible.Bible;
+import org.quelea.data.bible.BibleBook;
 import org.quelea.data.bible.BibleChapter;
+import org.quelea.data.bible.BibleVerse;
 import org.quelea.services.utils.LoggerUtils;
+import org.quelea.services.utils.QueleaProperties;
 
 /**
  * Search index used for indexing the bibles.
+ * <p>
+ * Each verse is a separate document, with the name of its bible, the index of
+ * its book and chapter, and its verse number held as fields. This means
+ * filtering by bible and phrase matching both happen as part of the query.
+ * The position of each hit is read from the field cache as it's collected,
+ * and the hits are then sorted into bible order - the order of documents in
+ * the index can't be relied on, since segments are merged and bibles are
+ * added and removed over time.
+ * <p>
+ * The index is kept on disk under the Quelea user home so it can be reopened
+ * at startup rather than rebuilt. Each commit records a fingerprint of the
+ * file every indexed bible was loaded from, so when bibles are added, removed
+ * or changed only their verses need to be added to or deleted from the index.
+ *
  * @author Michael
  */
 public class BibleSearchIndex implements SearchIndex<BibleChapter> {
 
     private static final Logger LOGGER = LoggerUtils.getLogger();
-    private Analyzer analyzer;
+    private static final String TEXT_FIELD = "text";
+    private static final String BIBLE_FIELD = "bible";
+    private static final String BOOK_FIELD = "book";
+    private static final String CHAPTER_FIELD = "chapter";
+    private static final String VERSE_FIELD = "verse";
+    private static final String CHAPTER_KEY_FIELD = "chapterkey";
+    /**
+     * Bump this whenever the document layout changes so old on-disk indexes
+     * are thrown away rather than searched with the wrong fields.
+     */
+    private static final String INDEX_VERSION = "1";
+    private static final String VERSION_KEY = "quelea.bibleindex.version";
+    private static final String FINGERPRINT_KEY_PREFIX = "quelea.bibleindex.bible.";
+    private final Analyzer analyzer;
     private Directory index;
-    private Map<Integer, BibleChapter> chapters;
+    private final Map<Integer, BibleChapter> chapters;
+    private final Map<String, BibleBook[]> bibles;
+    private final Map<String, String> indexedFingerprints;
+    private IndexWriter writer;
+    private volatile SearcherManager searcherManager;
 
     /**
-     * Create a new empty search index.
+     * Create a new search index backed by the bible index directory in the
+     * Quelea user home.
      */
     public BibleSearchIndex() {
-        chapters = new HashMap<>();
+        this(QueleaProperties.get().getBibleIndexDir());
+    }
+
+    /**
+     * Create a new search index backed by the given directory. If the
+     * directory can't be opened, an in-memory index is used instead.
+     *
+     * @param indexDir the directory in which to store the index.
+     */
+    public BibleSearchIndex(File indexDir) {
+        chapters = new ConcurrentHashMap<>();
+        bibles = new ConcurrentHashMap<>();
+        indexedFingerprints = new ConcurrentHashMap<>();
         analyzer = new StandardAnalyzer(Version.LUCENE_35, new HashSet<String>());
-        index = new RAMDirectory();
+        index = openDirectory(indexDir);
+        open();
+    }
+
+    /**
+     * Open the on disk directory for the index, falling back to memory if
+     * that's not possible.
+     *
+     * @param indexDir the directory to open.
+     * @return the lucene directory.
+     */
+    private static Directory openDirectory(File indexDir) {
+        try {
+            if(!indexDir.exists()) {
+                indexDir.mkdirs();
+            }
+            return FSDirectory.open(indexDir);
+        }
+        catch (IOException ex) {
+            LOGGER.log(Level.WARNING, "Couldn't open bible index at " + indexDir.getAbsolutePath() + ", using an in-memory index", ex);
+            return new RAMDirectory();
+        }
     }
-    
+
+    /**
+     * Open the writer and searcher on the index, and read the fingerprints of
+     * the bibles already in it so we can work out which bibles need
+     * re-indexing. If the index is from an older version or can't be read,
+     * it's recreated from scratch.
+     */
+    private void open() {
+        try {
+            Map<String, String> userData = IndexReader.indexExists(index) ? IndexReader.getCommitUserData(index) : null;
+            boolean current = userData != null && INDEX_VERSION.equals(userData.get(VERSION_KEY));
+            if(current) {
+                for(Map.Entry<String, String> entry : userData.entrySet()) {
+                    if(entry.getKey().startsWith(FINGERPRINT_KEY_PREFIX)) {
+                        indexedFingerprints.put(entry.getKey().substring(FINGERPRINT_KEY_PREFIX.length()), entry.getValue());
+                    }
+                }
+                LOGGER.log(Level.INFO, "Opened bible index with {0} bibles", indexedFingerprints.size());
+            }
+            else {
+                LOGGER.log(Level.INFO, "No bible index for this version, creating a new one");
+            }
+            openWriter(current ? OpenMode.CREATE_OR_APPEND : OpenMode.CREATE);
+        }
+        catch (IOException | RuntimeException ex) {
+            LOGGER.log(Level.WARNING, "Couldn't open bible index, rebuilding", ex);
+            indexedFingerprints.clear();
+            close();
+            try {
+                openWriter(OpenMode.CREATE);
+            }
+            catch (IOException ex2) {
+                //Most likely another instance of Quelea holds the lock
+                LOGGER.log(Level.WARNING, "Couldn't create bible index on disk, using an in-memory index", ex2);
+                close();
+                index = new RAMDirectory();
+                try {
+                    openWriter(OpenMode.CREATE);
+                }
+                catch (IOException ex3) {
+                    LOGGER.log(Level.SEVERE, "Couldn't create bible index", ex3);
+                }
+            }
+        }
+    }
+
+    /**
+     * Open the long lived writer and the searcher manager that sits on top of
+     * it.
+     *
+     * @param mode the mode in which to open the writer.
+     * @throws IOException if the writer couldn't be opened.
+     */
+    private void openWriter(OpenMode mode) throws IOException {
+        writer = new IndexWriter(index, new IndexWriterConfig(Version.LUCENE_35, analyzer).setOpenMode(mode));
+        commit();
+        searcherManager = new SearcherManager(writer, true, null, null);
+    }
+
+    /**
+     * Close the writer and searcher on this index. Every change is committed
+     * as it's made, so this just releases the files and the write lock.
+     */
+    public synchronized void close() {
+        try {
+            if(searcherManager != null) {
+                searcherManager.close();
+                searcherManager = null;
+            }
+            if(writer != null) {
+                writer.close();
+                writer = null;
+            }
+        }
+        catch (IOException ex) {
+            LOGGER.log(Level.WARNING, "Couldn't close bible index", ex);
+        }
+    }
+
     @Override
     public int size() {
         return chapters.size();
@@ -87,37 +246,139 @@ public class BibleSearchIndex implements SearchIndex<BibleChapter> {
 
     /**
      * Add a number of chapters to the index. This is much more efficient than
-     * calling add() repeatedly because it just uses one writer rather than
-     * opening and closing one for each individual operation.
+     * calling add() repeatedly because the changes are committed together
+     * rather than once per chapter.
      *
      * @param bibleList the list of chapters to add.
      */
     @Override
-    public void addAll(Collection<? extends BibleChapter> bibleList) {
-        try (IndexWriter writer = new IndexWriter(index, new IndexWriterConfig(Version.LUCENE_35, analyzer))) {
+    public synchronized void addAll(Collection<? extends BibleChapter> bibleList) {
+        Set<Bible> seen = Collections.newSetFromMap(new IdentityHashMap<>());
+        for(BibleChapter chapter : bibleList) {
+            Bible bible = chapter.getBook().getBible();
+            if(seen.add(bible)) {
+                bibles.put(bible.getName(), bible.getBooks());
+            }
+        }
+        if(!isWritable()) {
             for(BibleChapter chapter : bibleList) {
-                Document doc = new Document();
-                doc.add(new Field("text", chapter.getText(), Field.Store.NO, Field.Index.ANALYZED));
-                doc.add(new Field("number", Integer.toString(chapter.getID()), Field.Store.YES, Field.Index.ANALYZED));
-                writer.addDocument(doc);
                 chapters.put(chapter.getID(), chapter);
-                LOGGER.log(Level.FINE, "Added bible chapter to index: {0}", chapter.getID());
             }
+            return;
+        }
+        try {
+            for(BibleChapter chapter : bibleList) {
+                writeChapter(chapter);
+            }
+            commit();
         }
         catch (IOException ex) {
             LOGGER.log(Level.SEVERE, "Couldn't add value to index", ex);
         }
     }
 
+    /**
+     * Determine whether the index is up to date with the given bibles - that
+     * is, whether it holds exactly these bibles, each indexed from a file
+     * with the same fingerprint.
+     *
+     * @param bibleFingerprints every installed bible, mapped to a fingerprint
+     * of the file it was loaded from.
+     * @return true if sync() wouldn't need to add or remove anything, false
+     * otherwise.
+     */
+    public boolean isUpToDate(Map<Bible, String> bibleFingerprints) {
+        Map<String, String> current = new HashMap<>();
+        for(Map.Entry<Bible, String> entry : bibleFingerprints.entrySet()) {
+            current.putIfAbsent(entry.getKey().getName(), entry.getValue());
+        }
+        return current.equals(indexedFingerprints);
+    }
+
+    /**
+     * Bring the index in line with the given bibles, which should be every
+     * bible that's currently installed. Bibles whose fingerprint has changed
+     * since they were indexed (or that aren't in the index at all) are
+     * re-indexed, and bibles in the index that are no longer installed are
+     * removed. Bibles that haven't changed aren't touched, so with an up to
+     * date index this is cheap.
+     *
+     * @param bibleFingerprints every installed bible, mapped to a fingerprint
+     * of the file it was loaded from.
+     */
+    public synchronized void sync(Map<Bible, String> bibleFingerprints) {
+        Map<String, Bible> current = new LinkedHashMap<>();
+        Map<String, String> fingerprints = new HashMap<>();
+        for(Map.Entry<Bible, String> entry : bibleFingerprints.entrySet()) {
+            Bible bible = entry.getKey();
+            if(current.putIfAbsent(bible.getName(), bible) != null) {
+                LOGGER.log(Level.WARNING, "More than one bible is called {0}, only the first will be searched", bible.getName());
+                continue;
+            }
+            fingerprints.put(bible.getName(), entry.getValue());
+        }
+        bibles.clear();
+        chapters.clear();
+        for(Bible bible : current.values()) {
+            bibles.put(bible.getName(), bible.getBooks());
+            for(BibleBook book : bible.getBooks()) {
+                for(BibleChapter chapter : book.getChapters()) {
+                    chapters.put(chapter.getID(), chapter);
+                }
+            }
+        }
+        if(!isWritable()) {
+            return;
+        }
+        try {
+            for(String name : new ArrayList<>(indexedFingerprints.keySet())) {
+                if(!indexedFingerprints.get(name).equals(fingerprints.get(name))) {
+                    LOGGER.log(Level.INFO, "Removing {0} from bible index", name);
+                    writer.deleteDocuments(new Term(BIBLE_FIELD, name));
+                    indexedFingerprints.remove(name);
+                    commit();
+                }
+            }
+            for(Bible bible : current.values()) {
+                if(!indexedFingerprints.containsKey(bible.getName())) {
+                    LOGGER.log(Level.INFO, "Adding {0} to bible index", bible.getName());
+                    for(BibleBook book : bible.getBooks()) {
+                        for(BibleChapter chapter : book.getChapters()) {
+                            writeChapter(chapter);
+                        }
+                    }
+                    indexedFingerprints.put(bible.getName(), fingerprints.get(bible.getName()));
+                    commit();
+                }
+            }
+        }
+        catch (IOException ex) {
+            LOGGER.log(Level.SEVERE, "Couldn't update bible index", ex);
+        }
+    }
+
     /**
      * Remove the given bible chapter from the index.
      *
      * @param chapter the chapter to remove.
      */
     @Override
-    public void remove(BibleChapter chapter) {
-        try (IndexReader reader = IndexReader.open(index, false)) {
-            reader.deleteDocuments(new Term("number", Integer.toString(chapter.getID())));
+    public synchronized void remove(BibleChapter chapter) {
+        BibleBook book = chapter.getBook();
+        String bibleName = book.getBible().getName();
+        BibleBook[] books = bibles.get(bibleName);
+        if(books == null) {
+            return;
+        }
+        String chapterKey = getChapterKey(bibleName, Integer.toString(indexOf(books, book)), Integer.toString(indexOf(book.getChapters(), chapter)));
+        if(!isWritable()) {
+            chapters.remove(chapter.getID());
+            return;
+        }
+        try {
+            writer.deleteDocuments(new Term(CHAPTER_KEY_FIELD, chapterKey));
+            commit();
+            chapters.remove(chapter.getID());
         }
         catch (IOException ex) {
             LOGGER.log(Level.SEVERE, "Couldn't remove value from index", ex);
@@ -144,37 +405,222 @@ public class BibleSearchIndex implements SearchIndex<BibleChapter> {
      */
     @Override
     public BibleChapter[] filter(String queryString, FilterType type) {
+        if(chapters.isEmpty() || SearchIndexUtils.makeLuceneQuery(queryString).isEmpty()) {
+            return chapters.values().toArray(new BibleChapter[chapters.size()]);
+        }
+        BibleSearchResults results = search(queryString, null);
+        Map<BibleChapter, Boolean> ret = new LinkedHashMap<>();
+        for(int i = 0; i < results.size(); i++) {
+            BibleChapter chapter = results.getChapter(i);
+            if(chapter != null) {
+                ret.put(chapter, true);
+            }
+        }
+        return ret.keySet().toArray(new BibleChapter[ret.size()]);
+    }
+
+    /**
+     * Search for the verses that match the given query.
+     *
+     * @param queryString the query string - this is treated as a phrase, with
+     * the last word allowed to partially match.
+     * @param bibleName the name of the bible to search, or null to search all
+     * bibles.
+     * @return the matching verses, in bible order.
+     */
+    public BibleSearchResults search(String queryString, String bibleName) {
+        final BibleSearchResults results = new BibleSearchResults(bibles);
         String sanctifyQueryString = SearchIndexUtils.makeLuceneQuery(queryString);
         if(chapters.isEmpty() || sanctifyQueryString.isEmpty()) {
-            return chapters.values().toArray(new BibleChapter[chapters.size()]);
+            return results;
         }
-        List<BibleChapter> ret;
-        try (IndexSearcher searcher = new IndexSearcher(IndexReader.open(index))) {
+        SearcherManager manager = searcherManager;
+        IndexSearcher searcher = acquire(manager);
+        if(searcher == null) {
+            return results;
+        }
+        try {
             BooleanQuery.setMaxClauseCount(Integer.MAX_VALUE);
-            Query q = new ComplexPhraseQueryParser(Version.LUCENE_35, "text", analyzer).parse(sanctifyQueryString);
-            TopScoreDocCollector collector = TopScoreDocCollector.create(10000, true);
-            searcher.search(q, collector);
-            ScoreDoc[] hits = collector.topDocs().scoreDocs;
-            ret = new ArrayList<>();
-            for(int i = 0; i < hits.length; ++i) {
-                int docId = hits[i].doc;
-                Document d = searcher.doc(docId);
-                BibleChapter chapter = chapters.get(Integer.parseInt(d.get("number")));
-                ret.add(chapter);
-            }
-            return ret.toArray(new BibleChapter[ret.size()]);
+            BooleanQuery q = new BooleanQuery();
+            q.add(new ComplexPhraseQueryParser(Version.LUCENE_35, TEXT_FIELD, analyzer).parse(sanctifyQueryString), BooleanClause.Occur.MUST);
+            if(bibleName != null) {
+                q.add(new TermQuery(new Term(BIBLE_FIELD, bibleName)), BooleanClause.Occur.MUST);
+            }
+            searcher.search(q, new Collector() {
+                private String[] bibleNames;
+                private int[] books;
+                private int[] chapterIndexes;
+                private int[] verses;
+
+                @Override
+                public void setScorer(Scorer scorer) {
+                    //Score isn't used, hits are sorted into bible order afterwards
+                }
+
+                @Override
+                public void collect(int doc) {
+                    results.add(bibleNames[doc], books[doc], chapterIndexes[doc], verses[doc]);
+                }
+
+                @Override
+                public void setNextReader(IndexReader segmentReader, int docBase) throws IOException {
+                    bibleNames = FieldCache.DEFAULT.getStrings(segmentReader, BIBLE_FIELD);
+                    books = FieldCache.DEFAULT.getInts(segmentReader, BOOK_FIELD);
+                    chapterIndexes = FieldCache.DEFAULT.getInts(segmentReader, CHAPTER_FIELD);
+                    verses = FieldCache.DEFAULT.getInts(segmentReader, VERSE_FIELD);
+                }
+
+                @Override
+                public boolean acceptsDocsOutOfOrder() {
+                    return true;
+                }
+            });
+            results.sort();
+            return results;
         }
         catch (ParseException | IOException ex) {
             LOGGER.log(Level.WARNING, "Invalid query string: " + sanctifyQueryString, ex);
-            return new BibleChapter[0];
+            return new BibleSearchResults(bibles);
+        }
+        catch (AlreadyClosedException ex) {
+            LOGGER.log(Level.WARNING, "Bible index was closed during a search", ex);
+            return new BibleSearchResults(bibles);
+        }
+        finally {
+            release(manager, searcher);
         }
     }
-    
+
     /**
      * Remove everything from this index.
      */
     @Override
-    public void clear() {
-        SearchIndexUtils.clearIndex(index);
+    public synchronized void clear() {
+        if(!isWritable()) {
+            indexedFingerprints.clear();
+            chapters.clear();
+            bibles.clear();
+            return;
+        }
+        try {
+            writer.deleteAll();
+            indexedFingerprints.clear();
+            commit();
+            chapters.clear();
+            bibles.clear();
+        }
+        catch (IOException ex) {
+            LOGGER.log(Level.SEVERE, "Couldn't clear the index", ex);
+        }
+    }
+
+    /**
+     * Determine whether there's a writer open on the index, logging a warning
+     * if there isn't (because the index couldn't be created, or has been
+     * closed.)
+     *
+     * @return true if the index can be written to, false otherwise.
+     */
+    private boolean isWritable() {
+        if(writer == null) {
+            LOGGER.log(Level.WARNING, "Bible index isn't open, not updating it");
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Get a searcher from the given searcher manager, if it's still open.
+     *
+     * @param manager the manager to acquire the searcher from, may be null.
+     * @return the searcher, or null if the index is closed.
+     */
+    private static IndexSearcher acquire(SearcherManager manager) {
+        if(manager == null) {
+            LOGGER.log(Level.WARNING, "Bible index is closed");
+            return null;
+        }
+        try {
+            return manager.acquire();
+        }
+        catch (AlreadyClosedException ex) {
+            LOGGER.log(Level.WARNING, "Bible index is closed");
+            return null;
+        }
+    }
+
+    /**
+     * Hand a searcher back to the searcher manager it came from.
+     *
+     * @param manager the manager the searcher was acquired from.
+     * @param searcher the searcher to release.
+     */
+    private static void release(SearcherManager manager, IndexSearcher searcher) {
+        try {
+            manager.release(searcher);
+        }
+        catch (IOException | AlreadyClosedException ex) {
+            LOGGER.log(Level.WARNING, "Couldn't release searcher", ex);
+        }
+    }
+
+    /**
+     * Write a document for each verse of the given chapter. The chapter's
+     * bible must already be in the map of bibles.
+     *
+     * @param chapter the chapter to write.
+     * @throws IOException if the chapter couldn't be written.
+     */
+    private void writeChapter(BibleChapter chapter) throws IOException {
+        BibleBook book = chapter.getBook();
+        Bible bible = book.getBible();
+        String bookIndex = Integer.toString(indexOf(bibles.get(bible.getName()), book));
+        String chapterIndex = Integer.toString(indexOf(book.getChapters(), chapter));
+        String chapterKey = getChapterKey(bible.getName(), bookIndex, chapterIndex);
+        for(BibleVerse verse : chapter.getVerses()) {
+            CharSequence text = verse.getVerseChars();
+            Document doc = new Document();
+            doc.add(new Field(TEXT_FIELD, text == null ? "" : text.toString(), Field.Store.NO, Field.Index.ANALYZED));
+            doc.add(new Field(BIBLE_FIELD, bible.getName(), Field.Store.YES, Field.Index.NOT_ANALYZED_NO_NORMS));
+            doc.add(new Field(BOOK_FIELD, bookIndex, Field.Store.YES, Field.Index.NOT_ANALYZED_NO_NORMS));
+            doc.add(new Field(CHAPTER_FIELD, chapterIndex, Field.Store.YES, Field.Index.NOT_ANALYZED_NO_NORMS));
+            doc.add(new Field(VERSE_FIELD, Integer.toString(verse.getNum()), Field.Store.YES, Field.Index.NOT_ANALYZED_NO_NORMS));
+            doc.add(new Field(CHAPTER_KEY_FIELD, chapterKey, Field.Store.NO, Field.Index.NOT_ANALYZED_NO_NORMS));
+            writer.addDocument(doc);
+        }
+        chapters.put(chapter.getID(), chapter);
+        LOGGER.log(Level.FINE, "Added bible chapter to index: {0}", chapter.getID());
+    }
+
+    /**
+     * Commit the writer's changes, tagging the commit with the index version
+     * and the fingerprint of every indexed bible, and make them visible to
+     * searches.
+     *
+     * @throws IOException if the commit failed.
+     */
+    private void commit() throws IOException {
+        Map<String, String> userData = new HashMap<>();
+        userData.put(VERSION_KEY, INDEX_VERSION);
+        for(Map.Entry<String, String> entry : indexedFingerprints.entrySet()) {
+            userData.put(FINGERPRINT_KEY_PREFIX + entry.getKey(), entry.getValue());
+        }
+        writer.commit(userData);
+        if(searcherManager != null) {
+            searcherManager.maybeReopen();
+        }
+    }
+
+    private static String getChapterKey(String bibleName, String bookIndex, String chapterIndex) {
+        return bibleName + '\u0000' + bookIndex + '\u0000' + chapterIndex;
+    }
+
+    private static int indexOf(Object[] arr, Object obj) {
+        for(int i = 0; i < arr.length; i++) {
+            if(arr[i] == obj) {
+                return i;
+            }
+        }
+        return -1;
     }
 }
@@ -0,0 +1,172 @@
+/*
+ * This file is part of Quelea, free projection software for churches.
+ *
+ *
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.quelea.services.lucene;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import org.quelea.data.bible.BibleBook;
+import org.quelea.data.bible.BibleChapter;
+import org.quelea.data.bible.BibleVerse;
+
+/**
+ * The verses matching a bible search, sorted into bible order (by the name of
+ * the bible, then book, chapter and verse.) Only the position of
+ * each verse is held, so large result sets are cheap - the verses themselves
+ * are looked up a page at a time as they're needed.
+ *
+ * @author Michael
+ */
+public class BibleSearchResults {
+
+    private final Map<String, BibleBook[]> bibles;
+    private String[] bibleNames;
+    private int[] books;
+    private int[] chapters;
+    private int[] verses;
+    private int size;
+
+    /**
+     * Create a new, empty set of results.
+     *
+     * @param bibles the books of each bible, keyed by bible name.
+     */
+    BibleSearchResults(Map<String, BibleBook[]> bibles) {
+        this.bibles = bibles;
+        bibleNames = new String[16];
+        books = new int[16];
+        chapters = new int[16];
+        verses = new int[16];
+    }
+
+    /**
+     * Add a matching verse to these results.
+     *
+     * @param bibleName the name of the bible the verse is in.
+     * @param book the index of the book in the bible.
+     * @param chapter the index of the chapter in the book.
+     * @param verse the verse number.
+     */
+    void add(String bibleName, int book, int chapter, int verse) {
+        if (size == books.length) {
+            int newLength = size * 2;
+            bibleNames = Arrays.copyOf(bibleNames, newLength);
+            books = Arrays.copyOf(books, newLength);
+            chapters = Arrays.copyOf(chapters, newLength);
+            verses = Arrays.copyOf(verses, newLength);
+        }
+        bibleNames[size] = bibleName;
+        books[size] = book;
+        chapters[size] = chapter;
+        verses[size] = verse;
+        size++;
+    }
+
+    /**
+     * Sort the verses into bible order, if they aren't already.
+     */
+    void sort() {
+        boolean sorted = true;
+        for (int i = 1; i < size && sorted; i++) {
+            sorted = compare(i - 1, i) <= 0;
+        }
+        if (sorted) {
+            return;
+        }
+        Integer[] order = new Integer[size];
+        for (int i = 0; i < size; i++) {
+            order[i] = i;
+        }
+        Arrays.sort(order, this::compare);
+        String[] sortedBibleNames = new String[bibleNames.length];
+        int[] sortedBooks = new int[books.length];
+        int[] sortedChapters = new int[chapters.length];
+        int[] sortedVerses = new int[verses.length];
+        for (int i = 0; i < size; i++) {
+            sortedBibleNames[i] = bibleNames[order[i]];
+            sortedBooks[i] = books[order[i]];
+            sortedChapters[i] = chapters[order[i]];
+            sortedVerses[i] = verses[order[i]];
+        }
+        bibleNames = sortedBibleNames;
+        books = sortedBooks;
+        chapters = sortedChapters;
+        verses = sortedVerses;
+    }
+
+    private int compare(int i, int j) {
+        int ret = bibleNames[i].compareTo(bibleNames[j]);
+        if (ret == 0) {
+            ret = Integer.compare(books[i], books[j]);
+        }
+        if (ret == 0) {
+            ret = Integer.compare(chapters[i], chapters[j]);
+        }
+        if (ret == 0) {
+            ret = Integer.compare(verses[i], verses[j]);
+        }
+        return ret;
+    }
+
+    /**
+     * Get the number of matching verses.
+     *
+     * @return the number of matching verses.
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Get a page of matching verses.
+     *
+     * @param from the index of the first verse to get (inclusive.)
+     * @param to the index of the last verse to get (exclusive.)
+     * @return the verses in the given range. Verses from bibles that have
+     * since been removed are left out.
+     */
+    public List<BibleVerse> getVerses(int from, int to) {
+        List<BibleVerse> ret = new ArrayList<>(Math.max(0, to - from));
+        for (int i = from; i < to && i < size; i++) {
+            BibleChapter chapter = getChapter(i);
+            if (chapter != null) {
+                BibleVerse verse = chapter.getVerse(verses[i]);
+                if (verse != null) {
+                    ret.add(verse);
+                }
+            }
+        }
+        return ret;
+    }
+
+    /**
+     * Get the chapter of the verse at the given index.
+     *
+     * @param i the index of the verse.
+     * @return the chapter the verse is in, or null if it can't be found.
+     */
+    public BibleChapter getChapter(int i) {
+        BibleBook[] bibleBooks = bibles.get(bibleNames[i]);
+        if (bibleBooks == null || books[i] < 0 || books[i] >= bibleBooks.length) {
+            return null;
+        }
+        return bibleBooks[books[i]].getChapter(chapters[i]);
+    }
+}
@@ -18,13 +18,18 @@
  */
 package org.quelea.services.lucene;
 
+import java.io.File;
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.BitSet;
 import java.util.Collection;
-import java.util.HashMap;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import java.util.regex.Pattern;
@@ -32,41 +37,199 @@ import org.apache.lucene.analysis.Analyzer;
 import org.apache.lucene.analysis.standard.StandardAnalyzer;
 import org.apache.lucene.document.Document;
 import org.apache.lucene.document.Field;
+import org.apache.lucene.document.FieldSelector;
+import org.apache.lucene.document.MapFieldSelector;
 import org.apache.lucene.index.IndexReader;
 import org.apache.lucene.index.IndexWriter;
 import org.apache.lucene.index.IndexWriterConfig;
+import org.apache.lucene.index.IndexWriterConfig.OpenMode;
 import org.apache.lucene.index.Term;
 import org.apache.lucene.queryParser.ParseException;
 import org.apache.lucene.queryParser.complexPhrase.ComplexPhraseQueryParser;
+import org.apache.lucene.search.Collector;
 import org.apache.lucene.search.IndexSearcher;
 import org.apache.lucene.search.Query;
 import org.apache.lucene.search.ScoreDoc;
+import org.apache.lucene.search.Scorer;
+import org.apache.lucene.search.SearcherManager;
 import org.apache.lucene.search.TopScoreDocCollector;
+import org.apache.lucene.store.AlreadyClosedException;
 import org.apache.lucene.store.Directory;
+import org.apache.lucene.store.FSDirectory;
 import org.apache.lucene.store.RAMDirectory;
 import org.apache.lucene.util.Version;
 import org.quelea.data.displayable.SongDisplayable;
 import org.quelea.services.utils.LoggerUtils;
+import org.quelea.services.utils.QueleaProperties;
 
 /**
- * The search index of songs.
+ * The search index of songs. The index is kept on disk under the Quelea user
+ * home so it can be reopened at startup rather than rebuilt; each document
+ * stores a hash of the song it was built from so only songs that have
+ * actually changed since the last run need to be re-indexed.
+ * <p>
+ * A single writer is held open for the lifetime of the index, and searches
+ * go through a near real time searcher that's reopened whenever the index
+ * changes. Searches therefore don't block each other or wait on the writer,
+ * and don't pay the cost of opening a reader every time.
  *
  * @author Michael
  */
 public class SongSearchIndex implements SearchIndex<SongDisplayable> {
 
     private static final Logger LOGGER = LoggerUtils.getLogger();
+    /**
+     * Bump this whenever the document layout changes so old on-disk indexes
+     * are thrown away rather than searched with the wrong fields.
+     */
+    private static final String INDEX_VERSION = "1";
+    private static final String VERSION_KEY = "quelea.songindex.version";
+    /**
+     * The order in which matched fields take precedence when a song matches
+     * a search in more than one place.
+     */
+    private static final List<FilterType> MATCH_ORDER = Arrays.asList(FilterType.TITLE, FilterType.BODY, FilterType.AUTHOR);
+    private static final FieldSelector NUMBER_SELECTOR = new MapFieldSelector("number");
+    private static final Pattern NON_WORD = Pattern.compile("[^\\w\\s]", Pattern.UNICODE_CHARACTER_CLASS);
     private final Analyzer analyzer;
-    private final Directory index;
+    private Directory index;
     private final Map<Long, SongDisplayable> songs;
+    private final Map<Long, Integer> indexedHashes;
+    private IndexWriter writer;
+    private volatile SearcherManager searcherManager;
 
     /**
-     * Create a new empty search index.
+     * Create a new search index backed by the song index directory in the
+     * Quelea user home.
      */
     public SongSearchIndex() {
-        songs = new HashMap<>();
+        this(QueleaProperties.get().getSongIndexDir());
+    }
+
+    /**
+     * Create a new search index backed by the given directory. If the
+     * directory can't be opened, an in-memory index is used instead.
+     *
+     * @param indexDir the directory in which to store the index.
+     */
+    public SongSearchIndex(File indexDir) {
+        songs = new ConcurrentHashMap<>();
+        indexedHashes = new ConcurrentHashMap<>();
         analyzer = new StandardAnalyzer(Version.LUCENE_35, new HashSet<>());
-        index = new RAMDirectory();
+        index = openDirectory(indexDir);
+        open();
+    }
+
+    /**
+     * Open the on disk directory for the index, falling back to memory if
+     * that's not possible.
+     *
+     * @param indexDir the directory to open.
+     * @return the lucene directory.
+     */
+    private static Directory openDirectory(File indexDir) {
+        try {
+            if (!indexDir.exists()) {
+                indexDir.mkdirs();
+            }
+            return FSDirectory.open(indexDir);
+        } catch (IOException ex) {
+            LOGGER.log(Level.WARNING, "Couldn't open song index at " + indexDir.getAbsolutePath() + ", using an in-memory index", ex);
+            return new RAMDirectory();
+        }
+    }
+
+    /**
+     * Open the writer and searcher on the index, and read the id and hash of
+     * every song already in it so we can work out which songs need
+     * re-indexing. If the index is from an older version or can't be read,
+     * it's recreated from scratch.
+     */
+    private void open() {
+        try {
+            boolean current = IndexReader.indexExists(index)
+                    && INDEX_VERSION.equals(IndexReader.getCommitUserData(index).get(VERSION_KEY));
+            if (!current) {
+                LOGGER.log(Level.INFO, "No song index for this version, creating a new one");
+            }
+            openWriter(current ? OpenMode.CREATE_OR_APPEND : OpenMode.CREATE);
+            if (current) {
+                readIndexedHashes();
+                LOGGER.log(Level.INFO, "Opened song index with {0} songs", indexedHashes.size());
+            }
+        } catch (IOException | RuntimeException ex) {
+            LOGGER.log(Level.WARNING, "Couldn't open song index, rebuilding", ex);
+            indexedHashes.clear();
+            close();
+            try {
+                openWriter(OpenMode.CREATE);
+            } catch (IOException ex2) {
+                //Most likely another instance of Quelea holds the lock
+                LOGGER.log(Level.WARNING, "Couldn't create song index on disk, using an in-memory index", ex2);
+                close();
+                index = new RAMDirectory();
+                try {
+                    openWriter(OpenMode.CREATE);
+                } catch (IOException ex3) {
+                    LOGGER.log(Level.SEVERE, "Couldn't create song index", ex3);
+                }
+            }
+        }
+    }
+
+    /**
+     * Open the long lived writer and the searcher manager that sits on top of
+     * it.
+     *
+     * @param mode the mode in which to open the writer.
+     * @throws IOException if the writer couldn't be opened.
+     */
+    private void openWriter(OpenMode mode) throws IOException {
+        writer = new IndexWriter(index, new IndexWriterConfig(Version.LUCENE_35, analyzer).setOpenMode(mode));
+        commit();
+        searcherManager = new SearcherManager(writer, true, null, null);
+    }
+
+    /**
+     * Populate the map of indexed song hashes from the documents in the
+     * index.
+     *
+     * @throws IOException if the index couldn't be read.
+     */
+    private void readIndexedHashes() throws IOException {
+        FieldSelector selector = new MapFieldSelector("number", "hash");
+        IndexSearcher searcher = searcherManager.acquire();
+        try {
+            IndexReader reader = searcher.getIndexReader();
+            for (int i = 0; i < reader.maxDoc(); i++) {
+                if (reader.isDeleted(i)) {
+                    continue;
+                }
+                Document d = reader.document(i, selector);
+                indexedHashes.put(Long.parseLong(d.get("number")), Integer.parseInt(d.get("hash")));
+            }
+        } finally {
+            searcherManager.release(searcher);
+        }
+    }
+
+    /**
+     * Close the writer and searcher on this index. Every change is committed
+     * as it's made, so this just releases the files and the write lock.
+     */
+    public synchronized void close() {
+        try {
+            if (searcherManager != null) {
+                searcherManager.close();
+                searcherManager = null;
+            }
+            if (writer != null) {
+                writer.close();
+                writer = null;
+            }
+        } catch (IOException ex) {
+            LOGGER.log(Level.WARNING, "Couldn't close song index", ex);
+        }
     }
 
     @Override
@@ -89,35 +252,74 @@ public class SongSearchIndex implements SearchIndex<SongDisplayable> {
     /**
      * Add a number of songs to the index. This is much more efficient than
      * calling add() repeatedly because it just uses one writer rather than
-     * opening and closing one for each individual operation.
+     * opening and closing one for each individual operation. Songs that are
+     * already in the index are replaced.
      *
      * @param songList the song list to add.
      */
     @Override
     public synchronized void addAll(Collection<? extends SongDisplayable> songList) {
-        Pattern p = Pattern.compile("[^\\w\\s]", Pattern.UNICODE_CHARACTER_CLASS);
-        try (IndexWriter writer = new IndexWriter(index, new IndexWriterConfig(Version.LUCENE_35, analyzer))) {
+        if (!isWritable()) {
             for (SongDisplayable song : songList) {
-                Document doc = new Document();
-                if (song.getTitle() != null) {
-                    doc.add(new Field("title", p.matcher(song.getTitle()).replaceAll(""), Field.Store.NO, Field.Index.ANALYZED));
-                }
-                if (song.getAuthor() != null) {
-                    doc.add(new Field("author", p.matcher(song.getAuthor()).replaceAll(""), Field.Store.NO, Field.Index.ANALYZED));
-                }
-                if (song.getLyrics(false, false) != null) {
-                    doc.add(new Field("lyrics", p.matcher(song.getLyrics(false, false)).replaceAll(""), Field.Store.NO, Field.Index.ANALYZED));
-                }
-                doc.add(new Field("number", p.matcher(Long.toString(song.getID())).replaceAll(""), Field.Store.YES, Field.Index.ANALYZED));
-                writer.addDocument(doc);
                 songs.put(song.getID(), song);
-                LOGGER.log(Level.FINE, "Added song to index: {0}", song.getTitle());
             }
+            return;
+        }
+        try {
+            for (SongDisplayable song : songList) {
+                writeSong(song);
+            }
+            commit();
         } catch (IOException ex) {
             LOGGER.log(Level.SEVERE, "Couldn't add value to index", ex);
         }
     }
 
+    /**
+     * Bring the index in line with the given songs, which should be the full
+     * contents of the database. Songs whose content has changed since they
+     * were indexed (or that aren't in the index at all) are re-indexed, and
+     * songs in the index that no longer exist are removed. Songs that haven't
+     * changed aren't touched, so with an up to date index this is cheap.
+     *
+     * @param songList every song in the database.
+     */
+    public synchronized void sync(Collection<? extends SongDisplayable> songList) {
+        List<SongDisplayable> changed = new ArrayList<>();
+        Set<Long> stale = new HashSet<>(indexedHashes.keySet());
+        Set<Long> ids = new HashSet<>();
+        for (SongDisplayable song : songList) {
+            ids.add(song.getID());
+            songs.put(song.getID(), song);
+            stale.remove(song.getID());
+            Integer hash = indexedHashes.get(song.getID());
+            if (hash == null || hash != getIndexHash(song)) {
+                changed.add(song);
+            }
+        }
+        songs.keySet().retainAll(ids);
+        if (changed.isEmpty() && stale.isEmpty()) {
+            LOGGER.log(Level.INFO, "Song index up to date with {0} songs", songs.size());
+            return;
+        }
+        if (!isWritable()) {
+            return;
+        }
+        LOGGER.log(Level.INFO, "Updating {0} songs and removing {1} songs in index", new Object[]{changed.size(), stale.size()});
+        try {
+            for (Long id : stale) {
+                writer.deleteDocuments(getIDTerm(id));
+                indexedHashes.remove(id);
+            }
+            for (SongDisplayable song : changed) {
+                writeSong(song);
+            }
+            commit();
+        } catch (IOException ex) {
+            LOGGER.log(Level.SEVERE, "Couldn't update index", ex);
+        }
+    }
+
     /**
      * Remove the given song from the index.
      *
@@ -125,8 +327,14 @@ public class SongSearchIndex implements SearchIndex<SongDisplayable> {
      */
     @Override
     public synchronized void remove(SongDisplayable song) {
-        try (IndexReader reader = IndexReader.open(index, false)) {
-            reader.deleteDocuments(new Term("number", Long.toString(song.getID())));
+        songs.remove(song.getID());
+        if (!isWritable()) {
+            return;
+        }
+        try {
+            writer.deleteDocuments(getIDTerm(song.getID()));
+            commit();
+            indexedHashes.remove(song.getID());
         } catch (IOException ex) {
             LOGGER.log(Level.SEVERE, "Couldn't remove value from index", ex);
         }
@@ -139,7 +347,6 @@ public class SongSearchIndex implements SearchIndex<SongDisplayable> {
      */
     @Override
     public void update(SongDisplayable song) {
-        remove(song);
         add(song);
     }
 
@@ -149,7 +356,7 @@ public class SongSearchIndex implements SearchIndex<SongDisplayable> {
      * @param id the id of the song.
      * @return the song with the given id.
      */
-    public synchronized SongDisplayable getByID(long id) {
+    public SongDisplayable getByID(long id) {
         return songs.get(id);
     }
 
@@ -162,7 +369,7 @@ public class SongSearchIndex implements SearchIndex<SongDisplayable> {
      * @return an array of songs that match the filter.
      */
     @Override
-    public synchronized SongDisplayable[] filter(String queryString, FilterType type) {
+    public SongDisplayable[] filter(String queryString, FilterType type) {
         String sanctifyQueryString = SearchIndexUtils.makeLuceneQuery(queryString);
         if (songs.isEmpty() || sanctifyQueryString.trim().isEmpty()) {
             return songs.values().toArray(new SongDisplayable[songs.size()]);
@@ -178,29 +385,146 @@ public class SongSearchIndex implements SearchIndex<SongDisplayable> {
             LOGGER.log(Level.SEVERE, "Unknown type: {0}", type);
             return new SongDisplayable[0];
         }
-        List<SongDisplayable> ret;
-        try (IndexSearcher searcher = new IndexSearcher(IndexReader.open(index))) {
+        SearcherManager manager = searcherManager;
+        List<SongDisplayable> ret = new ArrayList<>();
+        if (type == FilterType.BODY) {
+            //Lyric matches exclude songs that also match on the title
+            for (SongSearchResult result : search(queryString)) {
+                if (result.getType() == FilterType.BODY) {
+                    ret.add(result.getSong());
+                }
+            }
+            return ret.toArray(new SongDisplayable[ret.size()]);
+        }
+        IndexSearcher searcher = acquire(manager);
+        if (searcher == null) {
+            return new SongDisplayable[0];
+        }
+        try {
             Query q = new ComplexPhraseQueryParser(Version.LUCENE_35, typeStr, analyzer).parse(sanctifyQueryString);
             TopScoreDocCollector collector = TopScoreDocCollector.create(10000, true);
             searcher.search(q, collector);
-            ScoreDoc[] hits = collector.topDocs().scoreDocs;
-            ret = new ArrayList<>();
-            for (int i = 0; i < hits.length; ++i) {
-                int docId = hits[i].doc;
-                Document d = searcher.doc(docId);
-                final Long songNumber = Long.parseLong(d.get("number"));
-                SongDisplayable song = songs.get(songNumber);
-                ret.add(song);
-            }
-            if (type == FilterType.BODY) {
-                for (SongDisplayable song : filter(queryString, FilterType.TITLE)) {
-                    ret.remove(song);
+            for (ScoreDoc hit : collector.topDocs().scoreDocs) {
+                Document d = searcher.doc(hit.doc, NUMBER_SELECTOR);
+                SongDisplayable song = songs.get(Long.parseLong(d.get("number")));
+                if (song != null) {
+                    ret.add(song);
                 }
             }
             return ret.toArray(new SongDisplayable[ret.size()]);
         } catch (ParseException | IOException ex) {
             LOGGER.log(Level.WARNING, "Invalid query string: " + sanctifyQueryString, ex);
             return new SongDisplayable[0];
+        } finally {
+            release(manager, searcher);
+        }
+    }
+
+    /**
+     * Search the title, lyrics and author of every song. Each song appears at
+     * most once in the results, tagged with the field it matched on; where it
+     * matched on more than one, the title takes precedence, then the lyrics,
+     * then the author. Results are grouped in that order, and sorted like the
+     * library within each group.
+     * <p>
+     * Each field is searched with its own query, but hits are only collected,
+     * not scored, since the order doesn't depend on the score. The field a
+     * song is tagged with is therefore always the one lucene matched it on.
+     *
+     * @param queryString the query to use to search.
+     * @return the matching songs, or an empty list if the query is empty.
+     */
+    public List<SongSearchResult> search(String queryString) {
+        List<SongSearchResult> ret = new ArrayList<>();
+        String sanctifyQueryString = SearchIndexUtils.makeLuceneQuery(queryString);
+        if (songs.isEmpty() || sanctifyQueryString.trim().isEmpty()) {
+            return ret;
+        }
+        SearcherManager manager = searcherManager;
+        IndexSearcher searcher = acquire(manager);
+        if (searcher == null) {
+            return ret;
+        }
+        try {
+            BitSet title = getMatches(searcher, "title", sanctifyQueryString);
+            BitSet lyrics = getMatches(searcher, "lyrics", sanctifyQueryString);
+            BitSet all = getMatches(searcher, "author", sanctifyQueryString);
+            all.or(title);
+            all.or(lyrics);
+            for (int doc = all.nextSetBit(0); doc >= 0; doc = all.nextSetBit(doc + 1)) {
+                Document d = searcher.doc(doc, NUMBER_SELECTOR);
+                SongDisplayable song = songs.get(Long.parseLong(d.get("number")));
+                if (song == null) {
+                    continue;
+                }
+                FilterType type;
+                if (title.get(doc)) {
+                    type = FilterType.TITLE;
+                } else if (lyrics.get(doc)) {
+                    type = FilterType.BODY;
+                } else {
+                    type = FilterType.AUTHOR;
+                }
+                ret.add(new SongSearchResult(song, type));
+            }
+        } catch (ParseException | IOException ex) {
+            LOGGER.log(Level.WARNING, "Invalid query string: " + sanctifyQueryString, ex);
+            return new ArrayList<>();
+        } finally {
+            release(manager, searcher);
+        }
+        ret.sort((r1, r2) -> {
+            int order = Integer.compare(MATCH_ORDER.indexOf(r1.getType()), MATCH_ORDER.indexOf(r2.getType()));
+            return order != 0 ? order : r1.getSong().compareTo(r2.getSong());
+        });
+        return ret;
+    }
+
+    /**
+     * Find the documents that match a query against a single field of the
+     * index.
+     *
+     * @param searcher the searcher to use.
+     * @param field the field to search.
+     * @param queryString the sanitised query string.
+     * @return the ids of the matching documents.
+     * @throws ParseException if the query couldn't be parsed.
+     * @throws IOException if the index couldn't be searched.
+     */
+    private BitSet getMatches(IndexSearcher searcher, String field, String queryString) throws ParseException, IOException {
+        Query q = new ComplexPhraseQueryParser(Version.LUCENE_35, field, analyzer).parse(queryString);
+        MatchCollector collector = new MatchCollector();
+        searcher.search(q, collector);
+        return collector.docs;
+    }
+
+    /**
+     * Collects the ids of the documents that match a query, without scoring
+     * them.
+     */
+    private static final class MatchCollector extends Collector {
+
+        private final BitSet docs = new BitSet();
+        private int docBase;
+
+        @Override
+        public void setScorer(Scorer scorer) {
+            //Hits aren't scored
+        }
+
+        @Override
+        public void collect(int doc) {
+            docs.set(docBase + doc);
+        }
+
+        @Override
+        public void setNextReader(IndexReader reader, int docBase) {
+            this.docBase = docBase;
+        }
+
+        @Override
+        public boolean acceptsDocsOutOfOrder() {
+            return true;
         }
     }
 
@@ -209,6 +533,130 @@ public class SongSearchIndex implements SearchIndex<SongDisplayable> {
      */
     @Override
     public synchronized void clear() {
-        SearchIndexUtils.clearIndex(index);
+        if (!isWritable()) {
+            return;
+        }
+        try {
+            writer.deleteAll();
+            commit();
+            indexedHashes.clear();
+        } catch (IOException ex) {
+            LOGGER.log(Level.SEVERE, "Couldn't clear the index", ex);
+        }
+    }
+
+    /**
+     * Commit the writer's changes, tagging the commit with the index version,
+     * and make them visible to searches.
+     *
+     * @throws IOException if the commit failed.
+     */
+    private void commit() throws IOException {
+        writer.commit(Collections.singletonMap(VERSION_KEY, INDEX_VERSION));
+        if (searcherManager != null) {
+            searcherManager.maybeReopen();
+        }
+    }
+
+    /**
+     * Determine whether there's a writer open on the index, logging a warning
+     * if there isn't (because the index couldn't be created, or has been
+     * closed.)
+     *
+     * @return true if the index can be written to, false otherwise.
+     */
+    private boolean isWritable() {
+        if (writer == null) {
+            LOGGER.log(Level.WARNING, "Song index isn't open, not updating it");
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Get a searcher from the given searcher manager, if it's still open.
+     *
+     * @param manager the manager to acquire the searcher from, may be null.
+     * @return the searcher, or null if the index is closed.
+     */
+    private static IndexSearcher acquire(SearcherManager manager) {
+        if (manager == null) {
+            LOGGER.log(Level.WARNING, "Song index is closed");
+            return null;
+        }
+        try {
+            return manager.acquire();
+        } catch (AlreadyClosedException ex) {
+            LOGGER.log(Level.WARNING, "Song index is closed");
+            return null;
+        }
+    }
+
+    /**
+     * Hand a searcher back to the searcher manager it came from.
+     *
+     * @param manager the manager the searcher was acquired from.
+     * @param searcher the searcher to release.
+     */
+    private static void release(SearcherManager manager, IndexSearcher searcher) {
+        try {
+            manager.release(searcher);
+        } catch (IOException | AlreadyClosedException ex) {
+            LOGGER.log(Level.WARNING, "Couldn't release searcher", ex);
+        }
+    }
+
+    /**
+     * Write the given song to the index, replacing any existing document for
+     * the same song.
+     *
+     * @param song the song to write.
+     * @throws IOException if the song couldn't be written.
+     */
+    private void writeSong(SongDisplayable song) throws IOException {
+        int hash = getIndexHash(song);
+        Document doc = new Document();
+        if (song.getTitle() != null) {
+            doc.add(new Field("title", NON_WORD.matcher(song.getTitle()).replaceAll(""), Field.Store.NO, Field.Index.ANALYZED));
+        }
+        if (song.getAuthor() != null) {
+            doc.add(new Field("author", NON_WORD.matcher(song.getAuthor()).replaceAll(""), Field.Store.NO, Field.Index.ANALYZED));
+        }
+        String lyrics = song.getLyrics(false, false);
+        if (lyrics != null) {
+            doc.add(new Field("lyrics", NON_WORD.matcher(lyrics).replaceAll(""), Field.Store.NO, Field.Index.ANALYZED));
+        }
+        doc.add(new Field("number", Long.toString(song.getID()), Field.Store.YES, Field.Index.NOT_ANALYZED));
+        doc.add(new Field("hash", Integer.toString(hash), Field.Store.YES, Field.Index.NO));
+        writer.updateDocument(getIDTerm(song.getID()), doc);
+        songs.put(song.getID(), song);
+        indexedHashes.put(song.getID(), hash);
+        LOGGER.log(Level.FINE, "Added song to index: {0}", song.getTitle());
+    }
+
+    /**
+     * Get the term that uniquely identifies the given song in the index.
+     *
+     * @param id the song id.
+     * @return the term matching that song's document.
+     */
+    private static Term getIDTerm(long id) {
+        return new Term("number", Long.toString(id));
+    }
+
+    /**
+     * Get a hash of the indexed content of a song, used to tell whether the
+     * stored document is out of date.
+     *
+     * @param song the song to hash.
+     * @return the hash of the indexed fields.
+     */
+    private static int getIndexHash(SongDisplayable song) {
+        int hash = 7;
+        hash = 31 * hash + (song.getTitle() != null ? song.getTitle().hashCode() : 0);
+        hash = 31 * hash + (song.getAuthor() != null ? song.getAuthor().hashCode() : 0);
+        String lyrics = song.getLyrics(false, false);
+        hash = 31 * hash + (lyrics != null ? lyrics.hashCode() : 0);
+        return hash;
     }
 }
@@ -0,0 +1,63 @@
+/*
+ * This file is part of Quelea, free projection software for churches.
+ *
+ *
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.quelea.services.lucene;
+
+import org.quelea.data.displayable.SongDisplayable;
+import org.quelea.services.lucene.SearchIndex.FilterType;
+
+/**
+ * A single hit from a song search, tagged with the field it matched on.
+ *
+ * @author Michael
+ */
+public class SongSearchResult {
+
+    private final SongDisplayable song;
+    private final FilterType type;
+
+    /**
+     * Create a new search result.
+     *
+     * @param song the song that matched.
+     * @param type the field the song matched on - if it matched on more than
+     * one, the title takes precedence, then the lyrics, then the author.
+     */
+    public SongSearchResult(SongDisplayable song, FilterType type) {
+        this.song = song;
+        this.type = type;
+    }
+
+    /**
+     * Get the song that matched.
+     *
+     * @return the song.
+     */
+    public SongDisplayable getSong() {
+        return song;
+    }
+
+    /**
+     * Get the field the song matched on.
+     *
+     * @return the field the song matched on.
+     */
+    public FilterType getType() {
+        return type;
+    }
+}
@@ -17,20 +17,24 @@
  */
 package org.quelea.services.print;
 
+import java.io.BufferedOutputStream;
 import java.io.ByteArrayInputStream;
-import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
 import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
 import java.net.URI;
 import java.net.URISyntaxException;
 import java.net.URL;
 import java.net.URLClassLoader;
 import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 import javax.xml.transform.Result;
+import javax.xml.transform.Templates;
 import javax.xml.transform.Transformer;
 import javax.xml.transform.TransformerException;
 import javax.xml.transform.TransformerFactory;
@@ -44,20 +48,22 @@ import org.xml.sax.helpers.DefaultHandler;
 
 /**
  * Responsible for printing to PDF (using xml and xslt.)
+ * <p>
+ * FOP is set up once, and each stylesheet is compiled once (and again only
+ * if the file changes), so printing many PDFs just pays for the
+ * transformation itself. Both are thread safe, so several PDFs can be
+ * printed at once.
  *
  * @author Michael
  */
 public class PDFPrinter {
 
     private static Object fopFactory;
-    private static Object fopFactoryBuilderObj;
-    private static Object foUserAgent;
     private static TransformerFactory tranFactory;
-    private static Class fopFactoryBuilderCls;
-    private static Class fopFactoryCls;
-    private static Class fopCls;
-    private static Class foUserAgentCls;
-    private static Class configurationCls;
+    private static Method newFopMethod;
+    private static Method newFOUserAgentMethod;
+    private static Method getDefaultHandlerMethod;
+    private static final Map<String, CompiledStylesheet> STYLESHEETS = new ConcurrentHashMap<>();
 
     /**
      * Print a PDF file.
@@ -68,53 +74,92 @@ public class PDFPrinter {
      * @throws IOException if anything goes wrong.
      */
     public void print(String xml, File xsltfile, File pdfFile) throws IOException {
+        try (OutputStream out = new BufferedOutputStream(new FileOutputStream(pdfFile))) {
+            print(xml, xsltfile, out);
+        }
+    }
+
+    /**
+     * Print a PDF straight to a stream.
+     *
+     * @param xml the content to use for printing.
+     * @param xsltfile the stylesheet to use for printing.
+     * @param out the stream to print to. It isn't closed.
+     * @throws IOException if anything goes wrong.
+     */
+    public void print(String xml, File xsltfile, OutputStream out) throws IOException {
         try {
+            init();
             InputStream stream = new ByteArrayInputStream(xml.getBytes(StandardCharsets.UTF_8));
             StreamSource source = new StreamSource(stream);
-            StreamSource transformSource = new StreamSource(xsltfile);
-            DefaultConfigurationBuilder cfgBuilder = new DefaultConfigurationBuilder();
-            Configuration cfg = cfgBuilder.buildFromFile(new File("fopcfg.xml"));
-
-            /*
-            Yuk, I know. The issue is here that Apache FOP hasn't been updated to use PDFBox 2.x, it's stuck on 1.8.
-            We can't include both by default because that causes all sorts of classloader issues, so exclude 1.8
-            from the default classpath, load it manually and then reflect around it here.
-             */
-
-            if (fopFactoryBuilderObj == null) {
-                CustomClassLoader clsLoader = new CustomClassLoader(new java.net.URL[]{
-                    new java.net.URL("file:lib/fop-2.1.jar"),
-                    new java.net.URL("file:lib/pdfbox-app-1.8.13.jar")
-                });
-                fopFactoryBuilderCls = clsLoader.loadClass("org.apache.fop.apps.FopFactoryBuilder");
-                fopFactoryCls = clsLoader.loadClass("org.apache.fop.apps.FopFactory");
-                fopCls = clsLoader.loadClass("org.apache.fop.apps.Fop");
-                foUserAgentCls = clsLoader.loadClass("org.apache.fop.apps.FOUserAgent");
-                configurationCls = clsLoader.loadClass("org.apache.avalon.framework.configuration.Configuration");
-                fopFactoryBuilderObj = fopFactoryBuilderCls.getConstructor(URI.class).newInstance(new URI("."));
-                fopFactoryBuilderObj = fopFactoryBuilderCls.getMethod("setConfiguration", configurationCls).invoke(fopFactoryBuilderObj, cfg);
-                fopFactory = fopFactoryBuilderCls.getMethod("build").invoke(fopFactoryBuilderObj);
-                foUserAgent = fopFactoryCls.getMethod("newFOUserAgent").invoke(fopFactory);
-                tranFactory = TransformerFactory.newInstance();
-            }
-
-            ByteArrayOutputStream outStream = new ByteArrayOutputStream();
-            Transformer xslfoTransformer = tranFactory.newTransformer(transformSource);
-
-            Object fop = fopFactoryCls.getMethod("newFop", String.class, foUserAgentCls, OutputStream.class).invoke(fopFactory, "application/pdf", foUserAgent, outStream);
-            Result res = new SAXResult((DefaultHandler) fopCls.getMethod("getDefaultHandler").invoke(fop));
+            Transformer xslfoTransformer = getTemplates(xsltfile).newTransformer();
+            Object foUserAgent = newFOUserAgentMethod.invoke(fopFactory);
+            Object fop = newFopMethod.invoke(fopFactory, "application/pdf", foUserAgent, out);
+            Result res = new SAXResult((DefaultHandler) getDefaultHandlerMethod.invoke(fop));
             xslfoTransformer.transform(source, res);
-
-            OutputStream out = new java.io.FileOutputStream(pdfFile);
-            out = new java.io.BufferedOutputStream(out);
-            FileOutputStream str = new FileOutputStream(pdfFile);
-            str.write(outStream.toByteArray());
-            str.close();
-            out.close();
         } catch (IOException | ClassNotFoundException | IllegalAccessException | IllegalArgumentException | InstantiationException | NoSuchMethodException | SecurityException | InvocationTargetException | URISyntaxException | TransformerException | ConfigurationException | SAXException ex) {
             throw new IOException("Error printing to PDF", ex);
         }
     }
+
+    /**
+     * Set up FOP, if it hasn't been already.
+     */
+    private static synchronized void init() throws IOException, ClassNotFoundException, IllegalAccessException, InstantiationException, NoSuchMethodException, InvocationTargetException, URISyntaxException, ConfigurationException, SAXException {
+        if (fopFactory != null) {
+            return;
+        }
+        DefaultConfigurationBuilder cfgBuilder = new DefaultConfigurationBuilder();
+        Configuration cfg = cfgBuilder.buildFromFile(new File("fopcfg.xml"));
+
+        /*
+        Yuk, I know. The issue is here that Apache FOP hasn't been updated to use PDFBox 2.x, it's stuck on 1.8.
+        We can't include both by default because that causes all sorts of classloader issues, so exclude 1.8
+        from the default classpath, load it manually and then reflect around it here.
+         */
+        CustomClassLoader clsLoader = new CustomClassLoader(new java.net.URL[]{
+            new java.net.URL("file:lib/fop-2.1.jar"),
+            new java.net.URL("file:lib/pdfbox-app-1.8.13.jar")
+        });
+        Class<?> fopFactoryBuilderCls = clsLoader.loadClass("org.apache.fop.apps.FopFactoryBuilder");
+        Class<?> fopFactoryCls = clsLoader.loadClass("org.apache.fop.apps.FopFactory");
+        Class<?> fopCls = clsLoader.loadClass("org.apache.fop.apps.Fop");
+        Class<?> foUserAgentCls = clsLoader.loadClass("org.apache.fop.apps.FOUserAgent");
+        Class<?> configurationCls = clsLoader.loadClass("org.apache.avalon.framework.configuration.Configuration");
+        Object fopFactoryBuilderObj = fopFactoryBuilderCls.getConstructor(URI.class).newInstance(new URI("."));
+        fopFactoryBuilderObj = fopFactoryBuilderCls.getMethod("setConfiguration", configurationCls).invoke(fopFactoryBuilderObj, cfg);
+        newFopMethod = fopFactoryCls.getMethod("newFop", String.class, foUserAgentCls, OutputStream.class);
+        newFOUserAgentMethod = fopFactoryCls.getMethod("newFOUserAgent");
+        getDefaultHandlerMethod = fopCls.getMethod("getDefaultHandler");
+        tranFactory = TransformerFactory.newInstance();
+        fopFactory = fopFactoryBuilderCls.getMethod("build").invoke(fopFactoryBuilderObj);
+    }
+
+    /**
+     * Get the compiled form of a stylesheet, compiling it if it hasn't been
+     * already or has changed since.
+     */
+    private static synchronized Templates getTemplates(File xsltfile) throws TransformerException {
+        String key = xsltfile.getAbsolutePath();
+        long modified = xsltfile.lastModified();
+        CompiledStylesheet compiled = STYLESHEETS.get(key);
+        if (compiled == null || compiled.modified != modified) {
+            compiled = new CompiledStylesheet(tranFactory.newTemplates(new StreamSource(xsltfile)), modified);
+            STYLESHEETS.put(key, compiled);
+        }
+        return compiled.templates;
+    }
+
+    private static final class CompiledStylesheet {
+
+        private final Templates templates;
+        private final long modified;
+
+        CompiledStylesheet(Templates templates, long modified) {
+            this.templates = templates;
+            this.modified = modified;
+        }
+    }
 }
 
 class CustomClassLoader extends ClassLoader {
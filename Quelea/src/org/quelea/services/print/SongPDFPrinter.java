@@ -19,6 +19,7 @@ package org.quelea.services.print;
 
 import java.io.File;
 import java.io.IOException;
+import java.io.OutputStream;
 import org.quelea.data.displayable.SongDisplayable;
 
 /**
@@ -37,4 +38,17 @@ public class SongPDFPrinter extends PDFPrinter {
         print(song.getPrintXML(includeTranslations), new File("songformat.xsl"), pdfFile);
     }
 
+    /**
+     * Print a song as a PDF straight to a stream.
+     *
+     * @param song the song to print.
+     * @param out the stream to print to. It isn't closed.
+     * @param includeTranslations true if the song's translations should be
+     * printed too.
+     * @throws IOException if the song couldn't be printed.
+     */
+    public void print(SongDisplayable song, OutputStream out, boolean includeTranslations) throws IOException {
+        print(song.getPrintXML(includeTranslations), new File("songformat.xsl"), out);
+    }
+
 }
@@ -40,7 +40,7 @@ public class ImageManager {
      * @param uri the URI to load.
      * @return the image at this URI.
      */
-    public Image getImage(String uri) {
+    public synchronized Image getImage(String uri) {
         if(uri == null) {
             return Utils.getImageFromColour(Color.BLACK);
         }
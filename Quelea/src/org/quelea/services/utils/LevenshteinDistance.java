@@ -20,38 +20,253 @@ package org.quelea.services.utils;
 
 import com.amd.aparapi.Kernel;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.stream.IntStream;
 
 /**
+ * Calculates the Levenshtein distance between strings in bulk. Batches are
+ * run on the GPU through Aparapi where one is available, otherwise they're
+ * spread across the common fork join pool using a bit-parallel (Myers)
+ * algorithm that can give up early once a distance threshold is exceeded.
  *
  * @author Michael
  */
 public class LevenshteinDistance {
 
+    private static final Logger LOGGER = LoggerUtils.getLogger();
+    /**
+     * The largest dump matrix (in ints) we'll allocate for the GPU kernel -
+     * bigger batches are run on the CPU instead.
+     */
+    private static final long MAX_DUMP_SIZE = 1 << 24;
+    /**
+     * The largest buffer (in longs) each thread keeps hold of between
+     * comparisons. Longer strings still work, they just allocate their own
+     * temporary buffers.
+     */
+    private static final int MAX_BUFFER_SIZE = 1 << 16;
+    private static final ThreadLocal<Buffers> BUFFERS = ThreadLocal.withInitial(Buffers::new);
+    private static volatile Boolean gpuAvailable;
+
+    /**
+     * Find the smallest distance between the given string and any of the
+     * strings in the given array.
+     *
+     * @param s1 the string to compare.
+     * @param s2 the strings to compare it against.
+     * @return the smallest distance, or Integer.MAX_VALUE if s2 is empty.
+     */
     public int leastCompare(String s1, String[] s2) {
-        String[] arr = new String[s2.length];
-        for(int i = 0; i < arr.length; i++) {
-            arr[i] = s1;
+        final AtomicInteger min = new AtomicInteger(Integer.MAX_VALUE);
+        IntStream.range(0, s2.length).parallel().forEach((i) -> {
+            int dist = distance(s1, s2[i], min.get());
+            if(dist >= 0) {
+                min.accumulateAndGet(dist, Math::min);
+            }
+        });
+        return min.get();
+    }
+
+    /**
+     * Calculate the distances between pairs of strings, using the GPU if
+     * one is available.
+     *
+     * @param s1 the first string of each pair.
+     * @param s2 the second string of each pair.
+     * @return the distance between each pair.
+     */
+    public int[] compare(String[] s1, String[] s2) {
+        if(s1.length != s2.length) {
+            throw new IllegalArgumentException("Array lengths must be equal!");
         }
+        if(getDumpSize(s1, s2) > MAX_DUMP_SIZE || !isGPUAvailable()) {
+            return compare(s1, s2, Integer.MAX_VALUE);
+        }
+        return compareGPU(s1, s2);
+    }
 
-        int[] results = compare(arr, s2);
-        int min = Integer.MAX_VALUE;
+    /**
+     * Calculate the distances between pairs of strings on the CPU, giving up
+     * on any pair whose distance is more than the given threshold. The pairs
+     * are compared in parallel.
+     *
+     * @param s1 the first string of each pair.
+     * @param s2 the second string of each pair.
+     * @param threshold the largest distance of interest.
+     * @return the distance between each pair, or -1 for pairs whose distance
+     * is more than the threshold.
+     */
+    public int[] compare(String[] s1, String[] s2, int threshold) {
+        if(s1.length != s2.length) {
+            throw new IllegalArgumentException("Array lengths must be equal!");
+        }
+        final int[] result = new int[s1.length];
+        IntStream.range(0, s1.length).parallel().forEach((i) -> {
+            result[i] = distance(s1[i], s2[i], threshold);
+        });
+        return result;
+    }
 
-        for(int val : results) {
-            if(val < min) {
-                val = min;
+    /**
+     * Calculate the distance between two strings.
+     *
+     * @param s the first string.
+     * @param t the second string.
+     * @return the distance between them.
+     */
+    public static int distance(CharSequence s, CharSequence t) {
+        return distance(s, t, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Calculate the distance between two strings, giving up as soon as it's
+     * certain to be more than the given threshold.
+     * <p>
+     * This uses Myers' bit-parallel algorithm (in its blocked form for
+     * strings longer than 64 characters), so each character of the longer
+     * string is processed 64 rows of the edit matrix at a time.
+     *
+     * @param s the first string.
+     * @param t the second string.
+     * @param threshold the largest distance of interest.
+     * @return the distance between them, or -1 if it's more than the
+     * threshold.
+     */
+    public static int distance(CharSequence s, CharSequence t, int threshold) {
+        if(s.length() > t.length()) {
+            CharSequence temp = s;
+            s = t;
+            t = temp;
+        }
+        int m = s.length();
+        int n = t.length();
+        if(n - m > threshold) {
+            return -1;
+        }
+        if(m == 0) {
+            return n;
+        }
+        int blocks = (m + 63) / 64;
+        Buffers buffers = BUFFERS.get();
+        int tableSize = Integer.highestOneBit(Math.min(m, Character.MAX_VALUE)) << 2;
+        int[] keys = buffers.getKeys(tableSize);
+        int[] slots = buffers.getSlots(tableSize);
+        Arrays.fill(keys, 0, tableSize, 0);
+
+        //Work out which distinct characters are in s, and build the match
+        //vectors (one bit per row of each block) for each of them
+        int distinct = 0;
+        for(int i = 0; i < m; i++) {
+            int slot = find(keys, tableSize, s.charAt(i));
+            if(keys[slot] == 0) {
+                keys[slot] = s.charAt(i) + 1;
+                slots[slot] = distinct++;
             }
         }
-        return min;
+        long[] peq = buffers.getPeq(distinct * blocks);
+        Arrays.fill(peq, 0, distinct * blocks, 0);
+        for(int i = 0; i < m; i++) {
+            int index = slots[find(keys, tableSize, s.charAt(i))];
+            peq[index * blocks + (i >> 6)] |= 1L << (i & 63);
+        }
 
+        long[] pv = buffers.getPv(blocks);
+        long[] mv = buffers.getMv(blocks);
+        Arrays.fill(pv, 0, blocks, -1L);
+        Arrays.fill(mv, 0, blocks, 0L);
+        long lastBit = 1L << ((m - 1) & 63);
+        int score = m;
+
+        for(int j = 0; j < n; j++) {
+            int slot = find(keys, tableSize, t.charAt(j));
+            int peqOffset = keys[slot] == 0 ? -1 : slots[slot] * blocks;
+            int hin = 1;
+            for(int b = 0; b < blocks; b++) {
+                long eq = peqOffset < 0 ? 0 : peq[peqOffset + b];
+                long pvb = pv[b];
+                long mvb = mv[b];
+                long xv = eq | mvb;
+                if(hin < 0) {
+                    eq |= 1;
+                }
+                long xh = (((eq & pvb) + pvb) ^ pvb) | eq;
+                long ph = mvb | ~(xh | pvb);
+                long mh = pvb & xh;
+                long outBit = b == blocks - 1 ? lastBit : Long.MIN_VALUE;
+                int hout = (ph & outBit) != 0 ? 1 : ((mh & outBit) != 0 ? -1 : 0);
+                ph <<= 1;
+                mh <<= 1;
+                if(hin < 0) {
+                    mh |= 1;
+                }
+                else if(hin > 0) {
+                    ph |= 1;
+                }
+                pv[b] = mh | ~(xv | ph);
+                mv[b] = ph & xv;
+                hin = hout;
+            }
+            score += hin;
+            //The score can drop by at most one for each remaining character
+            if(score - (n - j - 1) > threshold) {
+                return -1;
+            }
+        }
+        return score;
     }
 
-    public int[] compare(String[] s1, String[] s2) {
+    /**
+     * Find the slot in the given open addressed table for a character -
+     * either the slot holding it, or the empty slot it would go in.
+     */
+    private static int find(int[] keys, int tableSize, char c) {
+        int mask = tableSize - 1;
+        int slot = (c * 0x9E3779B1) >>> 16 & mask;
+        while(keys[slot] != 0 && keys[slot] != c + 1) {
+            slot = (slot + 1) & mask;
+        }
+        return slot;
+    }
 
-        if(s1.length != s2.length) {
-            throw new IllegalArgumentException("Array lengths must be equal!");
+    /**
+     * Work out whether the GPU can be used by Aparapi, by running a trivial
+     * kernel and seeing whether it falls back to another execution mode.
+     */
+    private static boolean isGPUAvailable() {
+        if(gpuAvailable == null) {
+            synchronized(LevenshteinDistance.class) {
+                if(gpuAvailable == null) {
+                    boolean available;
+                    try {
+                        final int[] probe = new int[1];
+                        Kernel kernel = new Kernel() {
+                            @Override
+                            public void run() {
+                                probe[getGlobalId()] = 1;
+                            }
+                        };
+                        kernel.setExecutionMode(Kernel.EXECUTION_MODE.GPU);
+                        kernel.execute(1);
+                        available = kernel.getExecutionMode() == Kernel.EXECUTION_MODE.GPU;
+                        kernel.dispose();
+                    }
+                    catch(Throwable ex) {
+                        LOGGER.log(Level.INFO, "Couldn't use GPU", ex);
+                        available = false;
+                    }
+                    LOGGER.log(Level.INFO, "GPU available for string comparison: {0}", available);
+                    gpuAvailable = available;
+                }
+            }
         }
+        return gpuAvailable;
+    }
 
+    private int[] compareGPU(String[] s1, String[] s2) {
         final int result[] = new int[s1.length];
         ArrStart s1Box = toIntArr(s1);
         final int[] s1Arr = s1Box.arr;
@@ -63,7 +278,7 @@ public class LevenshteinDistance {
         final int[] s2Lengths = lengths(s2);
 
         final int[] dumpPositions = getDumpPositions(s1, s2);
-        int dumpSize = getDumpSize(s1, s2);
+        int dumpSize = (int) getDumpSize(s1, s2);
 
 //        System.out.println(dumpSize);
 
@@ -87,7 +302,7 @@ public class LevenshteinDistance {
                 if(tLength == 0) {
                     return sLength;
                 }
-                int firstSize = sLength + 1;
+                int firstSize = tLength + 1;
 
                 for(i = 0; i <= sLength; i++) {
                     dump[dumpOffset + (firstSize * i + 0)] = i;
@@ -121,6 +336,7 @@ public class LevenshteinDistance {
         };
         kernel.setExecutionMode(Kernel.EXECUTION_MODE.GPU);
         kernel.execute(s1.length);
+        kernel.dispose();
         return result;
     }
 
@@ -132,18 +348,18 @@ public class LevenshteinDistance {
                 prev = 0;
             }
             else {
-                prev = ret[i - 1];
+                prev = ret[i - 1] + (s1[i - 1].length() + 2) * (s2[i - 1].length() + 2);
             }
-            ret[i] = prev + (s1[i].length() + 2) * (s2[i].length() + 2);
+            ret[i] = prev;
 
         }
         return ret;
     }
 
-    private int getDumpSize(String[] s1, String[] s2) {
-        int size = 0;
+    private long getDumpSize(String[] s1, String[] s2) {
+        long size = 0;
         for(int i = 0; i < s1.length; i++) {
-            size += (s1[i].length() + 2) * (s2[i].length() + 2);
+            size += (long) (s1[i].length() + 2) * (s2[i].length() + 2);
 
         }
         return size;
@@ -187,4 +403,68 @@ public class LevenshteinDistance {
         }
         return ret;
     }
+
+    /**
+     * The buffers used by a single thread for CPU comparisons, kept between
+     * comparisons so each one doesn't have to allocate. Buffers that would
+     * need to be bigger than MAX_BUFFER_SIZE are allocated but not kept.
+     */
+    private static final class Buffers {
+
+        private int[] keys = new int[256];
+        private int[] slots = new int[256];
+        private long[] peq = new long[256];
+        private long[] pv = new long[16];
+        private long[] mv = new long[16];
+
+        int[] getKeys(int size) {
+            if(keys.length < size) {
+                if(size > MAX_BUFFER_SIZE) {
+                    return new int[size];
+                }
+                keys = new int[size];
+            }
+            return keys;
+        }
+
+        int[] getSlots(int size) {
+            if(slots.length < size) {
+                if(size > MAX_BUFFER_SIZE) {
+                    return new int[size];
+                }
+                slots = new int[size];
+            }
+            return slots;
+        }
+
+        long[] getPeq(int size) {
+            if(peq.length < size) {
+                if(size > MAX_BUFFER_SIZE) {
+                    return new long[size];
+                }
+                peq = new long[size];
+            }
+            return peq;
+        }
+
+        long[] getPv(int size) {
+            if(pv.length < size) {
+                if(size > MAX_BUFFER_SIZE) {
+                    return new long[size];
+                }
+                pv = new long[size];
+            }
+            return pv;
+        }
+
+        long[] getMv(int size) {
+            if(mv.length < size) {
+                if(size > MAX_BUFFER_SIZE) {
+                    return new long[size];
+                }
+                mv = new long[size];
+            }
+            return mv;
+        }
+    }
 }
@@ -18,7 +18,10 @@
 package org.quelea.services.utils;
 
 import java.util.Comparator;
+import java.util.Map;
 import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Pattern;
 
 /**
  * Checks the type of the line.
@@ -36,6 +39,20 @@ public class LineTypeChecker {
 
     }
 
+    /**
+     * The pattern a single chord token must match.
+     */
+    private static final Pattern CHORD_PATTERN = Pattern.compile("^(\\s*(((([a-hA-H](#|b|♯|♭|(is))?[0-9]*)|\\/)*((sus|dim|maj|dom|min|m|aug|add)?[0-9]*){3}(#|b|♯|♭|(is))?[0-9]*)\\s*)+)$");
+    /**
+     * Every character that can appear in a token matching CHORD_PATTERN, so
+     * most lyric tokens can be ruled out without running the pattern.
+     */
+    private static final String CHORD_CHARS = "ABCDEFGHabcdefghijmnosu0123456789#♯♭/";
+    private static final Pattern REPEAT_PATTERN = Pattern.compile("[xX][0-9]+");
+    private static final Pattern REPEAT_PATTERN_REV = Pattern.compile("[0-9]+[xX]");
+    private static final String[] TITLES = {"verse", "chorus", "tag", "pre-chorus", "pre chorus", "coda", "bridge", "intro", "outro", "interlude", "ending"};
+    private static final int MAX_CACHE_SIZE = 50000;
+    private static final Map<String, Type> CACHE = new ConcurrentHashMap<>();
     private final String line;
 
     /**
@@ -48,7 +65,8 @@ public class LineTypeChecker {
     }
 
     /**
-     * Get the line type.
+     * Get the line type. Line types are cached, so checking the same line
+     * again is cheap.
      *
      * @return the type of the line.
      */
@@ -56,80 +74,137 @@ public class LineTypeChecker {
         if(line==null) {
             return null;
         }
-        if (checkTitle()) {
+        Type type = CACHE.get(line);
+        if (type == null) {
+            type = checkLineType();
+            if (CACHE.size() >= MAX_CACHE_SIZE) {
+                CACHE.clear();
+            }
+            CACHE.put(line, type);
+        }
+        return type;
+    }
+
+    private Type checkLineType() {
+        String trimmed = line.trim();
+        if (checkTitle(trimmed)) {
             return Type.TITLE;
-        } else if (checkChords()) {
+        } else if (checkChords(trimmed)) {
             return Type.CHORDS;
-        } else if (checkNonBreak()) {
+        } else if (checkNonBreak(trimmed)) {
             return Type.NONBREAK;
         } else {
             return Type.NORMAL;
         }
     }
 
-    private boolean checkNonBreak() {
-        return line.trim().equals("<>")
-                || line.trim().equals("\\u00A0")
+    private boolean checkNonBreak(String trimmed) {
+        return trimmed.equals("<>")
+                || trimmed.equals("\\u00A0")
                 || (line.length() == 1 && line.charAt(0) == 160);
     }
 
     /**
      * Check whether this line is a line containing only chords.
      *
+     * @param trimmed the line with whitespace trimmed.
      * @return true if it's a chord line, false otherwise.
      */
-    private boolean checkChords() {
-        if (line.trim().isEmpty()) {
+    private boolean checkChords(String trimmed) {
+        if (trimmed.isEmpty()) {
             return false;
         }
-        if (line.toLowerCase().endsWith("//chords")) {
+        if (endsWithIgnoreCase(line, "//chords")) {
             return true;
         }
-        if (line.toLowerCase().endsWith("//lyrics")) {
+        if (endsWithIgnoreCase(line, "//lyrics")) {
             return false;
         }
-        String checkLine = line.replace('-', ' ');
-        checkLine = checkLine.replace('(', ' ');
-        checkLine = checkLine.replace(')', ' ');
-        checkLine = checkLine.replaceAll("[xX][0-9]+", "");
-        checkLine = checkLine.replaceAll("[0-9]+[xX]", "");
-        for (String s : checkLine.split("\\s")) {
-            if (s.trim().isEmpty()) {
-                continue;
+        String checkLine = line.replace('-', ' ').replace('(', ' ').replace(')', ' ');
+        if (checkLine.indexOf('x') >= 0 || checkLine.indexOf('X') >= 0) {
+            checkLine = REPEAT_PATTERN.matcher(checkLine).replaceAll("");
+            checkLine = REPEAT_PATTERN_REV.matcher(checkLine).replaceAll("");
+        }
+        int length = checkLine.length();
+        int start = 0;
+        while (start < length) {
+            while (start < length && isSplitChar(checkLine.charAt(start))) {
+                start++;
+            }
+            int end = start;
+            while (end < length && !isSplitChar(checkLine.charAt(end))) {
+                end++;
             }
-            if (!s.matches("^(\\s*(((([a-hA-H](#|b|♯|♭|(is))?[0-9]*)|\\/)*((sus|dim|maj|dom|min|m|aug|add)?[0-9]*){3}(#|b|♯|♭|(is))?[0-9]*)\\s*)+)$")) {
+            if (end > start && !isChord(checkLine.substring(start, end))) {
                 return false;
             }
+            start = end;
         }
-
         return true;
     }
 
+    /**
+     * Determine whether a single token (with no whitespace in it) is a
+     * chord.
+     *
+     * @param token the token to check.
+     * @return true if it's a chord, false otherwise.
+     */
+    private static boolean isChord(String token) {
+        if (token.trim().isEmpty()) {
+            return true;
+        }
+        for (int i = 0; i < token.length(); i++) {
+            if (CHORD_CHARS.indexOf(token.charAt(i)) < 0) {
+                return false;
+            }
+        }
+        return CHORD_PATTERN.matcher(token).matches();
+    }
+
+    /**
+     * Whether the given character is one of those matched by \\s, which
+     * chord lines are split on.
+     */
+    private static boolean isSplitChar(char c) {
+        return c == ' ' || c == '\t' || c == '\n' || c == '\u000B' || c == '\f' || c == '\r';
+    }
+
+    private static boolean endsWithIgnoreCase(String str, String suffix) {
+        return str.regionMatches(true, str.length() - suffix.length(), suffix, 0, suffix.length());
+    }
+
     /**
      * Check whether this line is the title of a section.
      *
+     * @param trimmed the line with whitespace trimmed.
      * @return true if it's the title of a section, false otherwise.
      */
-    private boolean checkTitle() {
-        String processedLine = line.toLowerCase().trim()
-                .replace("{", "").replace("}", "")
-                .replace("[", "").replace("]", "")
-                .replace("<", "").replace(">", "")
-                .replace("(", "").replace(")", "");
+    private boolean checkTitle(String trimmed) {
+        String lower = trimmed.toLowerCase();
+        StringBuilder processed = null;
+        for (int i = 0; i < lower.length(); i++) {
+            char c = lower.charAt(i);
+            boolean bracket = c == '{' || c == '}' || c == '[' || c == ']'
+                    || c == '<' || c == '>' || c == '(' || c == ')';
+            if (bracket && processed == null) {
+                processed = new StringBuilder(lower.length());
+                processed.append(lower, 0, i);
+            }
+            else if (!bracket && processed != null) {
+                processed.append(c);
+            }
+        }
+        String processedLine = processed == null ? lower : processed.toString();
         if (processedLine.endsWith("//title")) {
             return true;
         }
-        return processedLine.toLowerCase().startsWith("verse")
-                || processedLine.toLowerCase().startsWith("chorus")
-                || processedLine.toLowerCase().startsWith("tag")
-                || processedLine.toLowerCase().startsWith("pre-chorus")
-                || processedLine.toLowerCase().startsWith("pre chorus")
-                || processedLine.toLowerCase().startsWith("coda")
-                || processedLine.toLowerCase().startsWith("bridge")
-                || processedLine.toLowerCase().startsWith("intro")
-                || processedLine.toLowerCase().startsWith("outro")
-                || processedLine.toLowerCase().startsWith("interlude")
-                || processedLine.toLowerCase().startsWith("ending");
+        for (String title : TITLES) {
+            if (processedLine.startsWith(title)) {
+                return true;
+            }
+        }
+        return false;
     }
 
     private static final TreeMap<String, String> titleMap = new TreeMap<>();
@@ -21,9 +21,20 @@ import java.io.File;
 import java.io.FileWriter;
 import java.io.IOException;
 import java.io.StringReader;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Properties;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.logging.Level;
 import javafx.geometry.BoundingBox;
 import javafx.geometry.Bounds;
@@ -37,12 +48,32 @@ import org.quelea.services.notice.NoticeDrawer.NoticePosition;
 /**
  * Manages the properties specific to Quelea.
  * <p>
+ * Reads never lock or re-parse anything: every change publishes a new
+ * immutable snapshot of the properties, with the numbers and booleans already
+ * parsed, which the getters read from. Changes are written back to the file
+ * in the background, a short while after the last one, rather than on every
+ * setter.
+ * <p>
  * @author Michael
  */
 public final class QueleaProperties extends Properties {
 
     public static final Version VERSION = new Version("2017.2", "");
     private static final QueleaProperties INSTANCE = new QueleaProperties();
+    /**
+     * How long to wait after a change before writing the properties file, so
+     * a burst of changes (such as saving the options dialog) is written once.
+     */
+    private static final long WRITE_DELAY_MILLIS = 500;
+    private volatile Snapshot snapshot = new Snapshot(Collections.<String, String>emptyMap());
+    private final List<PropertiesListener> listeners = new CopyOnWriteArrayList<>();
+    private boolean loading;
+    private final AtomicBoolean writePending = new AtomicBoolean();
+    private final ScheduledExecutorService writer = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread t = new Thread(r, "Properties writer");
+        t.setDaemon(true);
+        return t;
+    });
 
     /**
      * Load the properties from the properties file.
@@ -53,10 +84,196 @@ public final class QueleaProperties extends Properties {
                 getPropFile().createNewFile();
             }
             try (StringReader reader = new StringReader(Utils.getTextFromFile(getPropFile().getAbsolutePath(), ""))) {
-                load(reader);
+                synchronized (this) {
+                    //Publish once at the end rather than after every property
+                    loading = true;
+                    try {
+                        load(reader);
+                    } finally {
+                        loading = false;
+                        publish();
+                    }
+                }
             }
         } catch (IOException ex) { //Never mind.
         }
+        Runtime.getRuntime().addShutdownHook(new Thread(this::flush, "Properties flush"));
+    }
+
+    /**
+     * Listens for changes to the properties.
+     */
+    public interface PropertiesListener {
+
+        /**
+         * Called after a property has changed, on the thread that changed it.
+         * <p>
+         * @param key the key of the property that changed.
+         */
+        void propertyChanged(String key);
+    }
+
+    /**
+     * Add a listener to be told when a property changes.
+     * <p>
+     * @param listener the listener to add.
+     */
+    public void addPropertiesListener(PropertiesListener listener) {
+        listeners.add(listener);
+    }
+
+    /**
+     * Remove a listener added with addPropertiesListener().
+     * <p>
+     * @param listener the listener to remove.
+     */
+    public void removePropertiesListener(PropertiesListener listener) {
+        listeners.remove(listener);
+    }
+
+    @Override
+    public synchronized Object put(Object key, Object value) {
+        Object ret = super.put(key, value);
+        publish();
+        return ret;
+    }
+
+    @Override
+    public synchronized Object remove(Object key) {
+        Object ret = super.remove(key);
+        publish();
+        return ret;
+    }
+
+    @Override
+    public Object setProperty(String key, String value) {
+        Object ret = super.setProperty(key, value);
+        if (value == null ? ret != null : !value.equals(ret)) {
+            for (PropertiesListener listener : listeners) {
+                listener.propertyChanged(key);
+            }
+        }
+        return ret;
+    }
+
+    @Override
+    public String getProperty(String key) {
+        return snapshot.values.get(key);
+    }
+
+    @Override
+    public String getProperty(String key, String defaultValue) {
+        String ret = snapshot.values.get(key);
+        return ret == null ? defaultValue : ret;
+    }
+
+    /**
+     * Replace the snapshot with one of the current properties. Must be called
+     * with the lock held, after any change.
+     */
+    private void publish() {
+        if (loading) {
+            return;
+        }
+        Map<String, String> values = new HashMap<>();
+        for (Map.Entry<Object, Object> entry : super.entrySet()) {
+            values.put(String.valueOf(entry.getKey()), String.valueOf(entry.getValue()));
+        }
+        snapshot = new Snapshot(values);
+    }
+
+    private int getInt(String key) {
+        return getInt(key, null);
+    }
+
+    /**
+     * Get a property as an int. A value that isn't a number fails in the same
+     * way as Integer.parseInt() every time.
+     */
+    private int getInt(String key, String defaultValue) {
+        Snapshot current = snapshot;
+        Integer ret = current.ints.get(key);
+        if (ret != null) {
+            return ret;
+        }
+        String value = current.values.get(key);
+        return Integer.parseInt(value == null ? defaultValue : value);
+    }
+
+    private double getDouble(String key) {
+        return getDouble(key, null);
+    }
+
+    /**
+     * Get a property as a double. A value that isn't a number fails in the
+     * same way as Double.parseDouble() every time.
+     */
+    private double getDouble(String key, String defaultValue) {
+        Snapshot current = snapshot;
+        Double ret = current.doubles.get(key);
+        if (ret != null) {
+            return ret;
+        }
+        String value = current.values.get(key);
+        return Double.parseDouble(value == null ? defaultValue : value);
+    }
+
+    private boolean getBoolean(String key) {
+        return getBoolean(key, null);
+    }
+
+    private boolean getBoolean(String key, String defaultValue) {
+        Boolean ret = snapshot.booleans.get(key);
+        if (ret != null) {
+            return ret;
+        }
+        return Boolean.parseBoolean(defaultValue);
+    }
+
+    /**
+     * An immutable copy of the properties, along with every value that
+     * parses as a number or a boolean already parsed.
+     */
+    private static final class Snapshot {
+
+        private final Map<String, String> values;
+        private final Map<String, Integer> ints = new HashMap<>();
+        private final Map<String, Double> doubles = new HashMap<>();
+        private final Map<String, Boolean> booleans = new HashMap<>();
+
+        Snapshot(Map<String, String> values) {
+            this.values = Collections.unmodifiableMap(values);
+            for (Map.Entry<String, String> entry : values.entrySet()) {
+                String value = entry.getValue();
+                booleans.put(entry.getKey(), Boolean.parseBoolean(value));
+                if (!isNumeric(value)) {
+                    continue;
+                }
+                try {
+                    ints.put(entry.getKey(), Integer.parseInt(value));
+                } catch (NumberFormatException ex) {
+                    //Not an int, so left for getInt() to fail on
+                }
+                try {
+                    doubles.put(entry.getKey(), Double.parseDouble(value));
+                } catch (NumberFormatException ex) {
+                    //Not a double, so left for getDouble() to fail on
+                }
+            }
+        }
+
+        /**
+         * Check whether a value could be a number, so most values (colours,
+         * fonts, paths) are skipped without throwing an exception.
+         */
+        private static boolean isNumeric(String value) {
+            String trimmed = value.trim();
+            if (trimmed.isEmpty()) {
+                return false;
+            }
+            char c = trimmed.charAt(0);
+            return (c >= '0' && c <= '9') || c == '-' || c == '+' || c == '.';
+        }
     }
 
     /**
@@ -69,13 +286,39 @@ public final class QueleaProperties extends Properties {
     }
 
     /**
-     * Save these properties to the file.
+     * Save these properties to the file in the background, once any further
+     * changes in the next moment have been made.
      */
     private void write() {
-        try (FileWriter writer = new FileWriter(getPropFile())) {
-            store(writer, "Auto save");
+        if (writePending.compareAndSet(false, true)) {
+            writer.schedule(this::flush, WRITE_DELAY_MILLIS, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * Save these properties to the file now if there are changes waiting to
+     * be written. The file is written alongside and then moved into place, so
+     * it's never left half written; if that fails the file is left as it was
+     * and the partly written copy is deleted.
+     */
+    public void flush() {
+        if (!writePending.getAndSet(false)) {
+            return;
+        }
+        File file = getPropFile();
+        File temp = new File(file.getParentFile(), file.getName() + ".tmp");
+        try {
+            try (FileWriter fileWriter = new FileWriter(temp)) {
+                store(fileWriter, "Auto save");
+            }
+            try {
+                Files.move(temp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException ex) {
+                Files.move(temp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            }
         } catch (IOException ex) {
 //            LOGGER.log(Level.WARNING, "Couldn't store properties", ex);
+            temp.delete();
         }
     }
 
@@ -99,11 +342,11 @@ public final class QueleaProperties extends Properties {
     }
     
     public boolean isDictionaryEnabled() {
-        return Boolean.parseBoolean(getProperty("enable.dict", "false"));
+        return getBoolean("enable.dict", "false");
     }
     
     public boolean isYoutubeEnabled() {
-        return Boolean.parseBoolean(getProperty("enable.youtube", "false"));
+        return getBoolean("enable.youtube", "false");
     }
 
     /**
@@ -152,7 +395,7 @@ public final class QueleaProperties extends Properties {
      */
     public boolean getDisplayVideoTab() {
         try {
-            return Boolean.parseBoolean(getProperty("video.tab", "false"));
+            return getBoolean("video.tab", "false");
         } catch (Exception ex) {
             return true;
         }
@@ -204,7 +447,7 @@ public final class QueleaProperties extends Properties {
      * set.
      */
     public double getMainDivPos() {
-        return Double.parseDouble(getProperty("main.divpos", "-1"));
+        return getDouble("main.divpos", "-1");
     }
 
     /**
@@ -214,7 +457,7 @@ public final class QueleaProperties extends Properties {
      * if none is set.
      */
     public double getLibraryDivPos() {
-        return Double.parseDouble(getProperty("library.divpos", "-1"));
+        return getDouble("library.divpos", "-1");
     }
 
     /**
@@ -224,7 +467,7 @@ public final class QueleaProperties extends Properties {
      * none is set.
      */
     public double getPrevLiveDivPos() {
-        return Double.parseDouble(getProperty("prelive.divpos", "-1"));
+        return getDouble("prelive.divpos", "-1");
     }
 
     /**
@@ -233,7 +476,7 @@ public final class QueleaProperties extends Properties {
      * @return the canvas divider position property, or -1 if none is set.
      */
     public double getCanvasDivPos() {
-        return Double.parseDouble(getProperty("canvas.divpos", "-1"));
+        return getDouble("canvas.divpos", "-1");
     }
 
     /**
@@ -317,7 +560,7 @@ public final class QueleaProperties extends Properties {
      * @return true if the uniform font size should be used, false otherwise.
      */
     public boolean getUseUniformFontSize() {
-        return Boolean.parseBoolean(getProperty("uniform.font.size", "true"));
+        return getBoolean("uniform.font.size", "true");
     }
 
     /**
@@ -337,7 +580,7 @@ public final class QueleaProperties extends Properties {
      * @return true if we should show verse numbers, false otherwise.
      */
     public boolean getShowVerseNumbers() {
-        return Boolean.parseBoolean(getProperty("show.verse.numbers", "true"));
+        return getBoolean("show.verse.numbers", "true");
     }
 
     /**
@@ -395,7 +638,7 @@ public final class QueleaProperties extends Properties {
      * @return the speed at which to display the notices.
      */
     public double getNoticeSpeed() {
-        return Double.parseDouble(getProperty("notice.speed", "10"));
+        return getDouble("notice.speed", "10");
     }
 
     /**
@@ -469,7 +712,7 @@ public final class QueleaProperties extends Properties {
      * @return true if should embed, false otherwise
      */
     public boolean getEmbedMediaInScheduleFile() {
-        boolean ret = Boolean.parseBoolean(getProperty("schedule.embed.media", "true"));
+        boolean ret = getBoolean("schedule.embed.media", "true");
         return ret;
     }
 
@@ -517,7 +760,7 @@ public final class QueleaProperties extends Properties {
      * @return true if auto play is enabled, false otherwise.
      */
     public boolean getAutoPlayVideo() {
-        return Boolean.parseBoolean(getProperty("autoplay.vid", "false"));
+        return getBoolean("autoplay.vid", "false");
     }
 
     /**
@@ -536,7 +779,7 @@ public final class QueleaProperties extends Properties {
      * @return true if should use java fx for VLC Rendering, false otherwise
      */
     public boolean getUseJavaFXforVLCRendering() {
-        return Boolean.parseBoolean(getProperty("use.vlc.javafx.rendering", "false"));
+        return getBoolean("use.vlc.javafx.rendering", "false");
     }
 
     /**
@@ -555,7 +798,7 @@ public final class QueleaProperties extends Properties {
      * @return the font size at which to display the notices.
      */
     public double getNoticeFontSize() {
-        return Double.parseDouble(getProperty("notice.font.size", "50"));
+        return getDouble("notice.font.size", "50");
     }
 
     /**
@@ -573,7 +816,7 @@ public final class QueleaProperties extends Properties {
      * @return true if we should translate automatically, false otherwise.
      */
     public boolean getAutoTranslate() {
-        return Boolean.parseBoolean(getProperty("auto.translate", "true"));
+        return getBoolean("auto.translate", "true");
     }
 
     /**
@@ -591,7 +834,7 @@ public final class QueleaProperties extends Properties {
      * @return the maximum font size used by text displayables.
      */
     public double getMaxFontSize() {
-        return Double.parseDouble(getProperty("max.font.size", "1000"));
+        return getDouble("max.font.size", "1000");
     }
 
     /**
@@ -609,7 +852,7 @@ public final class QueleaProperties extends Properties {
      * @return the additional line spacing.
      */
     public double getAdditionalLineSpacing() {
-        return Double.parseDouble(getProperty("additional.line.spacing", "10"));
+        return getDouble("additional.line.spacing", "10");
     }
 
     /**
@@ -627,7 +870,7 @@ public final class QueleaProperties extends Properties {
      * @return the thumbnail size.
      */
     public int getThumbnailSize() {
-        return Integer.parseInt(getProperty("thumbnail.size", "200"));
+        return getInt("thumbnail.size", "200");
     }
 
     /**
@@ -647,7 +890,7 @@ public final class QueleaProperties extends Properties {
      * @return true if it should be cleared, false otherwise.
      */
     public boolean getClearLiveOnRemove() {
-        return Boolean.parseBoolean(getProperty("clear.live.on.remove", "true"));
+        return getBoolean("clear.live.on.remove", "true");
     }
 
     /**
@@ -707,7 +950,7 @@ public final class QueleaProperties extends Properties {
      * @return the number of the next song.
      */
     public int getNextKingswaySong() {
-        return Integer.parseInt(getProperty("next.kingsway.song", "1"));
+        return getInt("next.kingsway.song", "1");
     }
 
     /**
@@ -721,7 +964,7 @@ public final class QueleaProperties extends Properties {
     }
 
     public int getTranslationFontSizeOffset() {
-        return Integer.parseInt(getProperty("translation.font.size.offset", "3"));
+        return getInt("translation.font.size.offset", "3");
     }
 
     /**
@@ -768,7 +1011,7 @@ public final class QueleaProperties extends Properties {
      * @return true if they should be displayed, false otherwise.
      */
     public boolean getShowChords() {
-        return Boolean.parseBoolean(getProperty("stage.show.chords", "true"));
+        return getBoolean("stage.show.chords", "true");
     }
 
     /**
@@ -789,7 +1032,7 @@ public final class QueleaProperties extends Properties {
      * @return true if we should phone home, false otherwise.
      */
     public boolean getPhoneHome() {
-        return Boolean.parseBoolean(getProperty("phonehome", "true"));
+        return getBoolean("phonehome", "true");
     }
 
     /**
@@ -828,6 +1071,33 @@ public final class QueleaProperties extends Properties {
         return new File(getQueleaUserHome(), "vid");
     }
     
+    /**
+     * Get the directory used for storing the persistent song search index.
+     * <p>
+     * @return the song index directory
+     */
+    public File getSongIndexDir() {
+        return new File(getQueleaUserHome(), "songindex");
+    }
+
+    /**
+     * Get the directory used for storing the persistent bible search index.
+     * <p>
+     * @return the bible index directory
+     */
+    public File getBibleIndexDir() {
+        return new File(getQueleaUserHome(), "bibleindex");
+    }
+
+    /**
+     * Get the directory used for storing the parsed bible cache.
+     * <p>
+     * @return the bible cache directory
+     */
+    public File getBibleCacheDir() {
+        return new File(getQueleaUserHome(), "biblecache");
+    }
+
     /**
      * Get the directory used for storing temporary recordings.
      * <p>
@@ -862,7 +1132,7 @@ public final class QueleaProperties extends Properties {
      * @return the control screen number.
      */
     public int getControlScreen() {
-        return Integer.parseInt(getProperty("control.screen", "0"));
+        return getInt("control.screen", "0");
     }
 
     /**
@@ -881,7 +1151,7 @@ public final class QueleaProperties extends Properties {
      * @return true if one line mode should be enabled, false otherwise.
      */
     public boolean getOneLineMode() {
-        return Boolean.parseBoolean(getProperty("one.line.mode", "false"));
+        return getBoolean("one.line.mode", "false");
     }
 
     /**
@@ -900,7 +1170,7 @@ public final class QueleaProperties extends Properties {
      * @return true if text shadows are enabled, false otherwise.
      */
     public boolean getTextShadow() {
-        return Boolean.parseBoolean(getProperty("text.shadow", "false"));
+        return getBoolean("text.shadow", "false");
     }
 
     /**
@@ -920,7 +1190,7 @@ public final class QueleaProperties extends Properties {
      * @return the projector screen number.
      */
     public int getProjectorScreen() {
-        return Integer.parseInt(getProperty("projector.screen", "1"));
+        return getInt("projector.screen", "1");
     }
 
     /**
@@ -940,7 +1210,7 @@ public final class QueleaProperties extends Properties {
      * @return true if the projector screen should be moved, false otherwise.
      */
     public boolean getUseAutoExtend() {
-        return Boolean.parseBoolean(getProperty("use.auto.extend", "false"));
+        return getBoolean("use.auto.extend", "false");
     }
 
     /**
@@ -962,7 +1232,7 @@ public final class QueleaProperties extends Properties {
      * projected text.
      */
     public int getMaxChars() {
-        return Integer.parseInt(getProperty("max.chars", "30"));
+        return getInt("max.chars", "30");
     }
 
     /**
@@ -1038,7 +1308,7 @@ public final class QueleaProperties extends Properties {
      * @return the stage screen number.
      */
     public int getStageScreen() {
-        return Integer.parseInt(getProperty("stage.screen", "-1"));
+        return getInt("stage.screen", "-1");
     }
 
     /**
@@ -1115,7 +1385,7 @@ public final class QueleaProperties extends Properties {
      * @return the minimum line count.
      */
     public int getMinLines() {
-        return Integer.parseInt(getProperty("min.lines", "10"));
+        return getInt("min.lines", "10");
     }
 
     /**
@@ -1135,7 +1405,7 @@ public final class QueleaProperties extends Properties {
      * @return true if the warning should be shown, false otherwise.
      */
     public boolean showSingleMonitorWarning() {
-        return Boolean.parseBoolean(getProperty("single.monitor.warning", "true"));
+        return getBoolean("single.monitor.warning", "true");
     }
 
     /**
@@ -1200,7 +1470,7 @@ public final class QueleaProperties extends Properties {
      * @return true if we should check for updates, false otherwise.
      */
     public boolean checkUpdate() {
-        return Boolean.parseBoolean(getProperty("check.update", "true"));
+        return getBoolean("check.update", "true");
     }
 
     /**
@@ -1220,7 +1490,7 @@ public final class QueleaProperties extends Properties {
      * @return true if it should be a capital, false otherwise.
      */
     public boolean checkCapitalFirst() {
-        return Boolean.parseBoolean(getProperty("capital.first", "false"));
+        return getBoolean("capital.first", "false");
     }
 
     /**
@@ -1239,7 +1509,7 @@ public final class QueleaProperties extends Properties {
      * @return true if it should be a displayed, false otherwise.
      */
     public boolean checkDisplaySongInfoText() {
-        return Boolean.parseBoolean(getProperty("display.songinfotext", "true"));
+        return getBoolean("display.songinfotext", "true");
     }
 
     /**
@@ -1378,7 +1648,7 @@ public final class QueleaProperties extends Properties {
      * @return the outline thickness in pixels.
      */
     public int getOutlineThickness() {
-        return Integer.parseInt(getProperty("outline.thickness", "2"));
+        return getInt("outline.thickness", "2");
     }
 
     /**
@@ -1397,7 +1667,7 @@ public final class QueleaProperties extends Properties {
      * @return the notice box height.
      */
     public int getNoticeBoxHeight() {
-        return Integer.parseInt(getProperty("notice.box.height", "40"));
+        return getInt("notice.box.height", "40");
     }
 
     /**
@@ -1416,7 +1686,7 @@ public final class QueleaProperties extends Properties {
      * @return the notice box speed.
      */
     public int getNoticeBoxSpeed() {
-        return Integer.parseInt(getProperty("notice.box.speed", "8"));
+        return getInt("notice.box.speed", "8");
     }
 
     /**
@@ -1451,7 +1721,7 @@ public final class QueleaProperties extends Properties {
      * @return true if we should auto-advance, false otherwise.
      */
     public boolean getAdvanceOnLive() {
-        return Boolean.parseBoolean(getProperty("advance.on.live", "false"));
+        return getBoolean("advance.on.live", "false");
     }
 
     /**
@@ -1472,7 +1742,7 @@ public final class QueleaProperties extends Properties {
      * @return true if we should preview, false otherwise.
      */
     public boolean getPreviewOnImageUpdate() {
-        return Boolean.parseBoolean(getProperty("preview.on.image.change", "false"));
+        return getBoolean("preview.on.image.change", "false");
     }
 
     /**
@@ -1493,7 +1763,7 @@ public final class QueleaProperties extends Properties {
      * basic POI images.
      */
     public boolean getUseOO() {
-        return Boolean.parseBoolean(getProperty("use.oo", "false"));
+        return getBoolean("use.oo", "false");
     }
 
     /**
@@ -1533,7 +1803,7 @@ public final class QueleaProperties extends Properties {
      * basic POI images or openoffice.
      */
     public boolean getUsePP() {
-        return Boolean.parseBoolean(getProperty("use.pp", "false"));
+        return getBoolean("use.pp", "false");
     }
 
     /**
@@ -1610,7 +1880,7 @@ public final class QueleaProperties extends Properties {
      * @return true if recordings should be converted, false otherwise.
      */
     public boolean getConvertRecordings() {
-        return Boolean.parseBoolean(getProperty("convert.mp3", "false"));
+        return getBoolean("convert.mp3", "false");
     }
     
     /**
@@ -1632,7 +1902,7 @@ public final class QueleaProperties extends Properties {
      * otherwise.
      */
     public boolean getOOPresOnTop() {
-        return Boolean.parseBoolean(getProperty("oo.ontop", "true"));
+        return getBoolean("oo.ontop", "true");
     }
 
     /**
@@ -1670,7 +1940,7 @@ public final class QueleaProperties extends Properties {
      * @return the port used for mobile lyrics display.
      */
     public int getMobLyricsPort() {
-        return Integer.parseInt(getProperty("mob.lyrics.port", "1111"));
+        return getInt("mob.lyrics.port", "1111");
     }
 
     /**
@@ -1679,7 +1949,7 @@ public final class QueleaProperties extends Properties {
      * @return true if we should, false otherwise.
      */
     public boolean getUseMobLyrics() {
-        return Boolean.parseBoolean(getProperty("use.mob.lyrics", "false"));
+        return getBoolean("use.mob.lyrics", "false");
     }
 
     /**
@@ -1703,7 +1973,7 @@ public final class QueleaProperties extends Properties {
      * @return true if we should, false otherwise.
      */
     public boolean getUseRemoteControl() {
-        return Boolean.parseBoolean(getProperty("use.remote.control", "false"));
+        return getBoolean("use.remote.control", "false");
     }
 
     /**
@@ -1712,7 +1982,7 @@ public final class QueleaProperties extends Properties {
      * @return the port used for mobile lyrics display.
      */
     public int getRemoteControlPort() {
-        return Integer.parseInt(getProperty("remote.control.port", "1112"));
+        return getInt("remote.control.port", "1112");
     }
 
     public void setRemoteControlPort(int port) {
@@ -1748,7 +2018,7 @@ public final class QueleaProperties extends Properties {
     }
 
     public Double getSmallSongTextSize() {
-        return Double.parseDouble(getProperty("small.song.text.size", "0.1"));
+        return getDouble("small.song.text.size", "0.1");
     }
 
     public void setSmallSongTextSize(double size) {
@@ -1775,7 +2045,7 @@ public final class QueleaProperties extends Properties {
     }
 
     public Double getSmallBibleTextSize() {
-        return Double.parseDouble(getProperty("small.bible.text.size", "0.1"));
+        return getDouble("small.bible.text.size", "0.1");
     }
 
     public void setSmallBibleTextSize(double size) {
@@ -1784,7 +2054,7 @@ public final class QueleaProperties extends Properties {
     }
 
     public boolean getSmallSongTextShow() {
-        return Boolean.parseBoolean(getProperty("show.small.song.text", "true"));
+        return getBoolean("show.small.song.text", "true");
     }
 
     public void setSmallSongTextShow(boolean show) {
@@ -1793,7 +2063,7 @@ public final class QueleaProperties extends Properties {
     }
 
     public boolean getSmallBibleTextShow() {
-        return Boolean.parseBoolean(getProperty("show.small.bible.text", "true"));
+        return getBoolean("show.small.bible.text", "true");
     }
 
     public void setSmallBibleTextShow(boolean show) {
@@ -1807,7 +2077,7 @@ public final class QueleaProperties extends Properties {
      * @return number of words or verses (depends on use.max.bible.verses)
      */
     public int getMaxBibleVerses() {
-        return Integer.parseInt(getProperty("max.bible.verses", "5"));
+        return getInt("max.bible.verses", "5");
     }
 
     public void setMaxBibleVerses(int number) {
@@ -1821,7 +2091,7 @@ public final class QueleaProperties extends Properties {
      * @return true if using maximum verses per slide
      */
     public boolean getBibleUsingMaxChars() {
-        return Boolean.parseBoolean(getProperty("use.max.bible.chars", "true"));
+        return getBoolean("use.max.bible.chars", "true");
     }
 
     public void setBibleUsingMaxChars(boolean useChars) {
@@ -1837,7 +2107,7 @@ public final class QueleaProperties extends Properties {
      * text.
      */
     public int getMaxBibleChars() {
-        return Integer.parseInt(getProperty("max.bible.chars", "80"));
+        return getInt("max.bible.chars", "80");
     }
 
     /**
@@ -1927,7 +2197,7 @@ public final class QueleaProperties extends Properties {
     }
 
     public boolean getClearStageWithMain() {
-        return Boolean.parseBoolean(getProperty("clear.stageview.with.main", "true"));
+        return getBoolean("clear.stageview.with.main", "true");
     }
 
     public void setClearStageWithMain(boolean clear) {
@@ -1945,7 +2215,7 @@ public final class QueleaProperties extends Properties {
     }
 
     public boolean getSongOverflow() {
-        return Boolean.parseBoolean(getProperty("song.overflow", "false"));
+        return getBoolean("song.overflow", "false");
     }
 
     public void setSongOverflow(boolean overflow) {
@@ -1954,11 +2224,41 @@ public final class QueleaProperties extends Properties {
     }
 
     public int getAutoDetectPort() {
-        return Integer.parseInt(getProperty("auto.detect.port", "50015"));
+        return getInt("auto.detect.port", "50015");
+    }
+
+    /**
+     * Get the number of threads each of the HTTP servers (mobile lyrics,
+     * remote control and auto detect) handles requests on.
+     * <p>
+     * @return the number of threads per server.
+     */
+    public int getServerThreads() {
+        return getInt("server.threads", "4");
+    }
+
+    /**
+     * Get the number of songs written to the database before each flush when
+     * songs are added in bulk (such as from an import).
+     * <p>
+     * @return the database batch size.
+     */
+    public int getDatabaseBatchSize() {
+        return getInt("database.batch.size", "50");
+    }
+
+    /**
+     * Get the number of songs that are printed to PDF at once when exporting
+     * songs to PDF.
+     * <p>
+     * @return the number of PDF export threads.
+     */
+    public int getPdfExportThreads() {
+        return getInt("pdf.export.threads", Integer.toString(Math.min(4, Runtime.getRuntime().availableProcessors())));
     }
 
     public boolean getUse24HourClock() {
-        return Boolean.parseBoolean(getProperty("use.24h.clock", "true"));
+        return getBoolean("use.24h.clock", "true");
     }
 
     public void setUse24HourClock(boolean s24h) {
@@ -1967,7 +2267,7 @@ public final class QueleaProperties extends Properties {
     }
 
     public boolean getBibleSplitVerses() {
-        return Boolean.parseBoolean(getProperty("split.bible.verses", "false"));
+        return getBoolean("split.bible.verses", "false");
     }
 
     public void setBibleSplitVerses(boolean selected) {
@@ -1976,15 +2276,15 @@ public final class QueleaProperties extends Properties {
     }
 
     public double getLyricWidthBounds() {
-        return Double.parseDouble(getProperty("lyric.width.bound", "0.92"));
+        return getDouble("lyric.width.bound", "0.92");
     }
 
     public double getLyricHeightBounds() {
-        return Double.parseDouble(getProperty("lyric.height.bound", "0.9"));
+        return getDouble("lyric.height.bound", "0.9");
     }
     
     public boolean getDefaultSongDBUpdate() {
-        return Boolean.parseBoolean(getProperty("default.song.db.update", "true"));
+        return getBoolean("default.song.db.update", "true");
     }
     
     public void setDefaultSongDBUpdate(boolean updateInDB) {
@@ -1993,7 +2293,7 @@ public final class QueleaProperties extends Properties {
     }
     
     public int getWebDisplayableRefreshRate() {
-        return Integer.parseInt(getProperty("web.refresh.rate", "500"));
+        return getInt("web.refresh.rate", "500");
     }
     
     public String getWebProxyHost() {
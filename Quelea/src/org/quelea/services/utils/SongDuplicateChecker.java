@@ -17,7 +17,6 @@
  */
 package org.quelea.services.utils;
 
-import org.apache.commons.lang.StringUtils;
 import org.quelea.data.db.SongManager;
 import org.quelea.data.displayable.SongDisplayable;
 
@@ -33,26 +32,16 @@ public class SongDuplicateChecker {
         new SongDuplicateChecker().checkSongs(null);
     }
 
+    /**
+     * Check a whole batch of new songs (such as an import) against the songs
+     * already in the database.
+     *
+     * @param newSongs the new songs to check.
+     * @return an array the same length as newSongs, with true for each song
+     * that is the same or similar to an existing song.
+     */
     public boolean[] checkSongs(SongDisplayable[] newSongs) {
-        final SongDisplayable[] songs = SongManager.get().getSongs();
-        final String[] songLyrics = new String[songs.length];
-        for (int i = 0; i < songLyrics.length; i++) {
-            songLyrics[i] = songs[i].getLyrics(false, false).replaceAll("[^\\p{L}]", "");
-        }
-        boolean[] sameArr = new boolean[newSongs.length];
-        for(int i=0 ; i<newSongs.length ; i++) {
-            //System.out.println(i + " of " + newSongs.length);
-            SongDisplayable newSong = newSongs[i];
-            String newLyrics = newSong.getLyrics(false, false).replaceAll("[^\\p{L}]", "");
-            int distance = new LevenshteinDistance().leastCompare(newLyrics, songLyrics);
-            if(distance<30) {
-                sameArr[i] = true;
-            }
-            else {
-                sameArr[i] = false;
-            }
-        }
-        return sameArr;
+        return SongManager.get().getDuplicateIndex().checkSongs(newSongs);
     }
 
     /**
@@ -64,20 +53,6 @@ public class SongDuplicateChecker {
      * false otherwise.
      */
     public boolean checkSong(SongDisplayable newSong) {
-        for(SongDisplayable databaseSong : SongManager.get().getSongs()) {
-            String databaseLyrics = databaseSong.getLyrics(false, false).replaceAll("[^\\p{L}]", "");
-            String newLyrics = newSong.getLyrics(false, false).replaceAll("[^\\p{L}]", "");
-            int maxDistance;
-            if(newLyrics.length() < databaseLyrics.length()) {
-                maxDistance = newLyrics.length() / 10;
-            }
-            else {
-                maxDistance = databaseLyrics.length() / 10;
-            }
-            if(StringUtils.getLevenshteinDistance(databaseLyrics, newLyrics) <= maxDistance) {
-                return true;
-            }
-        }
-        return false;
+        return SongManager.get().getDuplicateIndex().isDuplicate(newSong);
     }
 }
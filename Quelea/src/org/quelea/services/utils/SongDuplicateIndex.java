@@ -0,0 +1,362 @@
+/*
+ * This file is part of Quelea, free projection software for churches.
+ *
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.quelea.services.utils;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import org.quelea.data.displayable.SongDisplayable;
+
+/**
+ * An index of song lyrics used to quickly find songs that are likely to be
+ * duplicates of a given song.
+ * <p>
+ * Lyrics are normalised (everything other than letters is stripped), split
+ * into overlapping character shingles and summarised as a MinHash signature.
+ * The signatures are cut into bands, and each band is bucketed, so songs with
+ * similar lyrics are very likely to share at least one bucket (locality
+ * sensitive hashing.) Candidates found this way are then verified with an
+ * edit distance check, so only a handful of songs need the expensive
+ * comparison rather than the whole library.
+ * <p>
+ * The index is built lazily the first time it's queried, since it's only
+ * needed when importing songs.
+ *
+ * @author Michael
+ */
+public class SongDuplicateIndex {
+
+    private static final Logger LOGGER = LoggerUtils.getLogger();
+    private static final Pattern NON_LETTER = Pattern.compile("[^\\p{L}]");
+    private static final int SHINGLE_LENGTH = 5;
+    private static final int BANDS = 32;
+    private static final int ROWS = 2;
+    private static final int SIGNATURE_LENGTH = BANDS * ROWS;
+    private static final int BIN_BITS = 6; //2^6 = SIGNATURE_LENGTH bins
+    /**
+     * Candidates whose estimated shingle similarity is below this aren't
+     * worth verifying - a song within the edit distance threshold will be
+     * well above it.
+     */
+    private static final double MIN_SIMILARITY = 0.2;
+    private final Map<Long, Entry> entries;
+    private final List<Map<Long, List<Entry>>> buckets;
+    private Map<Long, SongDisplayable> pending;
+
+    /**
+     * Create a new, empty duplicate index.
+     */
+    public SongDuplicateIndex() {
+        entries = new HashMap<>();
+        buckets = new ArrayList<>();
+        for (int i = 0; i < BANDS; i++) {
+            buckets.add(new HashMap<>());
+        }
+        pending = new HashMap<>();
+    }
+
+    /**
+     * Set the songs in this index, which should be the full contents of the
+     * database. If the index has already been built, only songs whose lyrics
+     * have changed are re-indexed.
+     *
+     * @param songs every song in the database.
+     */
+    public synchronized void setSongs(Collection<SongDisplayable> songs) {
+        if (pending != null) {
+            pending.clear();
+            for (SongDisplayable song : songs) {
+                pending.put(song.getID(), song);
+            }
+            return;
+        }
+        Set<Long> ids = Collections.newSetFromMap(new HashMap<>());
+        for (SongDisplayable song : songs) {
+            ids.add(song.getID());
+            Entry entry = entries.get(song.getID());
+            if (entry == null || !entry.isFor(song)) {
+                add(song);
+            }
+        }
+        for (Long id : new ArrayList<>(entries.keySet())) {
+            if (!ids.contains(id)) {
+                removeEntry(id);
+            }
+        }
+    }
+
+    /**
+     * Add a song to this index, replacing any existing entry for the same
+     * song.
+     *
+     * @param song the song to add.
+     */
+    public synchronized void add(SongDisplayable song) {
+        if (pending != null) {
+            pending.put(song.getID(), song);
+            return;
+        }
+        removeEntry(song.getID());
+        addEntry(new Entry(song));
+    }
+
+    /**
+     * Remove a song from this index.
+     *
+     * @param song the song to remove.
+     */
+    public synchronized void remove(SongDisplayable song) {
+        if (pending != null) {
+            pending.remove(song.getID());
+            return;
+        }
+        removeEntry(song.getID());
+    }
+
+    /**
+     * Check whether the given song is the same as, or similar to, a song in
+     * this index.
+     *
+     * @param song the song to check.
+     * @return true if the song is a likely duplicate, false otherwise.
+     */
+    public boolean isDuplicate(SongDisplayable song) {
+        Entry probe = new Entry(song);
+        for (Entry candidate : getCandidates(probe)) {
+            if (isSimilar(probe.lyrics, candidate.lyrics)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Check a whole batch of songs (such as an import) against this index.
+     * The songs are checked in parallel.
+     *
+     * @param songs the songs to check.
+     * @return an array the same length as songs, with true for each song that
+     * is a likely duplicate.
+     */
+    public boolean[] checkSongs(SongDisplayable[] songs) {
+        build();
+        final boolean[] ret = new boolean[songs.length];
+        IntStream.range(0, songs.length).parallel().forEach((i) -> {
+            ret[i] = isDuplicate(songs[i]);
+        });
+        return ret;
+    }
+
+    /**
+     * Get the indexed songs that share at least one band with the given
+     * entry and whose signatures are similar enough to be worth verifying.
+     *
+     * @param probe the entry to find candidates for.
+     * @return the candidate entries.
+     */
+    private synchronized List<Entry> getCandidates(Entry probe) {
+        build();
+        Set<Entry> found = Collections.newSetFromMap(new IdentityHashMap<>());
+        for (int band = 0; band < BANDS; band++) {
+            List<Entry> bucket = buckets.get(band).get(probe.bandKeys[band]);
+            if (bucket != null) {
+                found.addAll(bucket);
+            }
+        }
+        List<Entry> ret = new ArrayList<>();
+        for (Entry entry : found) {
+            if (probe.estimateSimilarity(entry) >= MIN_SIMILARITY || probe.lyrics.equals(entry.lyrics)) {
+                ret.add(entry);
+            }
+        }
+        return ret;
+    }
+
+    /**
+     * Build the index from the pending songs if it hasn't been built already.
+     */
+    private synchronized void build() {
+        if (pending == null) {
+            return;
+        }
+        LOGGER.log(Level.INFO, "Building duplicate index for {0} songs", pending.size());
+        List<Entry> built = pending.values().parallelStream()
+                .map(Entry::new)
+                .collect(Collectors.toList());
+        for (Entry entry : built) {
+            addEntry(entry);
+        }
+        pending = null;
+        LOGGER.log(Level.INFO, "Built duplicate index");
+    }
+
+    private void addEntry(Entry entry) {
+        entries.put(entry.id, entry);
+        for (int band = 0; band < BANDS; band++) {
+            buckets.get(band).computeIfAbsent(entry.bandKeys[band], (k) -> new ArrayList<>(1)).add(entry);
+        }
+    }
+
+    private void removeEntry(long id) {
+        Entry entry = entries.remove(id);
+        if (entry == null) {
+            return;
+        }
+        for (int band = 0; band < BANDS; band++) {
+            List<Entry> bucket = buckets.get(band).get(entry.bandKeys[band]);
+            if (bucket != null) {
+                bucket.remove(entry);
+                if (bucket.isEmpty()) {
+                    buckets.get(band).remove(entry.bandKeys[band]);
+                }
+            }
+        }
+    }
+
+    /**
+     * Determine whether two sets of normalised lyrics are close enough to be
+     * considered the same song - that is, within an edit distance of a tenth
+     * of the length of the shorter one.
+     *
+     * @param lyrics1 the first normalised lyrics.
+     * @param lyrics2 the second normalised lyrics.
+     * @return true if they're similar, false otherwise.
+     */
+    static boolean isSimilar(String lyrics1, String lyrics2) {
+        int maxDistance = Math.min(lyrics1.length(), lyrics2.length()) / 10;
+        if (Math.abs(lyrics1.length() - lyrics2.length()) > maxDistance) {
+            return false;
+        }
+        if (lyrics1.equals(lyrics2)) {
+            return true;
+        }
+        return LevenshteinDistance.distance(lyrics1, lyrics2, maxDistance) >= 0;
+    }
+
+    /**
+     * A single song in the index.
+     */
+    private static final class Entry {
+
+        private final long id;
+        private final int rawHash;
+        private final String lyrics;
+        private final int[] signature;
+        private final long[] bandKeys;
+
+        Entry(SongDisplayable song) {
+            id = song.getID();
+            String raw = song.getLyrics(false, false);
+            rawHash = raw.hashCode();
+            lyrics = NON_LETTER.matcher(raw).replaceAll("");
+            signature = createSignature(lyrics.toLowerCase());
+            bandKeys = new long[BANDS];
+            for (int band = 0; band < BANDS; band++) {
+                long key = band;
+                for (int row = 0; row < ROWS; row++) {
+                    key = key * 0x9E3779B97F4A7C15L + signature[band * ROWS + row];
+                }
+                bandKeys[band] = key;
+            }
+        }
+
+        /**
+         * Determine whether this entry was built from the current lyrics of
+         * the given song.
+         */
+        boolean isFor(SongDisplayable song) {
+            return rawHash == song.getLyrics(false, false).hashCode();
+        }
+
+        /**
+         * Estimate the shingle (Jaccard) similarity between this entry and
+         * another from the fraction of signature values they share.
+         */
+        double estimateSimilarity(Entry other) {
+            int same = 0;
+            for (int i = 0; i < SIGNATURE_LENGTH; i++) {
+                if (signature[i] == other.signature[i]) {
+                    same++;
+                }
+            }
+            return (double) same / SIGNATURE_LENGTH;
+        }
+
+        /**
+         * Create a MinHash signature for the given text using one permutation
+         * hashing - each shingle is hashed once, the top bits of the hash pick
+         * a bin, and each bin keeps the minimum of the remaining bits. Empty
+         * bins borrow (and offset) the value of the next non-empty bin so
+         * short lyrics still get a full signature.
+         */
+        private static int[] createSignature(String text) {
+            int[] sig = new int[SIGNATURE_LENGTH];
+            boolean[] filled = new boolean[SIGNATURE_LENGTH];
+            int shingles = Math.max(1, text.length() - SHINGLE_LENGTH + 1);
+            for (int start = 0; start < shingles; start++) {
+                int end = Math.min(text.length(), start + SHINGLE_LENGTH);
+                int h = 0;
+                for (int i = start; i < end; i++) {
+                    h = 31 * h + text.charAt(i);
+                }
+                h = mix(h);
+                int bin = h >>> (32 - BIN_BITS);
+                int value = h & ((1 << (32 - BIN_BITS)) - 1);
+                if (!filled[bin] || value < sig[bin]) {
+                    sig[bin] = value;
+                    filled[bin] = true;
+                }
+            }
+            for (int bin = 0; bin < SIGNATURE_LENGTH; bin++) {
+                if (!filled[bin]) {
+                    for (int offset = 1; offset < SIGNATURE_LENGTH; offset++) {
+                        int next = (bin + offset) % SIGNATURE_LENGTH;
+                        if (filled[next]) {
+                            sig[bin] = sig[next] + offset * (1 << (32 - BIN_BITS));
+                            break;
+                        }
+                    }
+                }
+            }
+            return sig;
+        }
+
+        /**
+         * Scramble the bits of a hash (the murmur3 finaliser) so the top bits
+         * are evenly distributed.
+         */
+        private static int mix(int h) {
+            h ^= h >>> 16;
+            h *= 0x85ebca6b;
+            h ^= h >>> 13;
+            h *= 0xc2b2ae35;
+            h ^= h >>> 16;
+            return h;
+        }
+    }
+}
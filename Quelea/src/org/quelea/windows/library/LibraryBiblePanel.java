@@ -279,12 +279,11 @@ public class LibraryBiblePanel extends VBox implements BibleChangeListener {
             BibleBook book = bookSelector.selectionModelProperty().get().getSelectedItem();
             if (book != null
                     && book.getChapter(cvp.getFromChapter()) != null
-                    && book.getChapter(cvp.getToChapter()) != null
-                    && book.getChapter(cvp.getFromChapter()).getVerses() != null) {
+                    && book.getChapter(cvp.getToChapter()) != null) {
 
                 getAddToSchedule().setDisable(false);
-                int toVerse = book.getChapter(cvp.getFromChapter()).getVerses().length;
-                if ((cvp.getFromChapter() == cvp.getToChapter()) && cvp.getToVerse() >= 0 && cvp.getToVerse() < book.getChapter(cvp.getFromChapter()).getVerses().length) {
+                int toVerse = book.getChapter(cvp.getFromChapter()).getVerseCount();
+                if ((cvp.getFromChapter() == cvp.getToChapter()) && cvp.getToVerse() >= 0 && cvp.getToVerse() < book.getChapter(cvp.getFromChapter()).getVerseCount()) {
                     toVerse = cvp.getToVerse();
                 }
 
@@ -338,12 +337,9 @@ public class LibraryBiblePanel extends VBox implements BibleChangeListener {
                     }
                 }
                 if (cvp.getFromChapter() != cvp.getToChapter()) {
-                    for (int v = 0; v <= cvp.getToVerse(); v++) {
-                        BibleVerse verse = book.getChapter(cvp.getToChapter()).getVerse(v);
-                        if (verse != null) {
-                            previewText.append(verse.getText()).append(' ');
-                            verses.add(verse);
-                        }
+                    for (BibleVerse verse : book.getChapter(cvp.getToChapter()).getVerses(0, cvp.getToVerse())) {
+                        previewText.append(verse.getText()).append(' ');
+                        verses.add(verse);
                     }
                 }
 
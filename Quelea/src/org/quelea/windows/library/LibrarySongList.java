@@ -47,7 +47,8 @@ import javafx.util.Callback;
 import javafx.util.StringConverter;
 import org.quelea.data.db.SongManager;
 import org.quelea.data.displayable.SongDisplayable;
-import org.quelea.services.lucene.SongSearchIndex;
+import org.quelea.services.lucene.SearchIndex.FilterType;
+import org.quelea.services.lucene.SongSearchResult;
 import org.quelea.services.utils.LoggerUtils;
 import org.quelea.services.utils.QueleaProperties;
 import org.quelea.windows.main.QueleaApp;
@@ -183,37 +184,18 @@ public class LibrarySongList extends StackPane {
                 songs.addAll(m);
                 LOGGER.log(Level.INFO, "{0} songs in list", songs.size());
             } else {
-                TreeSet<SongDisplayable> m = new TreeSet<>();
-                LOGGER.log(Level.INFO, "Filtering songs by title");
-                SongDisplayable[] titleSongs = SongManager.get().getIndex().filter(search, SongSearchIndex.FilterType.TITLE);
-                LOGGER.log(Level.INFO, "Filtered songs by title");
-                for (SongDisplayable song : titleSongs) {
-                    song.setLastSearch(search);
-                    m.add(song);
-                }
-                songs.addAll(m);
-                m.clear();
-                LOGGER.log(Level.INFO, "{0} songs in list", songs.size());
-
-                LOGGER.log(Level.INFO, "Filtering songs by lyrics");
-                SongDisplayable[] lyricSongs = SongManager.get().getIndex().filter(search, SongSearchIndex.FilterType.BODY);
-                LOGGER.log(Level.INFO, "Filtered songs by lyrics");
-                for (SongDisplayable song : lyricSongs) {
-                    song.setLastSearch(null);
-                    m.add(song);
-                }
-                songs.addAll(m);
-                m.clear();
-                LOGGER.log(Level.INFO, "{0} songs in list", songs.size());
-
-                LOGGER.log(Level.INFO, "Filtering songs by author");
-                SongDisplayable[] authorSongs = SongManager.get().getIndex().filter(search, SongSearchIndex.FilterType.AUTHOR);
-                LOGGER.log(Level.INFO, "Filtered songs by author");
-                for (SongDisplayable song : authorSongs) {
-                    m.add(song);
+                LOGGER.log(Level.INFO, "Searching songs");
+                //Results are already grouped by match type and sorted within each group
+                for (SongSearchResult result : SongManager.get().getIndex().search(search)) {
+                    SongDisplayable song = result.getSong();
+                    if (result.getType() == FilterType.TITLE) {
+                        song.setLastSearch(search);
+                    } else if (result.getType() == FilterType.BODY) {
+                        song.setLastSearch(null);
+                    }
+                    songs.add(song);
                 }
-                songs.addAll(m);
-                m.clear();
+                LOGGER.log(Level.INFO, "Searched songs");
                 LOGGER.log(Level.INFO, "{0} songs in list", songs.size());
             }
 
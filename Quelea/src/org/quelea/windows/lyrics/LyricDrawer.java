@@ -18,7 +18,6 @@
 package org.quelea.windows.lyrics;
 
 import com.sun.javafx.tk.FontMetrics;
-import com.sun.javafx.tk.Toolkit;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.HashMap;
@@ -55,6 +54,7 @@ import org.quelea.services.utils.LineTypeChecker.Type;
 import org.quelea.services.utils.LyricLine;
 import org.quelea.services.utils.QueleaProperties;
 import org.quelea.services.utils.Utils;
+import org.quelea.windows.main.FontFitter;
 import org.quelea.windows.main.WordDrawer;
 import org.quelea.windows.main.widgets.DisplayPositionSelector;
 import org.quelea.windows.multimedia.VLCWindow;
@@ -159,9 +159,9 @@ public class LyricDrawer extends WordDrawer {
         }
         smallTextFont = Font.font("Arial", FontWeight.BOLD, FontPosture.REGULAR, smallFontSize);
 
-        FontMetrics metrics = Toolkit.getToolkit().getFontLoader().getFontMetrics(font);
-        FontMetrics translateMetrics = Toolkit.getToolkit().getFontLoader().getFontMetrics(translateFont);
-        FontMetrics smallTextMetrics = Toolkit.getToolkit().getFontLoader().getFontMetrics(smallTextFont);
+        FontMetrics metrics = FontFitter.getMetrics(font);
+        FontMetrics translateMetrics = FontFitter.getMetrics(translateFont);
+        FontMetrics smallTextMetrics = FontFitter.getMetrics(smallTextFont);
         final Group newTextGroup = new Group();
         shadow.setOffsetX(metrics.getLineHeight() * shadow.getOffsetX() * 0.003);
         shadow.setOffsetY(metrics.getLineHeight() * shadow.getOffsetY() * 0.003);
@@ -241,7 +241,7 @@ public class LyricDrawer extends WordDrawer {
                 t.setFont(font);
             }
 
-            setPositionX(t, loopMetrics, line.getLine(), curDisplayable instanceof BiblePassage);
+            setPositionX(t, line.isTranslateLine() ? translateFont : font, line.getLine(), curDisplayable instanceof BiblePassage);
             t.setLayoutY(y);
 
             Color lineColor;
@@ -321,10 +321,10 @@ public class LyricDrawer extends WordDrawer {
         }
     }
 
-    private void setPositionX(FormattedText t, FontMetrics metrics, String line, boolean biblePassage) {
+    private void setPositionX(FormattedText t, Font font, String line, boolean biblePassage) {
         Utils.checkFXThread();
         String strippedLine = line.replaceAll("\\<\\/?sup\\>", "");
-        double width = metrics.computeStringWidth(strippedLine);
+        double width = FontFitter.getWidth(font, strippedLine);
         double leftOffset = 0;
         double centreOffset = (getCanvas().getWidth() - width) / 2;
         double rightOffset = (getCanvas().getWidth() - width);
@@ -0,0 +1,252 @@
+/*
+ * This file is part of Quelea, free projection software for churches.
+ *
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.quelea.windows.main;
+
+import com.sun.javafx.tk.FontMetrics;
+import com.sun.javafx.tk.Toolkit;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import javafx.scene.text.Font;
+
+/**
+ * Works out the largest font size that fits a block of text into a given
+ * area.
+ * <p>
+ * Font sizes are binary searched (in the same half point steps as before)
+ * rather than stepped down one at a time, and the font metrics for each
+ * face and size, the width of each line and the size picked for each block
+ * of text are all cached, so redrawing the same section on the same size of
+ * canvas doesn't have to measure anything.
+ * <p>
+ * The font's name identifies its family, weight and posture, so metrics are
+ * cached against the name and size.
+ *
+ * @author Michael
+ */
+public final class FontFitter {
+
+    private static final double STEP = 0.5;
+    private static final double MIN_SIZE = 1;
+    private static final Map<MetricsKey, FontMetrics> METRICS = new LruMap<>(256);
+    private static final Map<WidthKey, Double> WIDTHS = new LruMap<>(8192);
+    private static final Map<FitKey, Double> FITS = new LruMap<>(1024);
+
+    private FontFitter() {
+        throw new AssertionError();
+    }
+
+    /**
+     * Get the metrics for the given font.
+     * <p>
+     * @param font the font.
+     * @return the font's metrics.
+     */
+    public static FontMetrics getMetrics(Font font) {
+        return getMetrics(font.getName(), font.getSize());
+    }
+
+    /**
+     * Get the width of a line of text in the given font.
+     * <p>
+     * @param font the font.
+     * @param line the line to measure.
+     * @return the width of the line.
+     */
+    public static double getWidth(Font font, String line) {
+        return getWidth(font.getName(), font.getSize(), line);
+    }
+
+    /**
+     * Pick the largest font size, no bigger than the size of the given font,
+     * that fits the given lines into the width and height provided.
+     * <p>
+     * @param font the font to fit.
+     * @param lines the lines of text, with any format tags already removed.
+     * @param lineSpacing the additional spacing between each line.
+     * @param width the fit width.
+     * @param height the fit height.
+     * @return the font size to use.
+     */
+    public static synchronized double fit(Font font, List<String> lines, double lineSpacing, double width, double height) {
+        FitKey key = new FitKey(font.getName(), font.getSize(), lines, lineSpacing, width, height);
+        Double size = FITS.get(key);
+        if (size == null) {
+            size = search(font.getName(), font.getSize(), lines, lineSpacing, width, height);
+            FITS.put(key, size);
+        }
+        return size;
+    }
+
+    /**
+     * Binary search for the largest size that fits. The longest line is
+     * picked at the starting size, then only that line is measured.
+     */
+    private static double search(String name, double startSize, List<String> lines, double lineSpacing, double width, double height) {
+        String longestLine = null;
+        double longestWidth = -1;
+        for (String line : lines) {
+            double lineWidth = getWidth(name, startSize, line);
+            if (lineWidth > longestWidth) {
+                longestWidth = lineWidth;
+                longestLine = line;
+            }
+        }
+        int steps = (int) Math.floor((startSize - MIN_SIZE) / STEP);
+        if (steps < 0) {
+            return MIN_SIZE;
+        }
+        if (fits(name, startSize, lines.size(), longestLine, lineSpacing, width, height)) {
+            return startSize;
+        }
+        //Invariant: step lo doesn't fit, step hi fits (or is past the end)
+        int lo = 0;
+        int hi = steps + 1;
+        while (hi - lo > 1) {
+            int mid = (lo + hi) >>> 1;
+            if (fits(name, startSize - mid * STEP, lines.size(), longestLine, lineSpacing, width, height)) {
+                hi = mid;
+            }
+            else {
+                lo = mid;
+            }
+        }
+        if (hi > steps) {
+            return MIN_SIZE;
+        }
+        return startSize - hi * STEP;
+    }
+
+    private static boolean fits(String name, double size, int lineCount, String longestLine, double lineSpacing, double width, double height) {
+        double totalHeight = (getMetrics(name, size).getLineHeight() + lineSpacing) * lineCount;
+        if (totalHeight > height) {
+            return false;
+        }
+        return longestLine == null || getWidth(name, size, longestLine) <= width;
+    }
+
+    private static synchronized FontMetrics getMetrics(String name, double size) {
+        MetricsKey key = new MetricsKey(name, size);
+        FontMetrics metrics = METRICS.get(key);
+        if (metrics == null) {
+            metrics = Toolkit.getToolkit().getFontLoader().getFontMetrics(new Font(name, size));
+            METRICS.put(key, metrics);
+        }
+        return metrics;
+    }
+
+    private static synchronized double getWidth(String name, double size, String line) {
+        WidthKey key = new WidthKey(name, size, line);
+        Double width = WIDTHS.get(key);
+        if (width == null) {
+            width = (double) getMetrics(name, size).computeStringWidth(line);
+            WIDTHS.put(key, width);
+        }
+        return width;
+    }
+
+    /**
+     * A map that throws away its least recently used entry once it's full.
+     */
+    private static final class LruMap<K, V> extends LinkedHashMap<K, V> {
+
+        private final int maxSize;
+
+        LruMap(int maxSize) {
+            super(16, 0.75f, true);
+            this.maxSize = maxSize;
+        }
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<K, V> eldest) {
+            return size() > maxSize;
+        }
+    }
+
+    private static class MetricsKey {
+
+        private final String name;
+        private final double size;
+
+        MetricsKey(String name, double size) {
+            this.name = name;
+            this.size = size;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (!(obj instanceof MetricsKey)) {
+                return false;
+            }
+            MetricsKey other = (MetricsKey) obj;
+            return size == other.size && name.equals(other.name);
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * name.hashCode() + Double.hashCode(size);
+        }
+    }
+
+    private static final class WidthKey extends MetricsKey {
+
+        private final String line;
+
+        WidthKey(String name, double size, String line) {
+            super(name, size);
+            this.line = line;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            return obj instanceof WidthKey && super.equals(obj) && line.equals(((WidthKey) obj).line);
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * super.hashCode() + line.hashCode();
+        }
+    }
+
+    private static final class FitKey extends MetricsKey {
+
+        private final String[] lines;
+        private final double[] bounds;
+
+        FitKey(String name, double size, List<String> lines, double lineSpacing, double width, double height) {
+            super(name, size);
+            this.lines = lines.toArray(new String[lines.size()]);
+            this.bounds = new double[]{lineSpacing, width, height};
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (!(obj instanceof FitKey) || !super.equals(obj)) {
+                return false;
+            }
+            FitKey other = (FitKey) obj;
+            return Arrays.equals(bounds, other.bounds) && Arrays.equals(lines, other.lines);
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * (31 * super.hashCode() + Arrays.hashCode(bounds)) + Arrays.hashCode(lines);
+        }
+    }
+}
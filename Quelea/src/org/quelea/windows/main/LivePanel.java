@@ -20,6 +20,8 @@ package org.quelea.windows.main;
 import java.awt.image.BufferedImage;
 import java.io.File;
 import java.util.HashSet;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.Executors;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
@@ -90,6 +92,7 @@ public class LivePanel extends LivePreviewPanel {
     private WritableImage webPreviewImage;
     private ScheduledExecutorService updateWebPreview;
     private Dialog focusDialog;
+    private final List<Runnable> liveChangeListeners = new CopyOnWriteArrayList<>();
 
     /**
      * Create a new live lyrics panel.
@@ -388,6 +391,40 @@ public class LivePanel extends LivePreviewPanel {
                 }
             }
         });
+        getLyricsPanel().getLyricsList().getSelectionModel().selectedItemProperty().addListener((ov, oldVal, newVal) -> fireLiveChange());
+        getLyricsPanel().getLyricsList().itemsProperty().addListener((ov, oldVal, newVal) -> fireLiveChange());
+        for (ToggleButton button : new ToggleButton[]{logo, black, clear, hide}) {
+            button.selectedProperty().addListener((ov, oldVal, newVal) -> fireLiveChange());
+        }
+    }
+
+    /**
+     * Add a listener that's run whenever what's live changes - that is, the
+     * live displayable, the selected slide, or whether the content is being
+     * shown at all. Listeners are run on the platform thread.
+     * <p>
+     * @param listener the listener to add.
+     */
+    public void addLiveChangeListener(Runnable listener) {
+        liveChangeListeners.add(listener);
+    }
+
+    /**
+     * Remove a listener previously added with addLiveChangeListener().
+     * <p>
+     * @param listener the listener to remove.
+     */
+    public void removeLiveChangeListener(Runnable listener) {
+        liveChangeListeners.remove(listener);
+    }
+
+    /**
+     * Notify the live change listeners that what's live has changed.
+     */
+    private void fireLiveChange() {
+        for (Runnable listener : liveChangeListeners) {
+            listener.run();
+        }
     }
 
     /**
@@ -464,6 +501,7 @@ public class LivePanel extends LivePreviewPanel {
             }
         }
         oldD = d;
+        fireLiveChange();
     }
 
     /**
@@ -22,6 +22,7 @@ import java.io.IOException;
 import java.net.URI;
 import java.net.URISyntaxException;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.logging.Level;
@@ -100,35 +101,43 @@ public final class Main extends Application {
         LOGGER.log(Level.INFO, "Started, version {0}", QueleaProperties.VERSION.getVersionString());
 
         ExecutorService backgroundExecutor = Executors.newSingleThreadExecutor();
+        final StartupTasks startup = new StartupTasks();
 
         new Thread() {
             @Override
             public void run() {
                 try {
-                    boolean vlcOk = false;
-                    try {
-                        vlcOk = new NativeDiscovery().discover();
-                    } catch (Throwable ex) {
-                        LOGGER.log(Level.WARNING, "Exception during VLC initialisation", ex);
-                    }
-                    final boolean VLC_OK = vlcOk;
-                    final boolean VLC_INIT;
-                    if (VLC_OK) {
-                        VLC_INIT = VLCWindow.INSTANCE.isInit();
-                    } else {
-                        VLC_INIT = false;
-                    }
-                    new FontInstaller().setupBundledFonts();
-                    new UserFileChecker(QueleaProperties.getQueleaUserHome()).checkUserFiles();
-
-                    if (!new File(QueleaProperties.getQueleaUserHome(), "database_new").exists()
-                            && new File(QueleaProperties.getQueleaUserHome(), "database").exists()) {
-                        SongDisplayable[] songs = LegacyDB.get().getSongs();
-                        LOGGER.log(Level.INFO, "Importing {0} songs from legacy DB", songs.length);
-                        for (SongDisplayable song : songs) {
-                            SongManager.get().addSong(song, false);
+                    final CompletableFuture<boolean[]> vlc = startup.supply("VLC", () -> {
+                        boolean vlcOk = false;
+                        try {
+                            vlcOk = new NativeDiscovery().discover();
+                        } catch (Throwable ex) {
+                            LOGGER.log(Level.WARNING, "Exception during VLC initialisation", ex);
                         }
-                    }
+                        return new boolean[]{vlcOk, vlcOk && VLCWindow.INSTANCE.isInit()};
+                    });
+                    final CompletableFuture<Void> fonts = startup.run("Fonts", () -> new FontInstaller().setupBundledFonts());
+                    final CompletableFuture<Void> userFiles = startup.run("User files", () -> new UserFileChecker(QueleaProperties.getQueleaUserHome()).checkUserFiles());
+                    final CompletableFuture<Boolean> database = startup.supply("Database", () -> {
+                        if (SongManager.get() == null) {
+                            return false;
+                        }
+                        if (!new File(QueleaProperties.getQueleaUserHome(), "database_new").exists()
+                                && new File(QueleaProperties.getQueleaUserHome(), "database").exists()) {
+                            SongDisplayable[] songs = LegacyDB.get().getSongs();
+                            LOGGER.log(Level.INFO, "Importing {0} songs from legacy DB", songs.length);
+                            SongManager.get().addSong(songs, false);
+                        }
+                        SongManager.get().getSongs();
+                        return true;
+                    }, userFiles);
+                    startup.run("Bibles", () -> {
+                        LOGGER.log(Level.INFO, "Loading bibles");
+                        BibleManager.get();
+                        LOGGER.log(Level.INFO, "Loading bibles done");
+                    }, userFiles);
+                    final CompletableFuture<Void> openOffice = startup.run("OpenOffice", OOUtils::attemptInit);
+                    final CompletableFuture<Void> servers = startup.run("Servers", () -> startServers());
 
                     final ObservableList<Screen> monitors = Screen.getScreens();
                     LOGGER.log(Level.INFO, "Number of displays: {0}", monitors.size());
@@ -150,45 +159,6 @@ public final class Main extends Application {
                         stageHidden = false;
                     }
 
-                    if (QueleaProperties.get().getUseMobLyrics()) {
-                        LOGGER.log(Level.INFO, "Starting lyric server on {0}", QueleaProperties.get().getMobLyricsPort());
-                        try {
-                            MobileLyricsServer mls = new MobileLyricsServer(QueleaProperties.get().getMobLyricsPort());
-                            mls.start();
-                            QueleaApp.get().setMobileLyricsServer(mls);
-                        } catch (IOException ex) {
-                            LOGGER.log(Level.INFO, "Couldn't create lyric server", ex);
-                        }
-                    } else {
-                        LOGGER.log(Level.INFO, "Mobile lyrics disabled");
-                    }
-
-                    if (QueleaProperties.get().getUseRemoteControl()) {
-                        LOGGER.log(Level.INFO, "Starting remote control server on {0}", QueleaProperties.get().getRemoteControlPort());
-                        try {
-                            RemoteControlServer rcs = new RemoteControlServer(QueleaProperties.get().getRemoteControlPort());
-                            rcs.start();
-                            QueleaApp.get().setRemoteControlServer(rcs);
-                        } catch (IOException ex) {
-                            LOGGER.log(Level.INFO, "Couldn't create remote control server", ex);
-                        }
-                    } else {
-                        LOGGER.log(Level.INFO, "Remote control disabled");
-                    }
-
-                    if (QueleaProperties.get().getUseMobLyrics() || QueleaProperties.get().getUseRemoteControl()) {
-                        LOGGER.log(Level.INFO, "Starting auto-detection server on {0}", QueleaProperties.get().getAutoDetectPort());
-                        try {
-                            AutoDetectServer ads = new AutoDetectServer(QueleaProperties.get().getAutoDetectPort());
-                            ads.start();
-                            QueleaApp.get().setAutoDetectServer(ads);
-                        } catch (IOException ex) {
-                            LOGGER.log(Level.INFO, "Couldn't create auto-detect server", ex);
-                        }
-                    } else {
-                        LOGGER.log(Level.INFO, "Auto-detect servers disabled");
-                    }
-
                     if (QueleaProperties.get().getWebProxyHost() != null && QueleaProperties.get().getWebProxyPort() != null && QueleaProperties.get().getWebProxyUser() != null && QueleaProperties.get().getWebProxyPassword() != null) {
                         System.setProperty("http.proxyHost", QueleaProperties.get().getWebProxyHost());
                         System.setProperty("http.proxyPort", QueleaProperties.get().getWebProxyPort());
@@ -240,21 +210,15 @@ public final class Main extends Application {
                         QueleaApp.get().setStageWindow(stageWindow);
                     });
 
-                    backgroundExecutor.submit(() -> {
-                        LOGGER.log(Level.INFO, "Loading bibles");
-                        BibleManager.get();
-                        LOGGER.log(Level.INFO, "Loading bibles done");
-                    });
-
-                    if (SongManager.get() == null) {
+                    if (!database.join()) {
                         Platform.runLater(() -> {
                             Dialog.showAndWaitError(LabelGrabber.INSTANCE.getLabel("already.running.title"), LabelGrabber.INSTANCE.getLabel("already.running.error"));
                             System.exit(1);
                         });
                     }
-                    OOUtils.attemptInit();
+                    CompletableFuture.allOf(fonts, openOffice, servers).join();
                     Platform.runLater(() -> {
-                        mainWindow = new MainWindow(true);
+                        startup.time("Main window", () -> mainWindow = new MainWindow(true));
                     });
 
                     backgroundExecutor.submit(() -> {
@@ -305,6 +269,9 @@ public final class Main extends Application {
                         });
                     }
 
+                    final boolean[] vlcStatus = vlc.join();
+                    final boolean VLC_OK = vlcStatus[0];
+                    final boolean VLC_INIT = vlcStatus[1];
                     Platform.runLater(() -> {
                         splashWindow.hide();
                         mainWindow.getMainPanel().setSliderPos();
@@ -351,6 +318,7 @@ public final class Main extends Application {
                             vlcWarningDialog.show();
                         }
                         QueleaApp.get().doneLoading();
+                        startup.reportWhenDone(new File(QueleaProperties.getQueleaUserHome(), "startup.txt"));
                     });
                 } catch (Throwable ex) {
                     LOGGER.log(Level.SEVERE, "Uncaught exception during application start-up", ex);
@@ -365,6 +333,51 @@ public final class Main extends Application {
         }.start();
     }
 
+    /**
+     * Start the mobile lyrics, remote control and auto-detect servers, if
+     * they're enabled.
+     */
+    private void startServers() {
+        if (QueleaProperties.get().getUseMobLyrics()) {
+            LOGGER.log(Level.INFO, "Starting lyric server on {0}", QueleaProperties.get().getMobLyricsPort());
+            try {
+                MobileLyricsServer mls = new MobileLyricsServer(QueleaProperties.get().getMobLyricsPort());
+                mls.start();
+                QueleaApp.get().setMobileLyricsServer(mls);
+            } catch (IOException ex) {
+                LOGGER.log(Level.INFO, "Couldn't create lyric server", ex);
+            }
+        } else {
+            LOGGER.log(Level.INFO, "Mobile lyrics disabled");
+        }
+
+        if (QueleaProperties.get().getUseRemoteControl()) {
+            LOGGER.log(Level.INFO, "Starting remote control server on {0}", QueleaProperties.get().getRemoteControlPort());
+            try {
+                RemoteControlServer rcs = new RemoteControlServer(QueleaProperties.get().getRemoteControlPort());
+                rcs.start();
+                QueleaApp.get().setRemoteControlServer(rcs);
+            } catch (IOException ex) {
+                LOGGER.log(Level.INFO, "Couldn't create remote control server", ex);
+            }
+        } else {
+            LOGGER.log(Level.INFO, "Remote control disabled");
+        }
+
+        if (QueleaProperties.get().getUseMobLyrics() || QueleaProperties.get().getUseRemoteControl()) {
+            LOGGER.log(Level.INFO, "Starting auto-detection server on {0}", QueleaProperties.get().getAutoDetectPort());
+            try {
+                AutoDetectServer ads = new AutoDetectServer(QueleaProperties.get().getAutoDetectPort());
+                ads.start();
+                QueleaApp.get().setAutoDetectServer(ads);
+            } catch (IOException ex) {
+                LOGGER.log(Level.INFO, "Couldn't create auto-detect server", ex);
+            }
+        } else {
+            LOGGER.log(Level.INFO, "Auto-detect servers disabled");
+        }
+    }
+
     /**
      * If it's appropriate, show the warning about only having 1 monitor.
      * <p/>
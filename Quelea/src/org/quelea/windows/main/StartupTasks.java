@@ -0,0 +1,200 @@
+/*
+ * This file is part of Quelea, free projection software for churches.
+ *
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.quelea.windows.main;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import org.quelea.services.utils.LoggerUtils;
+
+/**
+ * The phases of Quelea's start up, run as a small graph of tasks so that
+ * phases that don't depend on each other run at the same time. The wall and
+ * CPU time of each phase is recorded, and once they've all finished a report
+ * is written to the log and to a file, so it's easy to see which phase has
+ * made start up slower.
+ * <p/>
+ * @author Michael
+ */
+final class StartupTasks {
+
+    private static final Logger LOGGER = LoggerUtils.getLogger();
+    private static final ThreadMXBean THREADS = ManagementFactory.getThreadMXBean();
+    private final long started;
+    private final ExecutorService executor;
+    private final List<CompletableFuture<?>> tasks;
+    private final List<Timing> timings;
+
+    /**
+     * Create a new, empty set of start up tasks.
+     */
+    StartupTasks() {
+        started = System.nanoTime();
+        tasks = new ArrayList<>();
+        timings = new ArrayList<>();
+        executor = Executors.newCachedThreadPool(r -> {
+            Thread t = new Thread(r, "Startup");
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    /**
+     * Run a phase once the phases it depends on have finished.
+     * <p/>
+     * @param name the name of the phase, for the report.
+     * @param task the phase.
+     * @param after the phases this one depends on.
+     * @return the phase, completed once it's finished.
+     */
+    CompletableFuture<Void> run(String name, Runnable task, CompletableFuture<?>... after) {
+        return supply(name, () -> {
+            task.run();
+            return null;
+        }, after);
+    }
+
+    /**
+     * Run a phase that produces a result once the phases it depends on have
+     * finished. If any of them fail, this phase fails too without being run.
+     * <p/>
+     * @param name the name of the phase, for the report.
+     * @param task the phase.
+     * @param after the phases this one depends on.
+     * @return the phase, completed with its result once it's finished.
+     */
+    synchronized <T> CompletableFuture<T> supply(String name, Supplier<T> task, CompletableFuture<?>... after) {
+        CompletableFuture<T> ret = CompletableFuture.allOf(after).thenApplyAsync(v -> time(name, task), executor);
+        ret.whenComplete((result, ex) -> {
+            if (ex != null) {
+                LOGGER.log(Level.WARNING, "Start up phase failed: " + name, ex);
+            }
+        });
+        tasks.add(ret);
+        return ret;
+    }
+
+    /**
+     * Run a phase on the current thread (such as one that has to run on the
+     * platform thread), recording its time along with the others.
+     * <p/>
+     * @param name the name of the phase, for the report.
+     * @param task the phase.
+     */
+    void time(String name, Runnable task) {
+        time(name, () -> {
+            task.run();
+            return null;
+        });
+    }
+
+    /**
+     * Write the report once every phase has finished. Doesn't block.
+     * <p/>
+     * @param file the file to write the report to.
+     */
+    synchronized void reportWhenDone(File file) {
+        CompletableFuture.allOf(tasks.toArray(new CompletableFuture<?>[tasks.size()])).whenComplete((v, ex) -> {
+            String report = getReport();
+            LOGGER.log(Level.INFO, "Start up phases:\n{0}", report);
+            try (PrintWriter writer = new PrintWriter(file, StandardCharsets.UTF_8.name())) {
+                writer.print(report);
+            } catch (IOException e) {
+                LOGGER.log(Level.WARNING, "Couldn't write start up report", e);
+            }
+            executor.shutdown();
+        });
+    }
+
+    /**
+     * Get the report of how long each phase took, in the order they started.
+     * <p/>
+     * @return the report, one line per phase.
+     */
+    synchronized String getReport() {
+        List<Timing> sorted = new ArrayList<>(timings);
+        sorted.sort((a, b) -> Long.compare(a.start, b.start));
+        StringBuilder ret = new StringBuilder();
+        long end = 0;
+        for (Timing timing : sorted) {
+            ret.append(String.format("%-16s started at %6dms, took %6dms (%6dms CPU) on %s%s%n",
+                    timing.name, toMillis(timing.start), toMillis(timing.wall),
+                    toMillis(timing.cpu), timing.thread, timing.failed ? ", failed" : ""));
+            end = Math.max(end, timing.start + timing.wall);
+        }
+        ret.append(String.format("%-16s %6dms%n", "Total", toMillis(end)));
+        return ret.toString();
+    }
+
+    private <T> T time(String name, Supplier<T> task) {
+        long start = System.nanoTime();
+        long cpuStart = getCpuTime();
+        boolean failed = true;
+        try {
+            T ret = task.get();
+            failed = false;
+            return ret;
+        } finally {
+            long wall = System.nanoTime() - start;
+            long cpu = getCpuTime() - cpuStart;
+            LOGGER.log(Level.INFO, "Start up phase {0} took {1}ms", new Object[]{name, toMillis(wall)});
+            synchronized (this) {
+                timings.add(new Timing(name, start - started, wall, cpu, Thread.currentThread().getName(), failed));
+            }
+        }
+    }
+
+    private static long getCpuTime() {
+        return THREADS.isCurrentThreadCpuTimeSupported() ? THREADS.getCurrentThreadCpuTime() : 0;
+    }
+
+    private static long toMillis(long nanos) {
+        return TimeUnit.NANOSECONDS.toMillis(nanos);
+    }
+
+    private static final class Timing {
+
+        private final String name;
+        private final long start;
+        private final long wall;
+        private final long cpu;
+        private final String thread;
+        private final boolean failed;
+
+        Timing(String name, long start, long wall, long cpu, String thread, boolean failed) {
+            this.name = name;
+            this.start = start;
+            this.wall = wall;
+            this.cpu = cpu;
+            this.thread = thread;
+            this.failed = failed;
+        }
+    }
+}
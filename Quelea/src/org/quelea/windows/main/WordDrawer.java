@@ -17,8 +17,6 @@
  */
 package org.quelea.windows.main;
 
-import com.sun.javafx.tk.FontMetrics;
-import com.sun.javafx.tk.Toolkit;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
@@ -79,28 +77,11 @@ public abstract class WordDrawer extends DisplayableDrawer {
      * width and height provided.
      */
     protected double pickFontSize(Font font, List<LyricLine> text, double width, double height) {
-        FontMetrics metrics = Toolkit.getToolkit().getFontLoader().getFontMetrics(font);
-        double totalHeight = ((metrics.getLineHeight() + getLineSpacing()) * text.size());
-        while (totalHeight > height) {
-            font = new Font(font.getName(), font.getSize() - 0.5);
-            if (font.getSize() < 1) {
-                return 1;
-            }
-            metrics = Toolkit.getToolkit().getFontLoader().getFontMetrics(font);
-            totalHeight = (metrics.getLineHeight() + getLineSpacing()) * text.size();
-        }
-
-        String longestLine = longestLine(font, text);
-        double totalWidth = metrics.computeStringWidth(longestLine);
-        while (totalWidth > width) {
-            font = new Font(font.getName(), font.getSize() - 0.5);
-            if (font.getSize() < 1) {
-                return 1;
-            }
-            metrics = Toolkit.getToolkit().getFontLoader().getFontMetrics(font);
-            totalWidth = metrics.computeStringWidth(longestLine);
+        List<String> lines = new ArrayList<>(text.size());
+        for (LyricLine line : text) {
+            lines.add(FormattedText.stripFormatTags(line.getLine()));
         }
-        return font.getSize();
+        return FontFitter.fit(font, lines, getLineSpacing(), width, height);
     }
 
     /**
@@ -117,26 +98,24 @@ public abstract class WordDrawer extends DisplayableDrawer {
     }
 
     protected String longestLine(Font font, List<LyricLine> text) {
-        FontMetrics metrics = Toolkit.getToolkit().getFontLoader().getFontMetrics(font);
         double longestWidth = -1;
         String longestStr = null;
         for (LyricLine line : text) {
-            line = new LyricLine(false, FormattedText.stripFormatTags(line.getLine()));
-            double width = metrics.computeStringWidth(line.getLine());
+            String stripped = FormattedText.stripFormatTags(line.getLine());
+            double width = FontFitter.getWidth(font, stripped);
             if (width > longestWidth) {
                 longestWidth = width;
-                longestStr = line.getLine();
+                longestStr = stripped;
             }
         }
         return longestStr;
     }
 
     protected String longestLine(Font font, ArrayList<String> text) {
-        FontMetrics metrics = Toolkit.getToolkit().getFontLoader().getFontMetrics(font);
         double longestWidth = -1;
         String longestStr = null;
         for (String line : text) {
-            double width = metrics.computeStringWidth(line);
+            double width = FontFitter.getWidth(font, line);
             if (width > longestWidth) {
                 longestWidth = width;
                 longestStr = line;
@@ -202,7 +181,6 @@ public abstract class WordDrawer extends DisplayableDrawer {
     }
     
     protected double pickSmallFontSize(Font font, String[] text, double width, double height) {
-        FontMetrics metrics = Toolkit.getToolkit().getFontLoader().getFontMetrics(font);
         ArrayList<String> al = new ArrayList<>();
         for (String te : text) {
             if (al.contains("\n")) {
@@ -212,27 +190,6 @@ public abstract class WordDrawer extends DisplayableDrawer {
                 al.add(te);
             }
         }
-        double totalHeight = ((metrics.getLineHeight() + getLineSpacing()) * al.size());
-        while (totalHeight > height) {
-            font = new Font(font.getName(), font.getSize() - 0.5);
-            if (font.getSize() < 1) {
-                return 1;
-            }
-            metrics = Toolkit.getToolkit().getFontLoader().getFontMetrics(font);
-            totalHeight = (metrics.getLineHeight() + getLineSpacing()) * al.size();
-        }
-
-        String longestLine = longestLine(font, al);
-        double totalWidth = metrics.computeStringWidth(longestLine);
-        while (totalWidth > width) {
-            font = new Font(font.getName(), font.getSize() - 0.5);
-            if (font.getSize() < 1) {
-                return 1;
-            }
-            metrics = Toolkit.getToolkit().getFontLoader().getFontMetrics(font);
-            totalWidth = metrics.computeStringWidth(longestLine);
-        }
-
-        return font.getSize();
+        return FontFitter.fit(font, al, getLineSpacing(), width, height);
     }
 }
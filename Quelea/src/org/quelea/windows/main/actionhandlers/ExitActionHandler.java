@@ -30,6 +30,8 @@ import org.javafx.dialog.Dialog;
 import org.quelea.data.SaveCallback;
 import org.quelea.data.Schedule;
 import org.quelea.data.ScheduleSaver;
+import org.quelea.data.bible.BibleManager;
+import org.quelea.data.db.SongManager;
 import org.quelea.data.displayable.Displayable;
 import org.quelea.data.displayable.PresentationDisplayable;
 import org.quelea.data.powerpoint.OOUtils;
@@ -143,6 +145,12 @@ public class ExitActionHandler implements EventHandler<ActionEvent> {
             LOGGER.log(Level.INFO, "Closing open PowerPoint presentations");
             PowerPointHandler.closePresentation();
         }
+        if (SongManager.get() != null) {
+            LOGGER.log(Level.INFO, "Closing song search index");
+            SongManager.get().getIndex().close();
+        }
+        LOGGER.log(Level.INFO, "Closing bible search index");
+        BibleManager.get().getIndex().close();
         
         LOGGER.log(Level.INFO, "Checking if Quelea currently is recording audio");
         MainToolbar toolbar = mainWindow.getMainToolbar();
@@ -26,14 +26,12 @@ import java.util.ArrayList;
 import java.util.HashSet;
 import java.util.List;
 import java.util.logging.Level;
-import java.util.zip.ZipEntry;
 import java.util.zip.ZipOutputStream;
 import javafx.event.ActionEvent;
 import javafx.event.EventHandler;
 import javafx.stage.FileChooser;
 import org.javafx.dialog.Dialog;
 import org.quelea.data.Schedule;
-import org.quelea.data.displayable.Displayable;
 import org.quelea.data.displayable.SongDisplayable;
 import org.quelea.services.importexport.PDFExporter;
 import static org.quelea.services.importexport.PDFExporter.LOGGER;
@@ -86,23 +84,8 @@ public class ExportPDFScheduleSongsActionHandler implements EventHandler<ActionE
             final File threadSafeFile = new File(file.getAbsolutePath());
             new Thread() {
                 public void run() {
-                    final HashSet<String> names = new HashSet<>();
                     try (ZipOutputStream out = new ZipOutputStream(new FileOutputStream(threadSafeFile), Charset.forName("UTF-8"))) {
-                        for (int i = 0; i < songDisplayablesThreadSafe.size(); i++) {
-                            Displayable d = songDisplayablesThreadSafe.get(i);
-                            if (!(d instanceof SongDisplayable)) {
-                                continue;
-                            }
-                            SongDisplayable song = (SongDisplayable) d;
-                            String name = PDFExporter.sanitise(song.getTitle()) + ".pdf";
-                            while (names.contains(name)) {
-                                name = PDFExporter.incrementExtension(name);
-                            }
-                            names.add(name);
-                            out.putNextEntry(new ZipEntry(name));
-                            out.write(PDFExporter.getPDF(song, printChords));
-                            panel.setProgress((double) i / songDisplayablesThreadSafe.size());
-                        }
+                        PDFExporter.writePDFs(out, songDisplayablesThreadSafe, printChords, panel);
                         panel.done();
                     } catch (IOException ex) {
                         LOGGER.log(Level.WARNING, "Couldn't export PDF songs", ex);
@@ -62,6 +62,7 @@ import org.quelea.services.utils.Utils;
 import org.quelea.windows.library.Constraint;
 import org.quelea.windows.library.DisplayableListCell;
 import org.quelea.windows.lyrics.LyricDrawer;
+import org.quelea.windows.main.LivePanel;
 import org.quelea.windows.main.QueleaApp;
 import org.quelea.windows.main.WordDrawer;
 import org.quelea.windows.main.actionhandlers.AddPdfActionHandler;
@@ -531,6 +532,8 @@ public class ScheduleList extends StackPane {
             }
             if (d == null) {
                 LOGGER.log(Level.WARNING, "Tried to remove null from schedule?");
+            } else if (d == QueleaApp.get().getMainWindow().getMainPanel().getLivePanel().getDisplayable()) {
+                disposeWhenNotLive(d);
             } else {
                 d.dispose();
             }
@@ -538,6 +541,26 @@ public class ScheduleList extends StackPane {
         }
     }
 
+    /**
+     * Dispose of a displayable that's been removed from the schedule but is
+     * still live, once something else has gone live. Disposing of it straight
+     * away would pull its slides out from under the projector.
+     * <p/>
+     * @param d the displayable to dispose of.
+     */
+    private static void disposeWhenNotLive(final Displayable d) {
+        final LivePanel livePanel = QueleaApp.get().getMainWindow().getMainPanel().getLivePanel();
+        livePanel.addLiveChangeListener(new Runnable() {
+            @Override
+            public void run() {
+                if (livePanel.getDisplayable() != d) {
+                    livePanel.removeLiveChangeListener(this);
+                    d.dispose();
+                }
+            }
+        });
+    }
+
     /**
      * Move the currently selected item in the list in the specified direction.
      * <p/>
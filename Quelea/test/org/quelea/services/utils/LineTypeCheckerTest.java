@@ -0,0 +1,211 @@
+/*
+ * This file is part of Quelea, free projection software for churches.
+ *
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.quelea.services.utils;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Checks that LineTypeChecker gives the same answers as the original,
+ * regex-per-line implementation (kept here as a reference) for chord, lyric,
+ * title and special lines, including once its cache has been cleared.
+ *
+ * @author Michael
+ */
+public class LineTypeCheckerTest {
+
+    private static final String[] LINES = {
+        "C G Am F",
+        "  C   G/B   Am7   Fmaj7  ",
+        "D#m7b5 G#sus4 Bb/D",
+        "Cis Fis Gis",
+        "Esus2 Asus4 Bm",
+        "C#dim Ebaug Gadd9",
+        "F♯m C♯7 B♭maj7 E♭",
+        "A - D - E",
+        "(G) C (D)",
+        "G x2",
+        "C G 4x",
+        "Am X3 F",
+        "Gm7/F Cm/Eb",
+        "/ / C / /",
+        "C\tG\tAm",
+        "Amazing grace how sweet the sound",
+        "Be thou my vision",
+        "Add a little love",
+        "Dim the lights",
+        "Bad",
+        "Cab",
+        "Ebb and flow",
+        "Hallelujah x2",
+        "Sing it 2x",
+        "Verse 1",
+        "verse",
+        "[Chorus]",
+        "{Pre-Chorus}",
+        "(pre chorus 2)",
+        "<Bridge>",
+        "Coda",
+        "TAG",
+        "Intro",
+        "Outro:",
+        "Interlude",
+        "Ending",
+        "Versed in the word",
+        "Tagline",
+        "My own heading //title",
+        "C G Am F //lyrics",
+        "All the things //chords",
+        "ALL THE THINGS //CHORDS",
+        "<>",
+        "  <>  ",
+        "\\u00A0",
+        " ",
+        "",
+        "   ",
+        "\t",
+        "C G Am",
+        "Cmaj7\u0001",
+        "İ verse",
+        "x",
+        "12",
+        "-",
+        "()"
+    };
+
+    /**
+     * Check the representative lines against the reference implementation.
+     */
+    @Test
+    public void testRepresentativeLines() {
+        for (String line : LINES) {
+            assertEquals("Line: \"" + line + "\"", getReferenceType(line), new LineTypeChecker(line).getLineType());
+            //Second time round comes from the cache
+            assertEquals("Cached line: \"" + line + "\"", getReferenceType(line), new LineTypeChecker(line).getLineType());
+        }
+    }
+
+    /**
+     * Check random lines made up of chord-like and lyric-like tokens, enough
+     * of them to fill and clear the cache, against the reference
+     * implementation.
+     */
+    @Test
+    public void testGeneratedLines() {
+        String[] tokens = {"C", "G", "Am", "F#m7", "Bb", "Dsus4", "E/G#", "Cadd9", "Fmaj7", "Gis", "x2", "3x",
+            "the", "and", "add", "sing", "Bad", "(D)", "-", "/", "verse", "[chorus]", "<>", "//chords", "//lyrics",
+            "//title", "♭", "mis", "dom7", "aug", " ", "\t"};
+        Random random = new Random(42);
+        List<String> lines = new ArrayList<>();
+        for (int i = 0; i < 60000; i++) {
+            StringBuilder line = new StringBuilder();
+            int count = 1 + random.nextInt(6);
+            for (int j = 0; j < count; j++) {
+                if (j > 0) {
+                    line.append(' ');
+                }
+                line.append(tokens[random.nextInt(tokens.length)]);
+            }
+            lines.add(line.toString());
+        }
+        for (String line : lines) {
+            assertEquals("Line: \"" + line + "\"", getReferenceType(line), new LineTypeChecker(line).getLineType());
+        }
+    }
+
+    /**
+     * Check that null lines still have no type.
+     */
+    @Test
+    public void testNull() {
+        assertEquals(null, new LineTypeChecker(null).getLineType());
+    }
+
+    /**
+     * The original implementation of LineTypeChecker.getLineType().
+     */
+    private static LineTypeChecker.Type getReferenceType(String line) {
+        if (checkTitle(line)) {
+            return LineTypeChecker.Type.TITLE;
+        } else if (checkChords(line)) {
+            return LineTypeChecker.Type.CHORDS;
+        } else if (checkNonBreak(line)) {
+            return LineTypeChecker.Type.NONBREAK;
+        } else {
+            return LineTypeChecker.Type.NORMAL;
+        }
+    }
+
+    private static boolean checkNonBreak(String line) {
+        return line.trim().equals("<>")
+                || line.trim().equals("\\u00A0")
+                || (line.length() == 1 && line.charAt(0) == 160);
+    }
+
+    private static boolean checkChords(String line) {
+        if (line.trim().isEmpty()) {
+            return false;
+        }
+        if (line.toLowerCase().endsWith("//chords")) {
+            return true;
+        }
+        if (line.toLowerCase().endsWith("//lyrics")) {
+            return false;
+        }
+        String checkLine = line.replace('-', ' ');
+        checkLine = checkLine.replace('(', ' ');
+        checkLine = checkLine.replace(')', ' ');
+        checkLine = checkLine.replaceAll("[xX][0-9]+", "");
+        checkLine = checkLine.replaceAll("[0-9]+[xX]", "");
+        for (String s : checkLine.split("\\s")) {
+            if (s.trim().isEmpty()) {
+                continue;
+            }
+            if (!s.matches("^(\\s*(((([a-hA-H](#|b|♯|♭|(is))?[0-9]*)|\\/)*((sus|dim|maj|dom|min|m|aug|add)?[0-9]*){3}(#|b|♯|♭|(is))?[0-9]*)\\s*)+)$")) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean checkTitle(String line) {
+        String processedLine = line.toLowerCase().trim()
+                .replace("{", "").replace("}", "")
+                .replace("[", "").replace("]", "")
+                .replace("<", "").replace(">", "")
+                .replace("(", "").replace(")", "");
+        if (processedLine.endsWith("//title")) {
+            return true;
+        }
+        return processedLine.startsWith("verse")
+                || processedLine.startsWith("chorus")
+                || processedLine.startsWith("tag")
+                || processedLine.startsWith("pre-chorus")
+                || processedLine.startsWith("pre chorus")
+                || processedLine.startsWith("coda")
+                || processedLine.startsWith("bridge")
+                || processedLine.startsWith("intro")
+                || processedLine.startsWith("outro")
+                || processedLine.startsWith("interlude")
+                || processedLine.startsWith("ending");
+    }
+}